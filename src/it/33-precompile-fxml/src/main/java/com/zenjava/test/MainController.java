@@ -0,0 +1,17 @@
+package com.zenjava.test;
+
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.control.Label;
+
+public class MainController {
+
+    @FXML
+    private Label messageLabel;
+
+    @FXML
+    private void handleButton(ActionEvent event) {
+        messageLabel.setText("Clicked!");
+    }
+
+}
@@ -0,0 +1,8 @@
+package com.zenjava.test;
+
+public class Greeting {
+
+    public String getText() {
+        return "Hello";
+    }
+}
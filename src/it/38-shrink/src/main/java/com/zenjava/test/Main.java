@@ -0,0 +1,8 @@
+package com.zenjava.test;
+
+public class Main {
+
+    public static void main(String[] args) {
+        System.out.println(new Greeting().getText());
+    }
+}
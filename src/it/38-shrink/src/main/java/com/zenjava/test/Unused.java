@@ -0,0 +1,8 @@
+package com.zenjava.test;
+
+public class Unused {
+
+    public String getText() {
+        return "Never called";
+    }
+}
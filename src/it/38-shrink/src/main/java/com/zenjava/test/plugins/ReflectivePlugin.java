@@ -0,0 +1,8 @@
+package com.zenjava.test.plugins;
+
+public class ReflectivePlugin {
+
+    public String getText() {
+        return "Only loaded via reflection";
+    }
+}
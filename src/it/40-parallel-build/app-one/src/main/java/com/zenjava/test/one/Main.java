@@ -0,0 +1,10 @@
+package com.zenjava.test.one;
+
+import org.apache.logging.log4j.LogManager;
+
+public class Main {
+
+    public static void main(String[] args) {
+        LogManager.getLogger(Main.class).info("Hello from app-one");
+    }
+}
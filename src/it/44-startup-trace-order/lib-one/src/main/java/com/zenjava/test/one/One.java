@@ -0,0 +1,5 @@
+package com.zenjava.test.one;
+
+public class One {
+
+}
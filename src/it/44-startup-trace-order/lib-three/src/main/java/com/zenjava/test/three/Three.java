@@ -0,0 +1,5 @@
+package com.zenjava.test.three;
+
+public class Three {
+
+}
@@ -0,0 +1,5 @@
+package com.zenjava.test.two;
+
+public class Two {
+
+}
@@ -0,0 +1,99 @@
+package com.zenjava.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import javafx.event.Event;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Loads Shapes.fxml once using the loader generated by the plugin and once using the FXMLLoader, and compares the
+ * results. Called by the verify-script of this test, the loader is only available inside the JavaFX JAR.
+ */
+public class CompareFxml {
+
+    public static void main(String[] args) throws Exception {
+        Class<?> loaderClass = Class.forName("com.zenjava.javafx.fxml.CompiledFxmlLoader");
+        Object compiledLoader = loaderClass.getConstructor(Class.class, String.class).newInstance(CompareFxml.class, "Shapes.fxml");
+        Parent compiledRoot = (Parent) loaderClass.getMethod("load").invoke(compiledLoader);
+        if( !(Boolean) loaderClass.getMethod("isCompiled").invoke(compiledLoader) ){
+            fail("Shapes.fxml should have been loaded using its compiled form");
+        }
+        ShapesController compiledController = (ShapesController) loaderClass.getMethod("getController").invoke(compiledLoader);
+
+        FXMLLoader fxmlLoader = new FXMLLoader(CompareFxml.class.getResource("Shapes.fxml"));
+        Parent loadedRoot = fxmlLoader.load();
+        ShapesController loadedController = fxmlLoader.getController();
+
+        List<String> compiledTree = new ArrayList<>();
+        describe(compiledRoot, "", compiledTree);
+        List<String> loadedTree = new ArrayList<>();
+        describe(loadedRoot, "", loadedTree);
+        if( !compiledTree.equals(loadedTree) ){
+            fail("node trees differ, compiled: " + compiledTree + ", loaded: " + loadedTree);
+        }
+
+        checkController(compiledController, compiledRoot, "compiled");
+        checkController(loadedController, loadedRoot, "loaded");
+
+        System.out.println("compiled FXML matches the FXMLLoader");
+    }
+
+    private static void describe(Node node, String indentation, List<String> tree) {
+        StringBuilder description = new StringBuilder(indentation).append(node.getClass().getName());
+        description.append(" id=").append(node.getId());
+        description.append(" vgrow=").append(VBox.getVgrow(node));
+        if( node instanceof VBox ){
+            description.append(" spacing=").append(((VBox) node).getSpacing());
+        }
+        if( node instanceof Region ){
+            description.append(" padding=").append(((Region) node).getPadding());
+        }
+        if( node instanceof Rectangle ){
+            Rectangle rectangle = (Rectangle) node;
+            description.append(" size=").append(rectangle.getWidth()).append("x").append(rectangle.getHeight());
+            description.append(" fill=").append(rectangle.getFill());
+            description.append(" onMouseClicked=").append(rectangle.getOnMouseClicked() != null);
+        }
+        if( node instanceof Circle ){
+            Circle circle = (Circle) node;
+            description.append(" radius=").append(circle.getRadius());
+            description.append(" fill=").append(circle.getFill());
+        }
+        tree.add(description.toString());
+        if( node instanceof Parent ){
+            for( Node child : ((Parent) node).getChildrenUnmodifiable() ){
+                describe(child, indentation + "  ", tree);
+            }
+        }
+    }
+
+    private static void checkController(ShapesController controller, Parent root, String form) {
+        if( controller == null ){
+            fail("controller of the " + form + " FXML should have been created");
+        }
+        if( !controller.initialized ){
+            fail("controller of the " + form + " FXML should have been initialized");
+        }
+        if( controller.rectangle != root.getChildrenUnmodifiable().get(0) || controller.circle != root.getChildrenUnmodifiable().get(1) ){
+            fail("nodes of the " + form + " FXML should have been injected into the controller");
+        }
+        Event.fireEvent(controller.rectangle, new MouseEvent(MouseEvent.MOUSE_CLICKED, 0, 0, 0, 0, MouseButton.PRIMARY, 1,
+                false, false, false, false, true, false, false, true, false, true, null));
+        if( controller.clicks != 1 || !"0x008000ff".equals(String.valueOf(controller.circle.getFill())) ){
+            fail("event handler of the " + form + " FXML should have called the controller");
+        }
+    }
+
+    private static void fail(String message) {
+        throw new IllegalStateException(message);
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.zenjava.test;
+
+import javafx.fxml.FXML;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+
+public class ShapesController {
+
+    @FXML
+    Rectangle rectangle;
+
+    @FXML
+    Circle circle;
+
+    boolean initialized;
+
+    int clicks;
+
+    @FXML
+    private void initialize() {
+        initialized = true;
+    }
+
+    @FXML
+    private void handleClick(MouseEvent event) {
+        clicks++;
+        circle.setFill(Color.GREEN);
+    }
+
+}
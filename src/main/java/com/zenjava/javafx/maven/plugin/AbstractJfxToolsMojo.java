@@ -16,25 +16,24 @@
 
 package com.zenjava.javafx.maven.plugin;
 
-import com.oracle.tools.packager.Log;
 import com.sun.javafx.tools.packager.PackagerLib;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.SessionData;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Base Mojo that any other Mojo wanting to access the JavaFX Packager tools should extend from. This provides
@@ -51,6 +50,15 @@ public abstract class AbstractJfxToolsMojo extends AbstractMojo {
      */
     protected MavenProject project;
 
+    /**
+     * The current build session, used for sharing state between all executions of this plugin.
+     *
+     * @parameter property="session"
+     * @required
+     * @readonly
+     */
+    protected MavenSession session;
+
     /**
      * Flag to turn on verbose logging. Set this to true if you are having problems and want more detailed information.
      *
@@ -135,31 +143,185 @@ public abstract class AbstractJfxToolsMojo extends AbstractMojo {
      */
     protected String libFolderName;
 
+    /**
+     * Some information is kept between builds for speeding up the build process, like which dependencies already got
+     * copied into the lib-folder. Removing this folder is always safe, the next build just has to do all work again.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.cacheDir" default-value="${project.build.directory}/jfx/cache"
+     */
+    protected File cacheDir;
+
+    /**
+     * Trace of all classes and resources loaded while starting the application, as recorded by "jfx:trace-startup".
+     * When this file exists, the entries of the JavaFX JAR and the manifest classpath are ordered by first usage.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupTraceFile" default-value="${project.basedir}/src/main/deploy/startup-trace.txt"
+     */
+    protected File startupTraceFile;
+
+    /**
+     * Name of the class data sharing archive inside the app-folder, as created by "jfx:generate-cds-archive". When
+     * this file exists, all native launchers use it for loading classes faster.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.cdsArchiveName" default-value="app.jsa"
+     */
+    protected String cdsArchiveName = "app.jsa";
+
+    /**
+     * Dependencies and additional app resources are placed into the app-folder by copying them. As this might be a lot
+     * of data, it is possible to choose a different strategy:
+     * <ul>
+     * <li><b>copy</b> <i>(copies the file content, works everywhere)</i></li>
+     * <li><b>hardlink</b> <i>(creates hardlinks, only works when the files reside on the same filesystem)</i></li>
+     * <li><b>reflink</b> <i>(creates copy-on-write clones, requires some filesystem like btrfs, XFS or APFS)</i></li>
+     * <li><b>symlink</b> <i>(creates symbolic links, only meant for development builds, as the app-folder then depends
+     * on your local repository)</i></li>
+     * </ul>
+     * When the selected strategy is not possible for some file, that file gets copied instead.
+     * <p>
+     * Please do not use hardlinks when you are modifying files inside the app-folder afterwards, as these changes would
+     * end up in your local repository too.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.stagingStrategy" default-value="copy"
+     */
+    protected String stagingStrategy;
+
+    /**
+     * Additional resources are only copied when their size or timestamp changed since the last build. Set this to
+     * true for comparing the content of these files instead, which requires reading all of them.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.syncResourcesUsingChecksum" default-value="false"
+     */
+    protected boolean syncResourcesUsingChecksum;
+
+    /**
+     * Set this to true for removing previously copied additional resources, when they got removed from their source
+     * folder. Only files copied by this plugin are removed, other files inside the target folder are kept.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.deleteRemovedResources" default-value="false"
+     */
+    protected boolean deleteRemovedResources;
+
+    /**
+     * Set this to true for using some cache shared by all builds of the current user (e.g. on some CI agent building
+     * lots of applications). Dependencies are stored once inside this cache, identified by their SHA-256 checksum,
+     * and get linked into the lib-folder. Minimal runtimes created by &lt;createMinimalRuntime&gt; are cached there
+     * too, so applications using the same modules share the same runtime.
+     * <p>
+     * Please do not modify the files inside the lib-folder afterwards, as these changes would end up inside the cache.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.useArtifactCache" default-value="false"
+     */
+    protected boolean useArtifactCache;
+
+    /**
+     * The folder of the artifact cache, should reside on the same filesystem as the build directories, so files can
+     * be linked instead of being copied.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.artifactCacheDir" default-value="${user.home}/.javafx-maven-plugin/artifact-cache"
+     */
+    protected File artifactCacheDir;
+
+    /**
+     * Maximum size of the artifact cache in megabytes, the least recently used entries get evicted when exceeding
+     * this size. Entries used within the last hour are never evicted.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.artifactCacheMaxSize" default-value="4096"
+     */
+    protected long artifactCacheMaxSize;
+
+    private static final String RESOURCE_SYNC_FOLDERNAME = "resource-sync";
+
+    private static final String DEPLOY_CLASSLOADERS_SESSION_KEY = AbstractJfxToolsMojo.class.getName() + ".deployClassLoaders";
+
     private PackagerLib packagerLib;
 
     public PackagerLib getPackagerLib() throws MojoExecutionException {
         // lazy-initialization of packagerLib
         if( packagerLib == null ){
-            // add deployDir to system classpath
+            // add deployDir to classpath, but only for this execution, as the plugin classloader is shared with all
+            // other (maybe parallel) executions of this plugin
             if( deployDir != null ){
                 getLog().info("Adding 'deploy' directory to Mojo classpath: " + deployDir);
-                URLClassLoader sysloader = (URLClassLoader) Thread.currentThread().getContextClassLoader();
-                Class<URLClassLoader> sysclass = URLClassLoader.class;
                 try{
-                    Method method = sysclass.getDeclaredMethod("addURL", URL.class);
-                    method.setAccessible(true);
-                    method.invoke(sysloader, new File(deployDir).toURI().toURL());
-                } catch(NoSuchMethodException | SecurityException | MalformedURLException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex){
-                    throw new MojoExecutionException("Error, could not add URL to system classloader", ex);
+                    // maven restores the context classloader after this execution
+                    Thread.currentThread().setContextClassLoader(getDeployClassLoader(Thread.currentThread().getContextClassLoader()));
+                } catch(MalformedURLException | SecurityException ex){
+                    throw new MojoExecutionException("Error, could not add 'deploy' directory to classpath", ex);
                 }
             }
 
-            Log.setLogger(new Log.Logger(verbose));
             this.packagerLib = new PackagerLib();
         }
+        // gets uninstalled after each packaging, which might happen more than once per execution
+        installPackagerLogger();
         return this.packagerLib;
     }
 
+    /**
+     * Creates the classloader containing the deploy-folder, or reuses the one created by some previous execution of
+     * this build. The packager classes reside inside the plugin classloader (being the parent), which is shared by
+     * all executions, so multi-module builds load them only once.
+     */
+    private ClassLoader getDeployClassLoader(ClassLoader pluginClassLoader) throws MalformedURLException {
+        // normalized, as modules might point to the same folder using different relative paths
+        URL deployFolderUrl = new File(deployDir).toPath().toAbsolutePath().normalize().toUri().toURL();
+        CodeSource packagerCodeSource = PackagerLib.class.getProtectionDomain().getCodeSource();
+        // another plugin classloader (e.g. having other plugin dependencies) might contain another packager
+        List<Object> key = Arrays.asList(pluginClassLoader, packagerCodeSource == null ? null : packagerCodeSource.getLocation(), deployFolderUrl.toString());
+        Map<List<Object>, ClassLoader> deployClassLoaders = getSessionDeployClassLoaders();
+        ClassLoader deployClassLoader = deployClassLoaders.get(key);
+        if( deployClassLoader != null ){
+            getLog().debug("Reusing classloader of 'deploy' directory created by previous execution");
+            return deployClassLoader;
+        }
+        return deployClassLoaders.computeIfAbsent(key, k -> {
+            getLog().debug("Created classloader of 'deploy' directory");
+            return new URLClassLoader(new URL[]{deployFolderUrl}, pluginClassLoader);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<List<Object>, ClassLoader> getSessionDeployClassLoaders() {
+        if( session == null || session.getRepositorySession() == null ){
+            return new ConcurrentHashMap<>();
+        }
+        SessionData sessionData = session.getRepositorySession().getData();
+        Map<List<Object>, ClassLoader> deployClassLoaders = (Map<List<Object>, ClassLoader>) sessionData.get(DEPLOY_CLASSLOADERS_SESSION_KEY);
+        while( deployClassLoaders == null ){
+            // parallel executions might try this at the same time
+            sessionData.set(DEPLOY_CLASSLOADERS_SESSION_KEY, null, new ConcurrentHashMap<List<Object>, ClassLoader>());
+            deployClassLoaders = (Map<List<Object>, ClassLoader>) sessionData.get(DEPLOY_CLASSLOADERS_SESSION_KEY);
+        }
+        return deployClassLoaders;
+    }
+
+    protected void installPackagerLogger() {
+        PackagerLogger.install(getLog(), Boolean.TRUE.equals(verbose));
+    }
+
+    protected void uninstallPackagerLogger() {
+        PackagerLogger.uninstall();
+    }
+
     protected String getEnvironmentRelativeExecutablePath() {
         if( useEnvironmentRelativeExecutables ){
             return "";
@@ -171,35 +333,42 @@ public abstract class AbstractJfxToolsMojo extends AbstractMojo {
         return jdkPath;
     }
 
-    protected void copyRecursive(Path sourceFolder, Path targetFolder) throws IOException {
-        Files.walkFileTree(sourceFolder, new FileVisitor<Path>() {
+    protected StagingStrategy getStagingStrategy() {
+        try{
+            return StagingStrategy.fromString(stagingStrategy);
+        } catch(IllegalArgumentException ex){
+            getLog().warn(String.format("Unknown staging strategy '%s', copying files instead.", stagingStrategy));
+            return StagingStrategy.COPY;
+        }
+    }
 
-            @Override
-            public FileVisitResult preVisitDirectory(Path subfolder, BasicFileAttributes attrs) throws IOException {
-                // do create subfolder (if needed)
-                Files.createDirectories(targetFolder.resolve(sourceFolder.relativize(subfolder)));
-                return FileVisitResult.CONTINUE;
-            }
+    /**
+     * @return the artifact cache of the current user, or null when not being used
+     */
+    protected ArtifactCache getArtifactCache() {
+        if( !useArtifactCache ){
+            return null;
+        }
+        return new ArtifactCache(artifactCacheDir, artifactCacheMaxSize * 1024L * 1024L, getLog());
+    }
 
-            @Override
-            public FileVisitResult visitFile(Path sourceFile, BasicFileAttributes attrs) throws IOException {
-                // do copy, and replace, as the resource might already be existing
-                Files.copy(sourceFile, targetFolder.resolve(sourceFolder.relativize(sourceFile)), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
-                return FileVisitResult.CONTINUE;
-            }
+    protected void evictArtifactCache(ArtifactCache artifactCache) {
+        try{
+            artifactCache.evict();
+        } catch(IOException ex){
+            // don't fail, the cache just grows until next time
+            getLog().warn("Couldn't evict entries from artifact cache", ex);
+        }
+    }
 
-            @Override
-            public FileVisitResult visitFileFailed(Path source, IOException ioe) throws IOException {
-                // don't fail, just inform user
-                getLog().warn(String.format("Couldn't copy resource %s with reason %s", source.toString(), ioe.getLocalizedMessage()));
-                return FileVisitResult.CONTINUE;
-            }
+    protected void copyRecursive(Path sourceFolder, Path targetFolder) throws IOException {
+        copyRecursive(sourceFolder, targetFolder, getStagingStrategy());
+    }
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path source, IOException ioe) throws IOException {
-                // nothing to do here
-                return FileVisitResult.CONTINUE;
-            }
-        });
+    protected void copyRecursive(Path sourceFolder, Path targetFolder, StagingStrategy strategy) throws IOException {
+        File manifestFolder = cacheDir == null ? null : new File(cacheDir, RESOURCE_SYNC_FOLDERNAME);
+        ResourceSynchronizer synchronizer = new ResourceSynchronizer(strategy, manifestFolder, syncResourcesUsingChecksum, deleteRemovedResources, getLog());
+        synchronizer.sync(sourceFolder, targetFolder);
+        getLog().info(String.format("Synced resources from %s: %s", sourceFolder, synchronizer.getReport()));
     }
 }
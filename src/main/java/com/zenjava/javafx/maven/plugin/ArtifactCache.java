@@ -0,0 +1,273 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * User-level cache shared by all builds on the same machine, containing dependencies (content-addressed by their
+ * SHA-256 checksum, see {@link SharedDependencyStore}) and minimal runtimes created by jlink.
+ * <p>
+ * The cache is bounded by size: when exceeding the maximum size, the least recently used entries are evicted. The
+ * access time of every entry gets updated when using it, as modification times are shared by all hardlinks of some
+ * file. Eviction happens while holding some file lock, so concurrent builds never evict at the same time, and entries
+ * used within the last hour are never evicted, so running builds never lose the files they are linking to. Leftover
+ * temporary files are judged by their modification time, as they are still growing while being written.
+ */
+public class ArtifactCache extends SharedDependencyStore {
+
+    private static final String FILES_FOLDERNAME = "files";
+
+    private static final String RUNTIMES_FOLDERNAME = "runtimes";
+
+    private static final String LOCK_FILENAME = "cache.lock";
+
+    private static final long EVICTION_GRACE_PERIOD = 60L * 60L * 1000L;
+
+    // file locks are held by the whole JVM, so parallel builds inside the same JVM have to wait here, storing files and
+    // runtimes is done under the shared lock, so nothing gets evicted between placing some entry and marking it as used
+    private static final ReadWriteLock JVM_LOCK = new ReentrantReadWriteLock();
+
+    private final File cacheFolder;
+
+    private final long maximumSize;
+
+    public ArtifactCache(File cacheFolder, long maximumSize, Log logger) {
+        super(new File(cacheFolder, FILES_FOLDERNAME), logger);
+        this.cacheFolder = cacheFolder;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @return folder for caching runtimes, to be used by {@link RuntimeImageBuilder}
+     */
+    public File getRuntimesFolder() {
+        return new File(cacheFolder, RUNTIMES_FOLDERNAME);
+    }
+
+    @Override
+    public Path store(Path source, String sha256) throws IOException {
+        JVM_LOCK.readLock().lock();
+        try{
+            Path storedFile = super.store(source, sha256);
+            try{
+                markUsed(storedFile.toFile());
+            } catch(NoSuchFileException ex){
+                // some other build evicted the already stored file before it got marked
+                storedFile = super.store(source, sha256);
+                markUsed(storedFile.toFile());
+            }
+            return storedFile;
+        } finally{
+            JVM_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds some runtime inside {@link #getRuntimesFolder()}, or reuses the cached one, and marks it as used. Like
+     * storing files this is done under the shared lock, and the runtime gets built again when some other build
+     * evicted it before it got marked.
+     *
+     * @param runtimeImageBuilder builder using the runtimes-folder of this cache
+     * @param modules the modules to include
+     *
+     * @return folder containing the runtime
+     *
+     * @throws IOException when the runtime could not be created
+     */
+    public File storeRuntime(RuntimeImageBuilder runtimeImageBuilder, Set<String> modules) throws IOException {
+        JVM_LOCK.readLock().lock();
+        try{
+            File runtimeFolder = runtimeImageBuilder.build(modules);
+            try{
+                markUsed(runtimeFolder);
+            } catch(NoSuchFileException ex){
+                // some other build evicted the cached runtime before it got marked
+                runtimeFolder = runtimeImageBuilder.build(modules);
+                markUsed(runtimeFolder);
+            }
+            return runtimeFolder;
+        } finally{
+            JVM_LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks some cached file or runtime as recently used, delaying its eviction.
+     *
+     * @param cachedEntry some file or runtime inside this cache
+     *
+     * @throws IOException when the access time could not be updated
+     */
+    public void markUsed(File cachedEntry) throws IOException {
+        Path accessedPath = cachedEntry.toPath();
+        if( cachedEntry.isDirectory() ){
+            accessedPath = getRuntimeMarker(accessedPath);
+        }
+        Files.getFileAttributeView(accessedPath, BasicFileAttributeView.class).setTimes(null, FileTime.fromMillis(System.currentTimeMillis()), null);
+    }
+
+    /**
+     * Removes the least recently used entries, until the cache does not exceed its maximum size anymore.
+     *
+     * @throws IOException when the cache could not be locked
+     */
+    public void evict() throws IOException {
+        Files.createDirectories(cacheFolder.toPath());
+        JVM_LOCK.writeLock().lock();
+        try(FileChannel lockChannel = FileChannel.open(cacheFolder.toPath().resolve(LOCK_FILENAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock lock = lockChannel.lock()){
+            evictLocked();
+        } finally{
+            JVM_LOCK.writeLock().unlock();
+        }
+    }
+
+    private void evictLocked() throws IOException {
+        long evictableBefore = System.currentTimeMillis() - EVICTION_GRACE_PERIOD;
+        List<CachedEntry> cachedEntries = new ArrayList<>();
+        collectEntries(cacheFolder.toPath().resolve(FILES_FOLDERNAME), 2, cachedEntries);
+        collectEntries(cacheFolder.toPath().resolve(RUNTIMES_FOLDERNAME), 1, cachedEntries);
+
+        long totalSize = cachedEntries.stream().mapToLong(CachedEntry::getSize).sum();
+        int evictedEntries = 0;
+        long evictedSize = 0;
+        cachedEntries.sort(Comparator.comparingLong(CachedEntry::getLastAccess));
+        for( CachedEntry cachedEntry : cachedEntries ){
+            boolean leftover = isLeftover(cachedEntry.getPath());
+            if( (!leftover && totalSize <= maximumSize) || getLastUsage(cachedEntry.getPath(), leftover) >= evictableBefore ){
+                continue;
+            }
+            try{
+                FileTools.deleteRecursive(cachedEntry.getPath());
+                totalSize -= cachedEntry.getSize();
+                evictedEntries++;
+                evictedSize += cachedEntry.getSize();
+            } catch(IOException ex){
+                getLog().warn(String.format("Couldn't evict %s from artifact cache", cachedEntry.getPath().toAbsolutePath()));
+                getLog().debug(ex);
+            }
+        }
+        if( evictedEntries > 0 ){
+            getLog().info(String.format("Evicted %s entries (%s bytes) from artifact cache, now containing %s bytes", evictedEntries, evictedSize, totalSize));
+        }
+        if( totalSize > maximumSize ){
+            getLog().info(String.format("Artifact cache contains %s bytes, exceeding its maximum size of %s bytes, as all entries are in use", totalSize, maximumSize));
+        }
+    }
+
+    private void collectEntries(Path folder, int depth, List<CachedEntry> cachedEntries) throws IOException {
+        if( !Files.isDirectory(folder) ){
+            return;
+        }
+        List<Path> entryPaths;
+        try(Stream<Path> walkedPaths = Files.walk(folder, depth)){
+            // the folder itself relativizes to an empty path, which has one name as well
+            entryPaths = walkedPaths.filter(path -> !path.equals(folder) && folder.relativize(path).getNameCount() == depth).collect(Collectors.toList());
+        }
+        for( Path entryPath : entryPaths ){
+            try{
+                long size = Files.isDirectory(entryPath) ? getFolderSize(entryPath) : Files.size(entryPath);
+                cachedEntries.add(new CachedEntry(entryPath, size, getLastUsage(entryPath, isLeftover(entryPath))));
+            } catch(NoSuchFileException ex){
+                // got removed in the meantime, e.g. some temporary file
+            }
+        }
+    }
+
+    private static boolean isLeftover(Path entryPath) {
+        return entryPath.getFileName().toString().endsWith(FileStager.TEMPORARY_FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the time some entry was used the last time. This is read again right before evicting, as other builds
+     * might have used the entry after collecting all entries.
+     */
+    private static long getLastUsage(Path entryPath, boolean leftover) throws IOException {
+        Path accessedPath = entryPath;
+        if( Files.isDirectory(entryPath) && Files.exists(getRuntimeMarker(entryPath)) ){
+            accessedPath = getRuntimeMarker(entryPath);
+        }
+        BasicFileAttributes attributes;
+        try{
+            attributes = Files.readAttributes(accessedPath, BasicFileAttributes.class);
+        } catch(NoSuchFileException ex){
+            // got published or removed in the meantime, nothing left to evict
+            return Long.MAX_VALUE;
+        }
+        // temporary files are written right now or got abandoned, their access time might be copied from elsewhere
+        if( leftover ){
+            return attributes.lastModifiedTime().toMillis();
+        }
+        return attributes.lastAccessTime().toMillis();
+    }
+
+    private static Path getRuntimeMarker(Path runtimeFolder) {
+        return runtimeFolder.resolve(RuntimeImageBuilder.COMPLETED_MARKER);
+    }
+
+    private static long getFolderSize(Path folder) throws IOException {
+        try(Stream<Path> walkedPaths = Files.walk(folder)){
+            return walkedPaths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private static class CachedEntry {
+
+        private final Path path;
+
+        private final long size;
+
+        private final long lastAccess;
+
+        CachedEntry(Path path, long size, long lastAccess) {
+            this.path = path;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getLastAccess() {
+            return lastAccess;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Small helper for calculating content hashes, used for detecting changed files between builds.
+ */
+public class ChecksumTools {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    private ChecksumTools() {
+        // utility class
+    }
+
+    public static MessageDigest createDigest() {
+        try{
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch(NoSuchAlgorithmException ex){
+            // every JRE is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = createDigest();
+        update(digest, file);
+        return toHex(digest.digest());
+    }
+
+    public static String sha256(String value) {
+        return sha256(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String sha256(byte[] value) {
+        return toHex(createDigest().digest(value));
+    }
+
+    public static void update(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try(InputStream in = Files.newInputStream(file)){
+            int read;
+            while( (read = in.read(buffer)) != -1 ){
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] result = new char[bytes.length * 2];
+        for( int i = 0; i < bytes.length; i++ ){
+            result[i * 2] = HEX_CHARS[(bytes[i] >> 4) & 0x0F];
+            result[i * 2 + 1] = HEX_CHARS[bytes[i] & 0x0F];
+        }
+        return new String(result);
+    }
+}
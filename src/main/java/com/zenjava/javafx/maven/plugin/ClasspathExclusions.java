@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+
+/**
+ * Index of all configured classpath excludes, built once per execution. Plain coordinates are looked up by their
+ * "groupId:artifactId"-key, all excludes containing wildcards (like "org.apache.*:*") are compiled into one single
+ * pattern.
+ * <p>
+ * When being transitive, the result for every node inside the resolved dependency graph is remembered, so each
+ * node gets evaluated only once, regardless of how many artifacts depend on it.
+ */
+public class ClasspathExclusions {
+
+    private final boolean transitive;
+
+    private final Set<String> excludedKeys = new HashSet<>();
+
+    private final Pattern excludedPattern;
+
+    private final Map<String, Boolean> excludedGraphNodes = new HashMap<>();
+
+    /**
+     * @param classpathExcludes dependencies to exclude, groupId and artifactId may contain wildcards ('*' and '?')
+     * @param classpathExcludePatterns excludes in the form "groupId:artifactId", both parts may contain wildcards
+     * @param transitive when true, all dependencies of an excluded dependency are excluded as well
+     */
+    public ClasspathExclusions(List<Dependency> classpathExcludes, List<String> classpathExcludePatterns, boolean transitive) {
+        this.transitive = transitive;
+
+        List<String> wildcardExcludes = new ArrayList<>();
+        Optional.ofNullable(classpathExcludes).ifPresent(excludes -> {
+            excludes.stream().filter(dependency -> dependency.getGroupId() != null && dependency.getArtifactId() != null).forEach(dependency -> {
+                addExclude(dependency.getGroupId().trim() + ":" + dependency.getArtifactId().trim(), wildcardExcludes);
+            });
+        });
+        Optional.ofNullable(classpathExcludePatterns).ifPresent(patterns -> {
+            patterns.stream().filter(pattern -> pattern != null && !pattern.trim().isEmpty()).forEach(pattern -> {
+                String[] parts = pattern.trim().split(":");
+                // when having only the groupId, exclude all artifacts of that group
+                String artifactIdPart = parts.length > 1 ? parts[1] : "*";
+                addExclude(parts[0] + ":" + artifactIdPart, wildcardExcludes);
+            });
+        });
+
+        if( wildcardExcludes.isEmpty() ){
+            excludedPattern = null;
+        } else {
+            excludedPattern = Pattern.compile(String.join("|", wildcardExcludes));
+        }
+    }
+
+    public boolean isEmpty() {
+        return excludedKeys.isEmpty() && excludedPattern == null;
+    }
+
+    public boolean isExcluded(Artifact artifact) {
+        if( isEmpty() ){
+            return false;
+        }
+
+        // when not transitive, look at the artifact information
+        List<String> dependencyTrail = artifact.getDependencyTrail();
+        if( !transitive || dependencyTrail == null || dependencyTrail.isEmpty() ){
+            return isExcluded(artifact.getGroupId(), artifact.getArtifactId());
+        }
+
+        // when transitive, walk down the graph and reuse the results of already evaluated parent nodes (the first
+        // node is the project itself, which never gets excluded)
+        for( String graphNode : dependencyTrail.subList(1, dependencyTrail.size()) ){
+            Boolean nodeExcluded = excludedGraphNodes.get(graphNode);
+            if( nodeExcluded == null ){
+                nodeExcluded = isGraphNodeExcluded(graphNode);
+                excludedGraphNodes.put(graphNode, nodeExcluded);
+            }
+            if( nodeExcluded ){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isGraphNodeExcluded(String graphNode) {
+        // nodes are in the form "groupId:artifactId:type[:classifier]:version", we don't care about versions nor types
+        int groupIdEnd = graphNode.indexOf(':');
+        if( groupIdEnd < 0 ){
+            return false;
+        }
+        int artifactIdEnd = graphNode.indexOf(':', groupIdEnd + 1);
+        String artifactId = artifactIdEnd < 0 ? graphNode.substring(groupIdEnd + 1) : graphNode.substring(groupIdEnd + 1, artifactIdEnd);
+        return isExcluded(graphNode.substring(0, groupIdEnd), artifactId);
+    }
+
+    private boolean isExcluded(String groupId, String artifactId) {
+        String key = groupId + ":" + artifactId;
+        if( excludedKeys.contains(key) ){
+            return true;
+        }
+        return excludedPattern != null && excludedPattern.matcher(key).matches();
+    }
+
+    private void addExclude(String exclude, List<String> wildcardExcludes) {
+        if( exclude.indexOf('*') < 0 && exclude.indexOf('?') < 0 ){
+            excludedKeys.add(exclude);
+            return;
+        }
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for( char c : exclude.toCharArray() ){
+            if( c != '*' && c != '?' ){
+                literal.append(c);
+                continue;
+            }
+            if( literal.length() > 0 ){
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            // wildcards never cross the border between groupId and artifactId
+            regex.append(c == '*' ? "[^:]*" : "[^:]");
+        }
+        if( literal.length() > 0 ){
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        wildcardExcludes.add("(?:" + regex.toString() + ")");
+    }
+}
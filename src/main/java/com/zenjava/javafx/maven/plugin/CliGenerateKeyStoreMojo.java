@@ -21,6 +21,7 @@ package com.zenjava.javafx.maven.plugin;
  * @goal generate-key-store
  * @phase validate
  * @requiresDependencyResolution
+ * @threadSafe
  */
 public class CliGenerateKeyStoreMojo extends GenerateKeyStoreMojo {
 
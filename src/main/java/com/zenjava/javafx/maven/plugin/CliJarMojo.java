@@ -32,6 +32,7 @@ package com.zenjava.javafx.maven.plugin;
  * @goal jar
  * @execute lifecycle="jfxjar" phase="package"
  * @requiresDependencyResolution
+ * @threadSafe
  */
 public class CliJarMojo extends JarMojo {
     // NO-OP
@@ -28,6 +28,7 @@ package com.zenjava.javafx.maven.plugin;
  *
  * @goal native
  * @execute goal="jar"
+ * @threadSafe
  */
 public class CliNativeMojo extends NativeMojo {
     // NO-OP
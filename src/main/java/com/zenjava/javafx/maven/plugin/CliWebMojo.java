@@ -38,6 +38,7 @@ package com.zenjava.javafx.maven.plugin;
  *
  * @goal web
  * @execute goal="jar"
+ * @threadSafe
  */
 @SuppressWarnings("deprecation")
 public class CliWebMojo extends WebMojo {
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Converts all stylesheets of some folder into the binary format of JavaFX. Converted files are cached by the
+ * hash of their content, so only new or changed stylesheets have to be converted again. Cached files not used by the
+ * last conversion are removed, so the cache does not grow with every changed stylesheet.
+ * <p>
+ * Stylesheets are hashed and staged by a pool of worker threads, but the converter of JavaFX 8 uses one shared parser
+ * instance, so the conversion itself is done by one thread at a time (within the whole JVM, which matters for
+ * parallel maven builds).
+ */
+public class Css2BinConverter {
+
+    private static final String CSS2BIN_CLASS = "com.sun.javafx.css.parser.Css2Bin";
+
+    private static final Object CONVERSION_LOCK = new Object();
+
+    private final File cacheFolder;
+
+    private final int parallelism;
+
+    private final Log logger;
+
+    private final FileStager fileStager;
+
+    private final AtomicInteger convertedFiles = new AtomicInteger();
+
+    private final AtomicInteger cachedFiles = new AtomicInteger();
+
+    private final Set<Path> usedCacheFiles = ConcurrentHashMap.newKeySet();
+
+    private Method convertMethod;
+
+    public Css2BinConverter(File cacheFolder, int parallelism, Log logger) {
+        this.cacheFolder = cacheFolder;
+        this.parallelism = parallelism;
+        this.logger = logger;
+        this.fileStager = new FileStager(StagingStrategy.HARDLINK, logger);
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * Converts all stylesheets of the source folder, placing each binary stylesheet at the same relative location
+     * inside the target folder. All previous content of the target folder is removed.
+     *
+     * @param sourceFolder folder containing the stylesheets (e.g. target/classes)
+     * @param targetFolder folder receiving the binary stylesheets
+     *
+     * @return all stylesheets which could not be converted, including the reason
+     *
+     * @throws IOException when the folders could not be processed
+     */
+    public List<String> convert(Path sourceFolder, Path targetFolder) throws IOException {
+        FileTools.deleteRecursive(targetFolder);
+        Files.createDirectories(targetFolder);
+        Files.createDirectories(cacheFolder.toPath());
+
+        List<Path> stylesheets;
+        try(Stream<Path> walkedPaths = Files.walk(sourceFolder)){
+            stylesheets = walkedPaths.filter(path -> Files.isRegularFile(path) && path.getFileName().toString().toLowerCase().endsWith(".css")).collect(Collectors.toList());
+        }
+
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        usedCacheFiles.clear();
+        if( stylesheets.isEmpty() ){
+            pruneCache();
+            return failures;
+        }
+        // fail early when there is no converter at all
+        getConvertMethod();
+
+        int poolSize = Math.max(1, Math.min(parallelism, stylesheets.size()));
+        ExecutorService executor = ThreadTools.newDaemonThreadPool(poolSize, "jfx-css2bin-");
+        try{
+            List<Future<?>> conversionTasks = stylesheets.stream().map(stylesheet -> executor.submit(() -> {
+                String relativePath = sourceFolder.relativize(stylesheet).toString();
+                try{
+                    convertStylesheet(stylesheet, targetFolder.resolve(relativePath.substring(0, relativePath.length() - ".css".length()) + ".bss"));
+                } catch(IOException | RuntimeException ex){
+                    getLog().debug(ex);
+                    failures.add(String.format("%s (%s)", relativePath.replace("\\", "/"), ex.getMessage()));
+                }
+            })).collect(Collectors.toList());
+            for( Future<?> conversionTask : conversionTasks ){
+                conversionTask.get();
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while converting stylesheets", ex);
+        } catch(ExecutionException ex){
+            throw new IOException("Unexpected problem while converting stylesheets", ex.getCause());
+        } finally{
+            executor.shutdownNow();
+        }
+
+        pruneCache();
+        getLog().info(String.format("Converted stylesheets to binary format: %s converted, %s from cache, %s failed", convertedFiles.get(), cachedFiles.get(), failures.size()));
+        return failures;
+    }
+
+    /**
+     * Removes all cached files which were not used by the last conversion, e.g. of changed or removed stylesheets.
+     */
+    private void pruneCache() throws IOException {
+        List<Path> unusedCacheFiles;
+        try(Stream<Path> cacheFiles = Files.list(cacheFolder.toPath())){
+            unusedCacheFiles = cacheFiles.filter(cacheFile -> cacheFile.getFileName().toString().endsWith(".bss") && !usedCacheFiles.contains(cacheFile)).collect(Collectors.toList());
+        }
+        for( Path unusedCacheFile : unusedCacheFiles ){
+            Files.deleteIfExists(unusedCacheFile);
+        }
+        if( !unusedCacheFiles.isEmpty() ){
+            getLog().debug(String.format("Removed %s unused binary stylesheets from cache", unusedCacheFiles.size()));
+        }
+    }
+
+    private void convertStylesheet(Path stylesheet, Path target) throws IOException {
+        MessageDigest digest = ChecksumTools.createDigest();
+        ChecksumTools.update(digest, stylesheet);
+        // binary format might differ between JavaFX versions
+        digest.update(System.getProperty("java.version").getBytes(StandardCharsets.UTF_8));
+        Path cachedFile = cacheFolder.toPath().resolve(ChecksumTools.toHex(digest.digest()) + ".bss");
+        usedCacheFiles.add(cachedFile);
+
+        if( Files.isRegularFile(cachedFile) ){
+            cachedFiles.incrementAndGet();
+        } else {
+            Path temporaryFile = cachedFile.resolveSibling("." + cachedFile.getFileName().toString() + "-" + Thread.currentThread().getId() + FileStager.TEMPORARY_FILE_SUFFIX);
+            try{
+                synchronized(CONVERSION_LOCK){
+                    getConvertMethod().invoke(null, stylesheet.toAbsolutePath().toString(), temporaryFile.toAbsolutePath().toString());
+                }
+                if( !Files.isRegularFile(temporaryFile) ){
+                    throw new IOException("converter did not create any output");
+                }
+                FileStager.publish(temporaryFile, cachedFile);
+            } catch(InvocationTargetException ex){
+                Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                throw new IOException(String.valueOf(cause.getMessage()), cause);
+            } catch(IllegalAccessException ex){
+                throw new IOException("converter is not accessible", ex);
+            } finally{
+                Files.deleteIfExists(temporaryFile);
+            }
+            convertedFiles.incrementAndGet();
+        }
+
+        Files.createDirectories(target.getParent());
+        fileStager.stage(cachedFile, target);
+    }
+
+    private synchronized Method getConvertMethod() throws IOException {
+        if( convertMethod != null ){
+            return convertMethod;
+        }
+        Class<?> css2binClass;
+        try{
+            css2binClass = Class.forName(CSS2BIN_CLASS);
+        } catch(ClassNotFoundException | LinkageError ex){
+            css2binClass = loadFromJavaHome();
+        }
+        try{
+            convertMethod = css2binClass.getMethod("convert", String.class, String.class);
+        } catch(NoSuchMethodException ex){
+            throw new IOException("Found incompatible JavaFX CSS converter", ex);
+        }
+        return convertMethod;
+    }
+
+    private Class<?> loadFromJavaHome() throws IOException {
+        // JavaFX 8 lives inside the extension folder, which might not be visible for maven plugins
+        String javaHome = System.getProperty("java.home");
+        File[] candidates = {
+            new File(javaHome, "lib" + File.separator + "ext" + File.separator + "jfxrt.jar"),
+            new File(javaHome, "lib" + File.separator + "jfxrt.jar")
+        };
+        for( File candidate : candidates ){
+            if( !candidate.isFile() ){
+                continue;
+            }
+            try{
+                URLClassLoader classLoader = new URLClassLoader(new URL[]{candidate.toURI().toURL()}, getClass().getClassLoader());
+                return Class.forName(CSS2BIN_CLASS, true, classLoader);
+            } catch(MalformedURLException | ClassNotFoundException | LinkageError ex){
+                getLog().debug(ex);
+            }
+        }
+        throw new IOException("JavaFX CSS converter not found, converting CSS files requires Java 8 with JavaFX");
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Copies dependencies into the lib-folder, but only when they have changed since the last build. All staged files
+ * are recorded inside a {@link StagingManifest}, files which are not required anymore (e.g. after changing the
+ * version of some dependency) are removed from the lib-folder.
+ * <p>
+ * When having some parallelism greater than 1, files are staged using a bounded pool of worker threads.
+ */
+public class DependencyStager {
+
+    private static final String STORED_VARIANT = "STORED";
+
+    private static final String SHRUNK_VARIANT = "SHRUNK";
+
+    private final File targetFolder;
+
+    private final File manifestFile;
+
+    private final Log logger;
+
+    private FileStager fileStager;
+
+    private final int parallelism;
+
+    private boolean storeJarsUncompressed = false;
+
+    private Map<File, Set<String>> removedEntries = Collections.emptyMap();
+
+    private SharedDependencyStore sharedStore = null;
+
+    private StagingManifest previousManifest;
+
+    private StagingManifest currentManifest;
+
+    private final AtomicInteger copiedFiles = new AtomicInteger();
+
+    private final AtomicInteger unchangedFiles = new AtomicInteger();
+
+    private final AtomicInteger removedFiles = new AtomicInteger();
+
+    public DependencyStager(File targetFolder, File manifestFile, StagingStrategy stagingStrategy, int parallelism, Log logger) {
+        this.targetFolder = targetFolder;
+        this.manifestFile = manifestFile;
+        this.logger = logger;
+        this.fileStager = new FileStager(stagingStrategy, logger);
+        this.parallelism = parallelism;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * @param storeJarsUncompressed true for rewriting all staged jar-files with uncompressed entries, instead of
+     * copying or linking them
+     */
+    public void setStoreJarsUncompressed(boolean storeJarsUncompressed) {
+        this.storeJarsUncompressed = storeJarsUncompressed;
+    }
+
+    /**
+     * @param removedEntries entries to remove from the staged jar-files, by their source file
+     */
+    public void setRemovedEntries(Map<File, Set<String>> removedEntries) {
+        this.removedEntries = removedEntries;
+    }
+
+    /**
+     * @param sharedStore store all files inside this shared store first, the target folder gets linked to the stored
+     * files (when copying was requested, hardlinks are used instead, as stored files never change)
+     */
+    public void setSharedStore(SharedDependencyStore sharedStore) {
+        this.sharedStore = sharedStore;
+        if( sharedStore != null && fileStager.getRequestedStrategy() == StagingStrategy.COPY ){
+            fileStager = new FileStager(StagingStrategy.HARDLINK, getLog());
+        }
+    }
+
+    /**
+     * Stages all given files into the target folder.
+     *
+     * @param files all files which should be present inside the target folder after this call
+     *
+     * @return list of all source files which could not be staged
+     *
+     * @throws IOException when the manifest could not be read or written
+     */
+    public List<String> stage(List<StagedFile> files) throws IOException {
+        String targetFolderPath = targetFolder.getAbsolutePath();
+        previousManifest = PackagingEngine.getInstance().loadStagingManifest(manifestFile);
+        if( !targetFolderPath.equals(previousManifest.getTargetFolder()) ){
+            // we only know about files inside another folder, start from scratch
+            previousManifest = new StagingManifest();
+        }
+        currentManifest = new StagingManifest();
+        currentManifest.setTargetFolder(targetFolderPath);
+
+        removeLeftoverTemporaryFiles();
+
+        List<String> brokenFiles = Collections.synchronizedList(new ArrayList<>());
+        if( parallelism <= 1 || files.size() <= 1 ){
+            files.forEach(file -> stageFileOrRememberBroken(file, brokenFiles));
+        } else {
+            stageInParallel(files, brokenFiles);
+        }
+
+        removeStaleFiles();
+        PackagingEngine.getInstance().saveStagingManifest(currentManifest, manifestFile);
+
+        getLog().info(String.format("Staged dependencies: %s copied, %s unchanged, %s removed", copiedFiles.get(), unchangedFiles.get(), removedFiles.get()));
+        if( copiedFiles.get() > 0 ){
+            getLog().info(String.format("Used staging strategies: %s", fileStager.getReport()));
+        }
+        if( sharedStore != null ){
+            getLog().info(String.format("Shared dependency store: %s", sharedStore.getReport()));
+        }
+        return brokenFiles;
+    }
+
+    private void stageInParallel(List<StagedFile> files, List<String> brokenFiles) throws IOException {
+        ExecutorService executor = ThreadTools.newDaemonThreadPool(Math.min(parallelism, files.size()), "jfx-dependency-staging-");
+        try{
+            List<Future<?>> stagingTasks = files.stream().map(file -> executor.submit(() -> stageFileOrRememberBroken(file, brokenFiles))).collect(Collectors.toList());
+            for( Future<?> stagingTask : stagingTasks ){
+                stagingTask.get();
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while staging dependencies", ex);
+        } catch(ExecutionException ex){
+            throw new IOException("Unexpected problem while staging dependencies", ex.getCause());
+        } finally{
+            executor.shutdownNow();
+        }
+    }
+
+    private void stageFileOrRememberBroken(StagedFile file, List<String> brokenFiles) {
+        try{
+            stageFile(file);
+        } catch(IOException ex){
+            getLog().warn(String.format("Couldn't read from file %s", file.getSource().getAbsolutePath()));
+            getLog().debug(ex);
+            brokenFiles.add(file.getSource().getAbsolutePath());
+        }
+    }
+
+    private void stageFile(StagedFile file) throws IOException {
+        Path source = file.getSource().toPath();
+        Path target = targetFolder.toPath().resolve(file.getTargetFileName());
+
+        long sourceSize = Files.size(source);
+        long sourceLastModified = Files.getLastModifiedTime(source).toMillis();
+
+        StagingManifest.Entry knownEntry = previousManifest.get(file.getTargetFileName());
+        boolean isJar = file.getTargetFileName().toLowerCase(Locale.ROOT).endsWith(".jar");
+        Set<String> removedJarEntries = isJar ? removedEntries.getOrDefault(file.getSource(), Collections.emptySet()) : Collections.emptySet();
+        boolean rewriteJar = isJar && (storeJarsUncompressed || !removedJarEntries.isEmpty());
+        String variant = fileStager.getRequestedStrategy().name();
+        if( rewriteJar ){
+            variant = storeJarsUncompressed ? STORED_VARIANT : SHRUNK_VARIANT;
+            if( !removedJarEntries.isEmpty() ){
+                // some other set of removed entries requires rewriting again
+                variant += "-" + ChecksumTools.sha256(removedJarEntries.stream().sorted().collect(Collectors.joining("\n"))).substring(0, 16);
+            }
+        }
+        boolean targetIntact = knownEntry != null && file.getCoordinates().equals(knownEntry.getCoordinates()) && variant.equals(knownEntry.getVariant()) && isTargetIntact(target, knownEntry);
+
+        // fast path: nothing changed since last time, no need to read any content
+        if( targetIntact && knownEntry.getSourceSize() == sourceSize && knownEntry.getSourceLastModified() == sourceLastModified ){
+            currentManifest.put(file.getTargetFileName(), knownEntry);
+            unchangedFiles.incrementAndGet();
+            return;
+        }
+
+        // source looks different, but might just have been touched (e.g. re-downloaded SNAPSHOT)
+        String sha256 = ChecksumTools.sha256(source);
+        if( targetIntact && sha256.equals(knownEntry.getSha256()) ){
+            knownEntry.setSourceSize(sourceSize);
+            knownEntry.setSourceLastModified(sourceLastModified);
+            currentManifest.put(file.getTargetFileName(), knownEntry);
+            unchangedFiles.incrementAndGet();
+            return;
+        }
+
+        if( rewriteJar ){
+            rewriteJar(source, target, removedJarEntries);
+        } else if( sharedStore != null ){
+            StagingStrategy usedStrategy = fileStager.stage(sharedStore.store(source, sha256), target);
+            getLog().debug(String.format("Staged classpath element from shared dependency store using %s: %s", usedStrategy, source.toAbsolutePath()));
+        } else {
+            StagingStrategy usedStrategy = fileStager.stage(source, target);
+            getLog().debug(String.format("Staged classpath element using %s: %s", usedStrategy, source.toAbsolutePath()));
+        }
+        copiedFiles.incrementAndGet();
+
+        StagingManifest.Entry newEntry = new StagingManifest.Entry();
+        newEntry.setCoordinates(file.getCoordinates());
+        newEntry.setSha256(sha256);
+        newEntry.setVariant(variant);
+        newEntry.setSourceSize(sourceSize);
+        newEntry.setSourceLastModified(sourceLastModified);
+        newEntry.setTargetSize(Files.size(target));
+        newEntry.setTargetLastModified(Files.getLastModifiedTime(target).toMillis());
+        currentManifest.put(file.getTargetFileName(), newEntry);
+    }
+
+    private void rewriteJar(Path source, Path target, Set<String> removedJarEntries) throws IOException {
+        try{
+            JfxJarWriter.rewrite(source.toFile(), target.toFile(), storeJarsUncompressed, removedJarEntries);
+            getLog().debug(String.format("Staged classpath element rewritten (uncompressed: %s, removed entries: %s): %s", storeJarsUncompressed, removedJarEntries.size(), source.toAbsolutePath()));
+        } catch(ZipException ex){
+            // not every file named like some jar-file is one
+            getLog().warn(String.format("Couldn't rewrite %s, staging it as it is", source.toAbsolutePath()));
+            getLog().debug(ex);
+            fileStager.stage(source, target);
+        }
+    }
+
+    private boolean isTargetIntact(Path target, StagingManifest.Entry knownEntry) throws IOException {
+        if( !Files.isRegularFile(target) ){
+            return false;
+        }
+        return Files.size(target) == knownEntry.getTargetSize() && Files.getLastModifiedTime(target).toMillis() == knownEntry.getTargetLastModified();
+    }
+
+    private void removeLeftoverTemporaryFiles() {
+        // might be left when some previous build got killed while staging
+        File[] leftoverFiles = targetFolder.listFiles((folder, name) -> name.endsWith(FileStager.TEMPORARY_FILE_SUFFIX));
+        if( leftoverFiles == null ){
+            return;
+        }
+        for( File leftoverFile : leftoverFiles ){
+            if( !leftoverFile.delete() ){
+                getLog().warn(String.format("Couldn't remove leftover file %s", leftoverFile.getAbsolutePath()));
+            }
+        }
+    }
+
+    private void removeStaleFiles() {
+        // only remove files we have staged ourself, everything else might have been placed by the user
+        previousManifest.getNames().stream().filter(name -> currentManifest.get(name) == null).forEach(name -> {
+            Path staleFile = targetFolder.toPath().resolve(name);
+            try{
+                if( Files.deleteIfExists(staleFile) ){
+                    getLog().debug(String.format("Removed stale classpath element: %s", staleFile.toAbsolutePath()));
+                    removedFiles.incrementAndGet();
+                }
+            } catch(IOException ex){
+                getLog().warn(String.format("Couldn't remove stale file %s", staleFile.toAbsolutePath()));
+                getLog().debug(ex);
+            }
+        });
+    }
+
+    /**
+     * Describes one file which should be staged.
+     */
+    public static class StagedFile {
+
+        private final File source;
+
+        private final String targetFileName;
+
+        private final String coordinates;
+
+        public StagedFile(File source, String targetFileName, String coordinates) {
+            this.source = source;
+            this.targetFileName = targetFileName;
+            this.coordinates = coordinates;
+        }
+
+        public File getSource() {
+            return source;
+        }
+
+        public String getTargetFileName() {
+            return targetFileName;
+        }
+
+        public String getCoordinates() {
+            return coordinates;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Places single files into their target location using the requested {@link StagingStrategy}. When that strategy
+ * is not possible for some file (e.g. hardlinks between different filesystems), a plain copy is done instead.
+ * <p>
+ * Files are staged under some temporary name first and get renamed afterwards, so a half-copied file never shows
+ * up at the target location. This class is safe to be used by multiple threads.
+ */
+public class FileStager {
+
+    public static final String TEMPORARY_FILE_SUFFIX = ".jfxstaging";
+
+    private final StagingStrategy requestedStrategy;
+
+    private final Log logger;
+
+    private final Map<StagingStrategy, Integer> usedStrategies = new EnumMap<>(StagingStrategy.class);
+
+    private volatile boolean requestedStrategyAvailable = true;
+
+    public FileStager(StagingStrategy requestedStrategy, Log logger) {
+        this.requestedStrategy = requestedStrategy;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    public StagingStrategy getRequestedStrategy() {
+        return requestedStrategy;
+    }
+
+    /**
+     * Places the source file at the target location, replacing any existing file.
+     *
+     * @param source the file to stage
+     * @param target the location to stage to
+     *
+     * @return the strategy which was used in the end
+     *
+     * @throws IOException when even copying was not possible
+     */
+    public StagingStrategy stage(Path source, Path target) throws IOException {
+        Path temporaryTarget = target.resolveSibling("." + target.getFileName().toString() + TEMPORARY_FILE_SUFFIX);
+        Files.deleteIfExists(temporaryTarget);
+
+        StagingStrategy usedStrategy = StagingStrategy.COPY;
+        if( requestedStrategy != StagingStrategy.COPY && requestedStrategyAvailable ){
+            try{
+                switch(requestedStrategy) {
+                    case HARDLINK:
+                        Files.createLink(temporaryTarget, source);
+                        break;
+                    case SYMLINK:
+                        Files.createSymbolicLink(temporaryTarget, source.toAbsolutePath());
+                        break;
+                    case REFLINK:
+                        reflink(source, temporaryTarget);
+                        break;
+                    default:
+                        break;
+                }
+                usedStrategy = requestedStrategy;
+            } catch(UnsupportedOperationException ex){
+                // no need to try again for every other file
+                getLog().info(String.format("Staging strategy %s is not supported, falling back to copying files.", requestedStrategy));
+                requestedStrategyAvailable = false;
+            } catch(FileSystemException ex){
+                // most likely source and target are on different filesystems
+                getLog().debug(String.format("Couldn't use staging strategy %s for %s, copying instead: %s", requestedStrategy, source, ex.getMessage()));
+            }
+        }
+
+        if( usedStrategy == StagingStrategy.COPY ){
+            Files.copy(source, temporaryTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+
+        publish(temporaryTarget, target);
+
+        synchronized(usedStrategies){
+            usedStrategies.merge(usedStrategy, 1, Integer::sum);
+        }
+        return usedStrategy;
+    }
+
+    /**
+     * Moves the completely staged temporary file to its final location, replacing any existing file.
+     *
+     * @param temporaryTarget the staged file
+     * @param target the final location
+     *
+     * @throws IOException when moving was not possible
+     */
+    public static void publish(Path temporaryTarget, Path target) throws IOException {
+        try{
+            Files.move(temporaryTarget, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException ex){
+            Files.move(temporaryTarget, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates some summary about which strategies were used, e.g. "hardlink: 12, copy: 1".
+     *
+     * @return summary of used strategies
+     */
+    public String getReport() {
+        List<String> parts = new ArrayList<>();
+        synchronized(usedStrategies){
+            usedStrategies.forEach((strategy, count) -> parts.add(strategy.name().toLowerCase() + ": " + count));
+        }
+        if( parts.isEmpty() ){
+            return "nothing staged";
+        }
+        return String.join(", ", parts);
+    }
+
+    private void reflink(Path source, Path target) throws IOException {
+        // there is no java API for this, so use the tools of the OS (which know how to talk to the filesystem)
+        String osName = System.getProperty("os.name").toLowerCase();
+        List<String> command = new ArrayList<>();
+        command.add("cp");
+        if( osName.startsWith("linux") ){
+            command.add("--reflink=always");
+        } else if( osName.contains("os x") || osName.contains("mac") ){
+            command.add("-c");
+        } else {
+            throw new UnsupportedOperationException("reflinks are not supported on " + osName);
+        }
+        command.add(source.toAbsolutePath().toString());
+        command.add(target.toAbsolutePath().toString());
+
+        Process p;
+        try{
+            ProcessBuilder processBuilder = new ProcessBuilder().command(command).redirectErrorStream(true);
+            // the error message gets checked below, so it must not be translated
+            processBuilder.environment().put("LC_ALL", "C");
+            p = processBuilder.start();
+        } catch(IOException ex){
+            throw new UnsupportedOperationException("cp is not available for creating reflinks", ex);
+        }
+        try{
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while( (read = p.getInputStream().read(buffer)) != -1 ){
+                output.write(buffer, 0, read);
+            }
+            if( p.waitFor() != 0 ){
+                Files.deleteIfExists(target);
+                String message = new String(output.toByteArray(), Charset.defaultCharset()).trim();
+                if( message.toLowerCase(Locale.ROOT).contains("not supported") ){
+                    // filesystem does not support cloning, so it won't work for any other file too
+                    throw new UnsupportedOperationException("filesystem does not support reflinks: " + message);
+                }
+                // e.g. some target on another filesystem, only this file gets copied instead
+                throw new FileSystemException(source.toString(), target.toString(), message);
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating reflink", ex);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Small helper for file operations shared by the different build steps.
+ */
+public class FileTools {
+
+    private FileTools() {
+        // utility class
+    }
+
+    /**
+     * Deletes the given file or folder including all its content, does nothing when it does not exist.
+     *
+     * @param path the file or folder to delete
+     *
+     * @throws IOException when something could not be deleted
+     */
+    public static void deleteRecursive(Path path) throws IOException {
+        if( !Files.exists(path) ){
+            return;
+        }
+        List<Path> paths;
+        try(Stream<Path> walkedPaths = Files.walk(path)){
+            paths = walkedPaths.sorted(Collections.reverseOrder()).collect(Collectors.toList());
+        }
+        for( Path walkedPath : paths ){
+            Files.deleteIfExists(walkedPath);
+        }
+    }
+}
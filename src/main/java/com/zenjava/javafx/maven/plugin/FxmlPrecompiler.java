@@ -0,0 +1,379 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.apache.maven.plugin.logging.Log;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Compiles all FXML files of some folder into Java classes (see {@link FxmlSourceGenerator}), so the application
+ * does not have to parse them while starting. FXML files using unsupported features are reported and have to be
+ * loaded by the FXMLLoader as before.
+ * <p>
+ * All compiled FXML files are listed inside {@value #INDEX_NAME}, mapping the path of each FXML file to its
+ * generated class. Together with the generated classes the helper {@value #LOADER_CLASSNAME} gets compiled, which
+ * looks up that index and falls back to the FXMLLoader for FXML files which were not compiled.
+ */
+public class FxmlPrecompiler {
+
+    public static final String INDEX_NAME = "META-INF/compiled-fxml.properties";
+
+    /**
+     * Manifest attribute pointing at the index, added to the JavaFX JAR when some FXML file got compiled.
+     */
+    public static final String MANIFEST_ATTRIBUTE = "JavaFX-Compiled-FXML";
+
+    public static final String LOADER_CLASSNAME = "com.zenjava.javafx.fxml.CompiledFxmlLoader";
+
+    private static final String[] LOADER_SOURCE = {
+        "// Generated by javafx-maven-plugin, do not edit.",
+        "package com.zenjava.javafx.fxml;",
+        "",
+        "/**",
+        " * Loads FXML files using the classes generated by javafx-maven-plugin, FXML files which were not compiled are",
+        " * loaded by the FXMLLoader. Paths are resolved like Class.getResource, relative to the package of the given class.",
+        " */",
+        "@SuppressWarnings(\"unchecked\")",
+        "public final class CompiledFxmlLoader {",
+        "",
+        "    public static final String INDEX_NAME = \"" + INDEX_NAME + "\";",
+        "",
+        "    private final ClassLoader classLoader;",
+        "",
+        "    private final String fxmlPath;",
+        "",
+        "    private java.util.ResourceBundle resources;",
+        "",
+        "    private Object controller;",
+        "",
+        "    private boolean compiled;",
+        "",
+        "    public CompiledFxmlLoader(Class<?> context, String fxmlName) {",
+        "        this.classLoader = context.getClassLoader() == null ? ClassLoader.getSystemClassLoader() : context.getClassLoader();",
+        "        if (fxmlName.startsWith(\"/\")) {",
+        "            this.fxmlPath = fxmlName.substring(1);",
+        "        } else {",
+        "            String className = context.getName();",
+        "            int packageEnd = className.lastIndexOf('.');",
+        "            this.fxmlPath = packageEnd < 0 ? fxmlName : className.substring(0, packageEnd).replace('.', '/') + \"/\" + fxmlName;",
+        "        }",
+        "    }",
+        "",
+        "    public static <T> T load(Class<?> context, String fxmlName) throws java.io.IOException {",
+        "        return new CompiledFxmlLoader(context, fxmlName).load();",
+        "    }",
+        "",
+        "    public void setResources(java.util.ResourceBundle resources) {",
+        "        this.resources = resources;",
+        "    }",
+        "",
+        "    public void setController(Object controller) {",
+        "        this.controller = controller;",
+        "    }",
+        "",
+        "    public <T> T getController() {",
+        "        return (T) controller;",
+        "    }",
+        "",
+        "    /**",
+        "     * @return true when the last call of load() used the compiled form",
+        "     */",
+        "    public boolean isCompiled() {",
+        "        return compiled;",
+        "    }",
+        "",
+        "    public <T> T load() throws java.io.IOException {",
+        "        String compiledClassName = findCompiledClassName();",
+        "        if (compiledClassName != null) {",
+        "            try {",
+        "                Object compiledFxml = Class.forName(compiledClassName, true, classLoader).getDeclaredConstructor().newInstance();",
+        "                Object root = ((java.util.function.BiFunction<Object, java.util.ResourceBundle, Object>) compiledFxml).apply(controller, resources);",
+        "                controller = compiledFxml.getClass().getMethod(\"getController\").invoke(compiledFxml);",
+        "                compiled = true;",
+        "                return (T) root;",
+        "            } catch (ReflectiveOperationException ex) {",
+        "                throw new java.io.IOException(\"Could not load compiled FXML /\" + fxmlPath, ex);",
+        "            }",
+        "        }",
+        "        java.net.URL location = classLoader.getResource(fxmlPath);",
+        "        if (location == null) {",
+        "            throw new java.io.IOException(\"FXML file /\" + fxmlPath + \" not found on the classpath\");",
+        "        }",
+        "        javafx.fxml.FXMLLoader fxmlLoader = new javafx.fxml.FXMLLoader(location, resources);",
+        "        if (controller != null) {",
+        "            fxmlLoader.setController(controller);",
+        "        }",
+        "        T root = fxmlLoader.load();",
+        "        controller = fxmlLoader.getController();",
+        "        compiled = false;",
+        "        return root;",
+        "    }",
+        "",
+        "    private String findCompiledClassName() throws java.io.IOException {",
+        "        java.util.Enumeration<java.net.URL> indexFiles = classLoader.getResources(INDEX_NAME);",
+        "        while (indexFiles.hasMoreElements()) {",
+        "            java.util.Properties index = new java.util.Properties();",
+        "            try (java.io.InputStream indexStream = indexFiles.nextElement().openStream()) {",
+        "                index.load(indexStream);",
+        "            }",
+        "            String compiledClassName = index.getProperty(fxmlPath);",
+        "            if (compiledClassName != null) {",
+        "                return compiledClassName;",
+        "            }",
+        "        }",
+        "        return null;",
+        "    }",
+        "}"
+    };
+
+
+    private final List<File> classpath;
+
+    private final String targetVersion;
+
+    private final Log logger;
+
+    /**
+     * @param classpath all dependencies required for loading the classes used by the FXML files
+     * @param targetVersion Java version the generated classes are compiled for, or null for the version of the
+     * used compiler
+     * @param logger the logger
+     */
+    public FxmlPrecompiler(List<File> classpath, String targetVersion, Log logger) {
+        this.classpath = classpath;
+        this.targetVersion = targetVersion;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * Compiles all FXML files of the classes-folder. All previous content of the sources- and output-folder is
+     * removed.
+     *
+     * @param classesFolder folder containing the FXML files and the compiled classes of the project
+     * @param sourcesFolder folder receiving the generated sources
+     * @param outputFolder folder receiving the compiled classes and the index
+     *
+     * @return all FXML files which could not be compiled, including the reason
+     *
+     * @throws IOException when the folders could not be processed
+     */
+    public List<String> compile(Path classesFolder, Path sourcesFolder, Path outputFolder) throws IOException {
+        FileTools.deleteRecursive(sourcesFolder);
+        FileTools.deleteRecursive(outputFolder);
+        Files.createDirectories(sourcesFolder);
+        Files.createDirectories(outputFolder);
+
+        List<Path> fxmlFiles;
+        try(Stream<Path> walkedPaths = Files.walk(classesFolder)){
+            fxmlFiles = walkedPaths.filter(path -> Files.isRegularFile(path) && path.getFileName().toString().toLowerCase().endsWith(".fxml")).sorted().collect(Collectors.toList());
+        }
+
+        Map<String, String> failures = new TreeMap<>();
+        if( fxmlFiles.isEmpty() ){
+            return new ArrayList<>();
+        }
+
+        // generated source-file mapped to the FXML file and its class
+        Map<Path, String[]> generatedSources = new LinkedHashMap<>();
+        try(URLClassLoader projectClassLoader = createProjectClassLoader(classesFolder)){
+            for( Path fxmlFile : fxmlFiles ){
+                String fxmlPath = classesFolder.relativize(fxmlFile).toString().replace("\\", "/");
+                try{
+                    FxmlSourceGenerator sourceGenerator = new FxmlSourceGenerator(fxmlPath, projectClassLoader);
+                    String className = sourceGenerator.getClassName();
+                    String classFileName = className.replace('.', '/') + ".class";
+                    if( Files.exists(classesFolder.resolve(classFileName)) ){
+                        throw new FxmlSourceGenerator.UnsupportedFxmlException(String.format("class %s already exists", className));
+                    }
+                    String source = sourceGenerator.generate(parse(fxmlFile));
+                    Path sourceFile = sourcesFolder.resolve(className.replace('.', '/') + ".java").toAbsolutePath().normalize();
+                    Files.createDirectories(sourceFile.getParent());
+                    Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+                    generatedSources.put(sourceFile, new String[]{fxmlPath, className});
+                } catch(FxmlSourceGenerator.UnsupportedFxmlException ex){
+                    failures.put(fxmlPath, ex.getMessage());
+                } catch(SAXException ex){
+                    failures.put(fxmlPath, "invalid XML: " + ex.getMessage());
+                }
+            }
+        }
+
+        if( !generatedSources.isEmpty() ){
+            String loaderFileName = LOADER_CLASSNAME.replace('.', '/') + ".java";
+            Path loaderSourceFile = sourcesFolder.resolve(loaderFileName).toAbsolutePath().normalize();
+            Files.createDirectories(loaderSourceFile.getParent());
+            Files.write(loaderSourceFile, (String.join("\n", LOADER_SOURCE) + "\n").getBytes(StandardCharsets.UTF_8));
+            generatedSources.put(loaderSourceFile, new String[]{loaderFileName, LOADER_CLASSNAME});
+        }
+
+        Map<String, String> compiledClasses = new TreeMap<>();
+        compileSources(generatedSources, classesFolder, outputFolder, failures).stream()
+                .filter(compiled -> !LOADER_CLASSNAME.equals(compiled[1]))
+                .forEach(compiled -> compiledClasses.put(compiled[0], compiled[1]));
+        String loaderFailure = failures.remove(LOADER_CLASSNAME.replace('.', '/') + ".java");
+        if( loaderFailure != null ){
+            getLog().warn(String.format("Couldn't compile %s, the compiled FXML files have to be used directly: %s", LOADER_CLASSNAME, loaderFailure));
+        }
+        if( compiledClasses.isEmpty() ){
+            // the loader is of no use without any compiled FXML file
+            FileTools.deleteRecursive(outputFolder);
+            Files.createDirectories(outputFolder);
+        }
+        writeIndex(outputFolder.resolve(INDEX_NAME), compiledClasses);
+
+        getLog().info(String.format("Compiled %s of %s FXML files", compiledClasses.size(), fxmlFiles.size()));
+        List<String> failureReport = new ArrayList<>();
+        failures.forEach((fxmlPath, reason) -> failureReport.add(String.format("%s (%s)", fxmlPath, reason)));
+        return failureReport;
+    }
+
+    private List<String[]> compileSources(Map<Path, String[]> generatedSources, Path classesFolder, Path outputFolder, Map<String, String> failures) throws IOException {
+        Map<Path, String[]> remainingSources = new LinkedHashMap<>(generatedSources);
+        if( remainingSources.isEmpty() ){
+            return new ArrayList<>();
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if( compiler == null ){
+            remainingSources.values().forEach(compiled -> failures.put(compiled[0], "no Java compiler available, please run Maven using some JDK"));
+            return new ArrayList<>();
+        }
+
+        List<String> classpathElements = new ArrayList<>();
+        classpathElements.add(classesFolder.toAbsolutePath().toString());
+        classpath.forEach(classpathElement -> classpathElements.add(classpathElement.getAbsolutePath()));
+        List<String> options = new ArrayList<>(Arrays.asList("-d", outputFolder.toAbsolutePath().toString(), "-classpath", String.join(File.pathSeparator, classpathElements), "-encoding", "UTF-8", "-nowarn", "-Xlint:-options"));
+        if( targetVersion != null && !targetVersion.trim().isEmpty() ){
+            options.addAll(Arrays.asList("-source", targetVersion.trim(), "-target", targetVersion.trim()));
+        }
+
+        // sources failing to compile are removed and the rest gets compiled again
+        while( !remainingSources.isEmpty() ){
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            boolean success;
+            try(StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8)){
+                Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(remainingSources.keySet().stream().map(Path::toFile).collect(Collectors.toList()));
+                success = compiler.getTask(new StringWriter(), fileManager, diagnostics, options, null, compilationUnits).call();
+            }
+            if( success ){
+                break;
+            }
+
+            Set<Path> failedSources = new HashSet<>();
+            for( Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics() ){
+                if( diagnostic.getKind() != Diagnostic.Kind.ERROR || diagnostic.getSource() == null ){
+                    continue;
+                }
+                Path failedSource = Paths.get(diagnostic.getSource().toUri()).toAbsolutePath().normalize();
+                String[] compiled = remainingSources.get(failedSource);
+                if( compiled != null && failedSources.add(failedSource) ){
+                    String message = diagnostic.getMessage(Locale.ROOT).split("\\R", 2)[0];
+                    failures.put(compiled[0], String.format("generated class does not compile, line %s: %s", diagnostic.getLineNumber(), message));
+                }
+            }
+            FileTools.deleteRecursive(outputFolder);
+            Files.createDirectories(outputFolder);
+            if( failedSources.isEmpty() ){
+                String message = diagnostics.getDiagnostics().stream().map(diagnostic -> diagnostic.getMessage(Locale.ROOT)).findFirst().orElse("unknown compiler error");
+                remainingSources.values().forEach(compiled -> failures.put(compiled[0], "compiler failed: " + message));
+                remainingSources.clear();
+            }
+            remainingSources.keySet().removeAll(failedSources);
+        }
+        return new ArrayList<>(remainingSources.values());
+    }
+
+    private URLClassLoader createProjectClassLoader(Path classesFolder) throws MalformedURLException {
+        List<URL> urls = new ArrayList<>();
+        urls.add(classesFolder.toUri().toURL());
+        for( File classpathElement : classpath ){
+            urls.add(classpathElement.toURI().toURL());
+        }
+        // the parent of the system classloader sees the extensions of Java 8 (like jfxrt.jar), but not maven itself
+        return new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    private Document parse(Path fxmlFile) throws IOException, SAXException {
+        try(InputStream fxmlStream = Files.newInputStream(fxmlFile)){
+            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            documentBuilderFactory.setNamespaceAware(true);
+            documentBuilderFactory.setExpandEntityReferences(true);
+            return documentBuilderFactory.newDocumentBuilder().parse(fxmlStream);
+        } catch(ParserConfigurationException ex){
+            throw new IOException("Could not create XML parser", ex);
+        }
+    }
+
+    private void writeIndex(Path indexFile, Map<String, String> compiledClasses) throws IOException {
+        if( compiledClasses.isEmpty() ){
+            return;
+        }
+        StringBuilder index = new StringBuilder();
+        index.append("# FXML files compiled by javafx-maven-plugin, mapped to their generated class\n");
+        compiledClasses.forEach((fxmlPath, className) -> index.append(escapePropertyKey(fxmlPath)).append("=").append(className).append("\n"));
+        Files.createDirectories(indexFile.getParent());
+        Files.write(indexFile, index.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private String escapePropertyKey(String key) {
+        StringBuilder escapedKey = new StringBuilder();
+        for( char character : key.toCharArray() ){
+            if( character == ' ' || character == ':' || character == '=' || character == '\\' || character == '#' || character == '!' ){
+                escapedKey.append('\\').append(character);
+            } else if( character > 0x7e ){
+                escapedKey.append(String.format("\\u%04x", (int) character));
+            } else {
+                escapedKey.append(character);
+            }
+        }
+        return escapedKey.toString();
+    }
+}
@@ -0,0 +1,926 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.SourceVersion;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Translates one FXML document into the source of a Java class, which creates the same scene graph as the
+ * FXMLLoader would do, but without parsing XML and resolving properties at runtime. All types and properties are
+ * resolved while building, using the classes of the project.
+ * <p>
+ * Only a subset of FXML is supported: instance elements (using the default constructor, @NamedArg-constructors,
+ * fx:value, fx:constant or fx:factory), property attributes and elements, static properties, fx:id, fx:controller,
+ * event handlers referencing controller methods, resource keys ("%") and locations ("@"). Everything else (like
+ * fx:include, fx:define, fx:root, scripts, expressions and bindings) makes the document unsupported.
+ * <p>
+ * The generated class implements BiFunction&lt;Object, ResourceBundle, Object&gt;, it takes the controller (or null
+ * for creating the one specified by fx:controller) and the resources, and returns the root element.
+ */
+public class FxmlSourceGenerator {
+
+    public static final String CLASSNAME_SUFFIX = "_fxml";
+
+    private static final String FXML_NAMESPACE_PREFIX = "http://javafx.com/fxml";
+
+    private static final String XMLNS_NAMESPACE = "http://www.w3.org/2000/xmlns/";
+
+    private static final String NAMED_ARG_ANNOTATION = "javafx.beans.NamedArg";
+
+    private static final String DEFAULT_PROPERTY_ANNOTATION = "javafx.beans.DefaultProperty";
+
+    private static final String EVENT_HANDLER_CLASS = "javafx.event.EventHandler";
+
+    private static final String INDENTATION = "        ";
+
+    private static final String[] HELPER_METHODS = {
+        "    private static void inject(Object controller, String name, Object value) throws IllegalAccessException {",
+        "        if (controller == null) {",
+        "            return;",
+        "        }",
+        "        for (Class<?> type = controller.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {",
+        "            for (java.lang.reflect.Field field : type.getDeclaredFields()) {",
+        "                if (field.getName().equals(name) && !java.lang.reflect.Modifier.isStatic(field.getModifiers())",
+        "                        && (java.lang.reflect.Modifier.isPublic(field.getModifiers()) || field.isAnnotationPresent(javafx.fxml.FXML.class))) {",
+        "                    field.setAccessible(true);",
+        "                    field.set(controller, value);",
+        "                    return;",
+        "                }",
+        "            }",
+        "        }",
+        "    }",
+        "",
+        "    private static java.lang.reflect.Method findControllerMethod(Object controller, String name, boolean eventHandler) {",
+        "        for (Class<?> type = controller.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {",
+        "            for (java.lang.reflect.Method method : type.getDeclaredMethods()) {",
+        "                Class<?>[] parameterTypes = method.getParameterTypes();",
+        "                boolean matchingParameters = parameterTypes.length == 0",
+        "                        || (eventHandler && parameterTypes.length == 1 && javafx.event.Event.class.isAssignableFrom(parameterTypes[0]));",
+        "                if (method.getName().equals(name) && matchingParameters && !java.lang.reflect.Modifier.isStatic(method.getModifiers())",
+        "                        && (java.lang.reflect.Modifier.isPublic(method.getModifiers()) || method.isAnnotationPresent(javafx.fxml.FXML.class))) {",
+        "                    method.setAccessible(true);",
+        "                    return method;",
+        "                }",
+        "            }",
+        "        }",
+        "        return null;",
+        "    }",
+        "",
+        "    private static <T extends javafx.event.Event> javafx.event.EventHandler<T> handler(final Object controller, String name) {",
+        "        final java.lang.reflect.Method method = controller == null ? null : findControllerMethod(controller, name, true);",
+        "        if (method == null) {",
+        "            throw new IllegalStateException(\"Error resolving event handler #\" + name + \", controller has no such method\");",
+        "        }",
+        "        return new javafx.event.EventHandler<T>() {",
+        "            @Override",
+        "            public void handle(T event) {",
+        "                try {",
+        "                    if (method.getParameterTypes().length == 0) {",
+        "                        method.invoke(controller);",
+        "                    } else {",
+        "                        method.invoke(controller, event);",
+        "                    }",
+        "                } catch (IllegalAccessException ex) {",
+        "                    throw new IllegalStateException(ex);",
+        "                } catch (java.lang.reflect.InvocationTargetException ex) {",
+        "                    if (ex.getCause() instanceof RuntimeException) {",
+        "                        throw (RuntimeException) ex.getCause();",
+        "                    }",
+        "                    throw new IllegalStateException(ex.getCause());",
+        "                }",
+        "            }",
+        "        };",
+        "    }",
+        "",
+        "    private static void initialize(Object controller, java.net.URL location, java.util.ResourceBundle resources) throws Exception {",
+        "        if (controller == null) {",
+        "            return;",
+        "        }",
+        "        inject(controller, \"location\", location);",
+        "        inject(controller, \"resources\", resources);",
+        "        if (controller instanceof javafx.fxml.Initializable) {",
+        "            ((javafx.fxml.Initializable) controller).initialize(location, resources);",
+        "            return;",
+        "        }",
+        "        java.lang.reflect.Method initializeMethod = findControllerMethod(controller, \"initialize\", false);",
+        "        if (initializeMethod != null) {",
+        "            initializeMethod.invoke(controller);",
+        "        }",
+        "    }",
+        "",
+        "    private String resource(String name) {",
+        "        java.net.URL resource = getClass().getClassLoader().getResource(name);",
+        "        if (resource == null) {",
+        "            throw new IllegalStateException(\"Invalid resource: /\" + name + \" not found on the classpath\");",
+        "        }",
+        "        return resource.toString();",
+        "    }"
+    };
+
+    private final String fxmlPath;
+
+    private final ClassLoader classLoader;
+
+    private final String packageName;
+
+    private final String simpleClassName;
+
+    private final Map<String, String> importedClasses = new HashMap<>();
+
+    private final List<String> importedPackages = new ArrayList<>(Arrays.asList("java.lang"));
+
+    private final StringBuilder body = new StringBuilder();
+
+    private int variableCounter = 0;
+
+    private String controllerClassName;
+
+    /**
+     * @param fxmlPath path of the FXML file relative to the classes-folder, using "/" as separator
+     * @param classLoader classloader having access to all classes used by the FXML file
+     *
+     * @throws UnsupportedFxmlException when no valid class name can be derived from the path
+     */
+    public FxmlSourceGenerator(String fxmlPath, ClassLoader classLoader) throws UnsupportedFxmlException {
+        this.fxmlPath = fxmlPath;
+        this.classLoader = classLoader;
+
+        int lastSlash = fxmlPath.lastIndexOf('/');
+        this.packageName = lastSlash < 0 ? "" : fxmlPath.substring(0, lastSlash).replace('/', '.');
+        if( !packageName.isEmpty() && !SourceVersion.isName(packageName) ){
+            throw new UnsupportedFxmlException("folder is not a valid Java package name");
+        }
+
+        String fileName = fxmlPath.substring(lastSlash + 1);
+        int extensionStart = fileName.lastIndexOf('.');
+        StringBuilder className = new StringBuilder();
+        for( char character : (extensionStart < 0 ? fileName : fileName.substring(0, extensionStart)).toCharArray() ){
+            className.append(Character.isJavaIdentifierPart(character) ? character : '_');
+        }
+        if( className.length() == 0 || !Character.isJavaIdentifierStart(className.charAt(0)) ){
+            className.insert(0, '_');
+        }
+        this.simpleClassName = className.append(CLASSNAME_SUFFIX).toString();
+    }
+
+    public String getClassName() {
+        return packageName.isEmpty() ? simpleClassName : packageName + "." + simpleClassName;
+    }
+
+    /**
+     * @param document the parsed FXML document, parsed with namespaces enabled
+     *
+     * @return source of the generated class
+     *
+     * @throws UnsupportedFxmlException when the document uses some unsupported FXML feature
+     */
+    public String generate(Document document) throws UnsupportedFxmlException {
+        NodeList documentNodes = document.getChildNodes();
+        for( int i = 0; i < documentNodes.getLength(); i++ ){
+            Node documentNode = documentNodes.item(i);
+            if( documentNode.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE ){
+                processInstruction(documentNode.getNodeName(), documentNode.getNodeValue());
+            }
+        }
+
+        String rootVariable = writeInstance(document.getDocumentElement(), true).variable;
+
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated by javafx-maven-plugin from ").append(fxmlPath).append(", do not edit.\n");
+        if( !packageName.isEmpty() ){
+            source.append("package ").append(packageName).append(";\n");
+        }
+        source.append("\n");
+        source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        source.append("public final class ").append(simpleClassName).append(" implements java.util.function.BiFunction<Object, java.util.ResourceBundle, Object> {\n\n");
+        source.append("    private static final String FXML_RESOURCE = ").append(quote("/" + fxmlPath)).append(";\n\n");
+        source.append("    private Object controller;\n\n");
+        source.append("    public Object getController() {\n");
+        source.append("        return controller;\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public Object apply(Object givenController, java.util.ResourceBundle resources) {\n");
+        source.append("        try {\n");
+        source.append("            return load(givenController, resources);\n");
+        source.append("        } catch (RuntimeException ex) {\n");
+        source.append("            throw ex;\n");
+        source.append("        } catch (Exception ex) {\n");
+        source.append("            throw new IllegalStateException(\"Could not load compiled FXML \" + FXML_RESOURCE, ex);\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+        source.append("    private Object load(Object givenController, java.util.ResourceBundle resources) throws Exception {\n");
+        source.append("        final java.net.URL location = ").append(simpleClassName).append(".class.getResource(FXML_RESOURCE);\n");
+        if( controllerClassName == null ){
+            source.append("        final Object controller = givenController;\n");
+        } else {
+            source.append("        final Object controller = givenController != null ? givenController : Class.forName(")
+                    .append(quote(controllerClassName)).append(", true, ").append(simpleClassName)
+                    .append(".class.getClassLoader()).getDeclaredConstructor().newInstance();\n");
+        }
+        source.append("        this.controller = controller;\n");
+        source.append(body);
+        source.append("        initialize(controller, location, resources);\n");
+        source.append("        return ").append(rootVariable).append(";\n");
+        source.append("    }\n\n");
+        source.append(String.join("\n", HELPER_METHODS)).append("\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private void processInstruction(String target, String data) throws UnsupportedFxmlException {
+        if( "language".equals(target) ){
+            throw new UnsupportedFxmlException("scripts are not supported");
+        }
+        if( !"import".equals(target) ){
+            return;
+        }
+        String importName = data.trim();
+        if( importName.endsWith(".*") ){
+            importedPackages.add(importName.substring(0, importName.length() - 2));
+        } else {
+            importedClasses.put(importName.substring(importName.lastIndexOf('.') + 1), importName);
+        }
+    }
+
+    @SuppressWarnings("cyclomaticcomplexity")
+    private Instance writeInstance(Element element, boolean root) throws UnsupportedFxmlException {
+        if( isFxmlNamespace(element.getNamespaceURI()) ){
+            throw new UnsupportedFxmlException(String.format("<fx:%s> is not supported", element.getLocalName()));
+        }
+        Class<?> type = resolveClass(element.getLocalName());
+
+        String fxId = null;
+        String fxValue = null;
+        String fxConstant = null;
+        String fxFactory = null;
+        Map<String, String> properties = new LinkedHashMap<>();
+        NamedNodeMap attributes = element.getAttributes();
+        for( int i = 0; i < attributes.getLength(); i++ ){
+            Attr attribute = (Attr) attributes.item(i);
+            String namespace = attribute.getNamespaceURI();
+            if( XMLNS_NAMESPACE.equals(namespace) ){
+                continue;
+            }
+            if( namespace == null ){
+                properties.put(attribute.getName(), attribute.getValue());
+                continue;
+            }
+            if( !isFxmlNamespace(namespace) ){
+                throw new UnsupportedFxmlException(String.format("attribute %s is not supported", attribute.getName()));
+            }
+            switch(attribute.getLocalName()) {
+                case "id":
+                    fxId = attribute.getValue();
+                    break;
+                case "controller":
+                    if( !root ){
+                        throw new UnsupportedFxmlException("fx:controller is only allowed on the root element");
+                    }
+                    controllerClassName = attribute.getValue().trim();
+                    break;
+                case "value":
+                    fxValue = attribute.getValue();
+                    break;
+                case "constant":
+                    fxConstant = attribute.getValue();
+                    break;
+                case "factory":
+                    fxFactory = attribute.getValue();
+                    break;
+                default:
+                    throw new UnsupportedFxmlException(String.format("fx:%s is not supported", attribute.getLocalName()));
+            }
+        }
+
+        Instance instance;
+        if( fxValue != null || fxConstant != null ){
+            if( !properties.isEmpty() || hasChildElements(element) ){
+                throw new UnsupportedFxmlException(String.format("<%s> using fx:value or fx:constant must not have properties", element.getTagName()));
+            }
+            instance = fxValue != null ? writeValueOf(type, fxValue) : writeConstant(type, fxConstant);
+        } else if( fxFactory != null ){
+            instance = writeFactory(type, fxFactory);
+        } else {
+            instance = writeConstructor(type, properties);
+        }
+
+        if( fxId != null ){
+            writeLine("inject(controller, %s, %s);", quote(fxId), instance.variable);
+            if( !properties.containsKey("id") && findSetter(instance.type, "id") != null ){
+                writeLine("%s.setId(%s);", instance.variable, quote(fxId));
+            }
+        }
+
+        for( Map.Entry<String, String> property : properties.entrySet() ){
+            writePropertyAttribute(instance, property.getKey(), property.getValue());
+        }
+
+        writeChildren(instance, element);
+        return instance;
+    }
+
+    private Instance writeValueOf(Class<?> type, String value) throws UnsupportedFxmlException {
+        if( type == String.class ){
+            return declare(type, quote(value));
+        }
+        Method valueOfMethod = findStaticMethod(type, "valueOf", String.class);
+        if( valueOfMethod == null ){
+            throw new UnsupportedFxmlException(String.format("%s has no valueOf-method for fx:value", type.getName()));
+        }
+        return declare(type, String.format("%s.valueOf(%s)", getSourceName(type), quote(value)));
+    }
+
+    private Instance writeConstant(Class<?> type, String constantName) throws UnsupportedFxmlException {
+        try{
+            Field constant = type.getField(constantName);
+            if( !Modifier.isStatic(constant.getModifiers()) ){
+                throw new UnsupportedFxmlException(String.format("%s.%s is not a constant", type.getName(), constantName));
+            }
+            return declare(constant.getType(), String.format("%s.%s", getSourceName(type), constantName));
+        } catch(NoSuchFieldException | LinkageError ex){
+            throw new UnsupportedFxmlException(String.format("constant %s.%s not found", type.getName(), constantName));
+        }
+    }
+
+    private Instance writeFactory(Class<?> type, String factoryName) throws UnsupportedFxmlException {
+        Method factoryMethod = findStaticMethod(type, factoryName);
+        if( factoryMethod == null ){
+            throw new UnsupportedFxmlException(String.format("factory method %s.%s() not found", type.getName(), factoryName));
+        }
+        return declare(factoryMethod.getReturnType(), String.format("%s.%s()", getSourceName(type), factoryName));
+    }
+
+    private Instance writeConstructor(Class<?> type, Map<String, String> properties) throws UnsupportedFxmlException {
+        if( Modifier.isAbstract(type.getModifiers()) || type.isInterface() ){
+            throw new UnsupportedFxmlException(String.format("%s can not be instantiated", type.getName()));
+        }
+        try{
+            type.getConstructor();
+            return declare(type, String.format("new %s()", getSourceName(type)));
+        } catch(NoSuchMethodException | LinkageError ex){
+            // no default constructor, might be created using its named arguments
+        }
+
+        Constructor<?> bestConstructor = null;
+        int bestMatches = -1;
+        for( Constructor<?> constructor : type.getConstructors() ){
+            List<String> argumentNames = getNamedArguments(constructor);
+            if( argumentNames == null ){
+                continue;
+            }
+            // all properties without setter have to be passed as arguments
+            boolean allCovered = true;
+            int matches = 0;
+            for( String property : properties.keySet() ){
+                if( argumentNames.contains(property) ){
+                    matches++;
+                } else if( !property.contains(".") && findSetter(type, property) == null && findGetter(type, property) == null ){
+                    allCovered = false;
+                }
+            }
+            boolean isBetter = matches > bestMatches || (matches == bestMatches && constructor.getParameterCount() < bestConstructor.getParameterCount());
+            if( allCovered && isBetter ){
+                bestConstructor = constructor;
+                bestMatches = matches;
+            }
+        }
+        if( bestConstructor == null ){
+            throw new UnsupportedFxmlException(String.format("%s has neither a default constructor nor some matching constructor using @NamedArg", type.getName()));
+        }
+
+        List<String> argumentNames = getNamedArguments(bestConstructor);
+        List<String> argumentDefaults = getNamedArgumentDefaults(bestConstructor);
+        Class<?>[] parameterTypes = bestConstructor.getParameterTypes();
+        List<String> arguments = new ArrayList<>();
+        for( int i = 0; i < parameterTypes.length; i++ ){
+            String property = argumentNames.get(i);
+            String argument;
+            if( properties.containsKey(property) ){
+                argument = coerce(properties.remove(property), parameterTypes[i]);
+            } else if( !argumentDefaults.get(i).isEmpty() ){
+                argument = coerceLiteral(argumentDefaults.get(i), parameterTypes[i]);
+            } else {
+                argument = getDefaultValue(parameterTypes[i]);
+            }
+            // casting makes sure the right constructor gets chosen
+            arguments.add(String.format("(%s) %s", getSourceName(parameterTypes[i]), argument));
+        }
+        return declare(type, String.format("new %s(%s)", getSourceName(type), String.join(", ", arguments)));
+    }
+
+    private void writePropertyAttribute(Instance instance, String name, String value) throws UnsupportedFxmlException {
+        if( name.contains(".") ){
+            writeStaticProperty(instance, name, value);
+            return;
+        }
+        if( name.length() > 2 && name.startsWith("on") && Character.isUpperCase(name.charAt(2)) ){
+            writeEventHandler(instance, name, value);
+            return;
+        }
+        writeProperty(instance, name, value);
+    }
+
+    private void writeProperty(Instance instance, String name, String value) throws UnsupportedFxmlException {
+        Method setter = findSetter(instance.type, name);
+        if( setter != null ){
+            writeLine("%s.%s(%s);", instance.variable, setter.getName(), coerce(value, setter.getParameterTypes()[0]));
+            return;
+        }
+        Method getter = findGetter(instance.type, name);
+        if( getter == null || !List.class.isAssignableFrom(getter.getReturnType()) ){
+            throw new UnsupportedFxmlException(String.format("property %s of %s is not writable", name, instance.type.getName()));
+        }
+        // list properties get a comma separated list of values
+        Class<?> elementType = getListElementType(getter);
+        for( String element : value.split(",") ){
+            writeLine("%s.%s().add(%s);", instance.variable, getter.getName(), coerce(element.trim(), elementType));
+        }
+    }
+
+    private void writeStaticProperty(Instance instance, String name, String value) throws UnsupportedFxmlException {
+        int lastDot = name.lastIndexOf('.');
+        Class<?> ownerType = resolveClass(name.substring(0, lastDot));
+        String setterName = "set" + capitalize(name.substring(lastDot + 1));
+        for( Method method : ownerType.getMethods() ){
+            if( Modifier.isStatic(method.getModifiers()) && method.getName().equals(setterName) && method.getParameterCount() == 2 && method.getParameterTypes()[0].isAssignableFrom(instance.type) ){
+                writeLine("%s.%s(%s, %s);", getSourceName(ownerType), setterName, instance.variable, coerce(value, method.getParameterTypes()[1]));
+                return;
+            }
+        }
+        throw new UnsupportedFxmlException(String.format("static property %s not found", name));
+    }
+
+    private void writeEventHandler(Instance instance, String name, String value) throws UnsupportedFxmlException {
+        Method setter = findSetter(instance.type, name);
+        if( setter == null || !EVENT_HANDLER_CLASS.equals(setter.getParameterTypes()[0].getName()) ){
+            throw new UnsupportedFxmlException(String.format("event handler %s of %s is not supported", name, instance.type.getName()));
+        }
+        if( !value.startsWith("#") ){
+            throw new UnsupportedFxmlException(String.format("script event handler %s is not supported", name));
+        }
+        writeLine("%s.%s(handler(controller, %s));", instance.variable, setter.getName(), quote(value.substring(1)));
+    }
+
+    private void writeChildren(Instance instance, Element element) throws UnsupportedFxmlException {
+        StringBuilder text = new StringBuilder();
+        NodeList childNodes = element.getChildNodes();
+        for( int i = 0; i < childNodes.getLength(); i++ ){
+            Node childNode = childNodes.item(i);
+            switch(childNode.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    Element childElement = (Element) childNode;
+                    if( isPropertyElement(childElement) ){
+                        writePropertyElement(instance, childElement);
+                    } else if( getDefaultProperty(instance.type) == null && List.class.isAssignableFrom(instance.type) ){
+                        // e.g. created by <FXCollections fx:factory="observableArrayList">
+                        writeLine("%s.add(%s);", instance.variable, writeInstance(childElement, false).variable);
+                    } else {
+                        addToProperty(instance, getDefaultProperty(instance.type), Arrays.asList(childElement));
+                    }
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    text.append(childNode.getNodeValue());
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    processInstruction(childNode.getNodeName(), childNode.getNodeValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+        if( !text.toString().trim().isEmpty() ){
+            writeProperty(instance, getDefaultProperty(instance.type), text.toString().trim());
+        }
+    }
+
+    private void writePropertyElement(Instance instance, Element propertyElement) throws UnsupportedFxmlException {
+        String name = propertyElement.getLocalName();
+        if( name.contains(".") ){
+            throw new UnsupportedFxmlException(String.format("static property element <%s> is not supported", name));
+        }
+        NamedNodeMap attributes = propertyElement.getAttributes();
+        for( int i = 0; i < attributes.getLength(); i++ ){
+            if( !XMLNS_NAMESPACE.equals(attributes.item(i).getNamespaceURI()) ){
+                throw new UnsupportedFxmlException(String.format("property element <%s> must not have attributes", name));
+            }
+        }
+
+        List<Element> valueElements = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        NodeList childNodes = propertyElement.getChildNodes();
+        for( int i = 0; i < childNodes.getLength(); i++ ){
+            Node childNode = childNodes.item(i);
+            if( childNode.getNodeType() == Node.ELEMENT_NODE ){
+                valueElements.add((Element) childNode);
+            } else if( childNode.getNodeType() == Node.TEXT_NODE || childNode.getNodeType() == Node.CDATA_SECTION_NODE ){
+                text.append(childNode.getNodeValue());
+            } else if( childNode.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE ){
+                processInstruction(childNode.getNodeName(), childNode.getNodeValue());
+            }
+        }
+
+        if( valueElements.isEmpty() ){
+            writeProperty(instance, name, text.toString().trim());
+        } else if( text.toString().trim().isEmpty() ){
+            addToProperty(instance, name, valueElements);
+        } else {
+            throw new UnsupportedFxmlException(String.format("property element <%s> must not mix text and elements", name));
+        }
+    }
+
+    private void addToProperty(Instance instance, String name, List<Element> valueElements) throws UnsupportedFxmlException {
+        if( name == null ){
+            throw new UnsupportedFxmlException(String.format("%s has no default property", instance.type.getName()));
+        }
+        // like the FXMLLoader, writable properties get set, read-only lists get added to
+        Method setter = findSetter(instance.type, name);
+        if( setter != null ){
+            if( valueElements.size() != 1 ){
+                throw new UnsupportedFxmlException(String.format("property %s of %s takes exactly one element", name, instance.type.getName()));
+            }
+            Instance value = writeInstance(valueElements.get(0), false);
+            writeLine("%s.%s(%s);", instance.variable, setter.getName(), value.variable);
+            return;
+        }
+        Method getter = findGetter(instance.type, name);
+        if( getter == null || !List.class.isAssignableFrom(getter.getReturnType()) ){
+            throw new UnsupportedFxmlException(String.format("property %s of %s is neither writable nor a list", name, instance.type.getName()));
+        }
+        for( Element valueElement : valueElements ){
+            Instance value = writeInstance(valueElement, false);
+            writeLine("%s.%s().add(%s);", instance.variable, getter.getName(), value.variable);
+        }
+    }
+
+    private String coerce(String value, Class<?> type) throws UnsupportedFxmlException {
+        boolean isText = type == String.class || type == Object.class || type == CharSequence.class;
+        if( value.startsWith("\\") ){
+            return coerceLiteral(value.substring(1), type);
+        }
+        if( value.startsWith("$") ){
+            throw new UnsupportedFxmlException(String.format("variables, expressions and bindings are not supported: %s", value));
+        }
+        if( (value.startsWith("@") || value.startsWith("%")) && !isText ){
+            throw new UnsupportedFxmlException(String.format("%s can not be converted to %s", value, type.getName()));
+        }
+        if( value.startsWith("@/") ){
+            return String.format("resource(%s)", quote(value.substring(2)));
+        }
+        if( value.startsWith("@") ){
+            return String.format("new java.net.URL(location, %s).toString()", quote(value.substring(1)));
+        }
+        if( value.startsWith("%") ){
+            return String.format("resources.getString(%s)", quote(value.substring(1)));
+        }
+        return coerceLiteral(value, type);
+    }
+
+    @SuppressWarnings("cyclomaticcomplexity")
+    private String coerceLiteral(String value, Class<?> type) throws UnsupportedFxmlException {
+        if( type == String.class || type == Object.class || type == CharSequence.class ){
+            return quote(value);
+        }
+        try{
+            if( type == boolean.class || type == Boolean.class ){
+                return String.valueOf(Boolean.parseBoolean(value.trim()));
+            }
+            if( type == int.class || type == Integer.class ){
+                return String.valueOf(Integer.parseInt(value.trim()));
+            }
+            if( type == long.class || type == Long.class ){
+                return Long.parseLong(value.trim()) + "L";
+            }
+            if( type == short.class || type == Short.class ){
+                return "(short) " + Short.parseShort(value.trim());
+            }
+            if( type == byte.class || type == Byte.class ){
+                return "(byte) " + Byte.parseByte(value.trim());
+            }
+            if( type == double.class || type == Double.class ){
+                return toDoubleLiteral(Double.parseDouble(value.trim()));
+            }
+            if( type == float.class || type == Float.class ){
+                return toFloatLiteral(Float.parseFloat(value.trim()));
+            }
+        } catch(NumberFormatException ex){
+            throw new UnsupportedFxmlException(String.format("\"%s\" is not a valid %s", value, type.getSimpleName()));
+        }
+        if( (type == char.class || type == Character.class) && value.length() == 1 ){
+            return toCharLiteral(value.charAt(0));
+        }
+        if( type.isEnum() ){
+            return String.format("%s.%s", getSourceName(type), findEnumConstant(type, value.trim()));
+        }
+        if( findStaticMethod(type, "valueOf", String.class) != null ){
+            return String.format("%s.valueOf(%s)", getSourceName(type), quote(value));
+        }
+        throw new UnsupportedFxmlException(String.format("\"%s\" can not be converted to %s", value, type.getName()));
+    }
+
+    private String findEnumConstant(Class<?> type, String value) throws UnsupportedFxmlException {
+        // FXML allows using camel case instead of the constant name, e.g. "topLeft" for TOP_LEFT
+        StringBuilder allCaps = new StringBuilder();
+        for( char character : value.toCharArray() ){
+            if( Character.isUpperCase(character) && allCaps.length() > 0 ){
+                allCaps.append('_');
+            }
+            allCaps.append(Character.toUpperCase(character));
+        }
+        for( Field field : type.getFields() ){
+            if( field.isEnumConstant() && (field.getName().equals(value) || field.getName().equals(allCaps.toString())) ){
+                return field.getName();
+            }
+        }
+        throw new UnsupportedFxmlException(String.format("%s has no constant %s", type.getName(), value));
+    }
+
+    private Class<?> resolveClass(String name) throws UnsupportedFxmlException {
+        List<String> candidates = new ArrayList<>();
+        int firstDot = name.indexOf('.');
+        String firstSegment = firstDot < 0 ? name : name.substring(0, firstDot);
+        String nestedSuffix = firstDot < 0 ? "" : "$" + name.substring(firstDot + 1).replace('.', '$');
+        if( Character.isLowerCase(name.charAt(0)) ){
+            candidates.add(name);
+        } else if( importedClasses.containsKey(firstSegment) ){
+            candidates.add(importedClasses.get(firstSegment) + nestedSuffix);
+        } else {
+            importedPackages.forEach(importedPackage -> candidates.add(importedPackage + "." + firstSegment + nestedSuffix));
+        }
+        for( String candidate : candidates ){
+            try{
+                Class<?> type = Class.forName(candidate, false, classLoader);
+                if( !Modifier.isPublic(type.getModifiers()) || type.getCanonicalName() == null ){
+                    throw new UnsupportedFxmlException(String.format("%s is not public", type.getName()));
+                }
+                return type;
+            } catch(ClassNotFoundException | LinkageError ex){
+                // try next candidate
+            }
+        }
+        throw new UnsupportedFxmlException(String.format("class %s not found", name));
+    }
+
+    private Method findSetter(Class<?> type, String property) {
+        String setterName = "set" + capitalize(property);
+        Method getter = findGetter(type, property);
+        Method setter = null;
+        for( Method method : type.getMethods() ){
+            if( Modifier.isStatic(method.getModifiers()) || !method.getName().equals(setterName) || method.getParameterCount() != 1 ){
+                continue;
+            }
+            // when overloaded, the setter matching the getter wins
+            if( setter == null || (getter != null && method.getParameterTypes()[0] == getter.getReturnType()) ){
+                setter = method;
+            }
+        }
+        return setter;
+    }
+
+    private Method findGetter(Class<?> type, String property) {
+        for( String prefix : new String[]{"get", "is"} ){
+            try{
+                Method getter = type.getMethod(prefix + capitalize(property));
+                if( !Modifier.isStatic(getter.getModifiers()) ){
+                    return getter;
+                }
+            } catch(NoSuchMethodException | LinkageError ex){
+                // try next prefix
+            }
+        }
+        return null;
+    }
+
+    private Method findStaticMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try{
+            Method method = type.getMethod(name, parameterTypes);
+            return Modifier.isStatic(method.getModifiers()) ? method : null;
+        } catch(NoSuchMethodException | LinkageError ex){
+            return null;
+        }
+    }
+
+    private Class<?> getListElementType(Method getter) {
+        Type returnType = getter.getGenericReturnType();
+        if( returnType instanceof ParameterizedType ){
+            Type[] typeArguments = ((ParameterizedType) returnType).getActualTypeArguments();
+            if( typeArguments.length == 1 && typeArguments[0] instanceof Class ){
+                return (Class<?>) typeArguments[0];
+            }
+        }
+        return Object.class;
+    }
+
+    private String getDefaultProperty(Class<?> type) {
+        for( Class<?> currentType = type; currentType != null; currentType = currentType.getSuperclass() ){
+            Object defaultProperty = getAnnotationValue(currentType.getDeclaredAnnotations(), DEFAULT_PROPERTY_ANNOTATION, "value");
+            if( defaultProperty != null ){
+                return String.valueOf(defaultProperty);
+            }
+        }
+        return null;
+    }
+
+    private List<String> getNamedArguments(Constructor<?> constructor) {
+        List<String> argumentNames = new ArrayList<>();
+        for( Annotation[] parameterAnnotations : constructor.getParameterAnnotations() ){
+            Object argumentName = getAnnotationValue(parameterAnnotations, NAMED_ARG_ANNOTATION, "value");
+            if( argumentName == null ){
+                return null;
+            }
+            argumentNames.add(String.valueOf(argumentName));
+        }
+        return argumentNames.isEmpty() ? null : argumentNames;
+    }
+
+    private List<String> getNamedArgumentDefaults(Constructor<?> constructor) {
+        List<String> argumentDefaults = new ArrayList<>();
+        for( Annotation[] parameterAnnotations : constructor.getParameterAnnotations() ){
+            Object defaultValue = getAnnotationValue(parameterAnnotations, NAMED_ARG_ANNOTATION, "defaultValue");
+            argumentDefaults.add(defaultValue == null ? "" : String.valueOf(defaultValue));
+        }
+        return argumentDefaults;
+    }
+
+    private Object getAnnotationValue(Annotation[] annotations, String annotationName, String attributeName) {
+        // JavaFX is not available to this plugin, so annotations are read by name
+        for( Annotation annotation : annotations ){
+            if( annotation.annotationType().getName().equals(annotationName) ){
+                try{
+                    return annotation.annotationType().getMethod(attributeName).invoke(annotation);
+                } catch(ReflectiveOperationException | RuntimeException ex){
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isPropertyElement(Element element) {
+        if( isFxmlNamespace(element.getNamespaceURI()) ){
+            return false;
+        }
+        String name = element.getLocalName();
+        return Character.isLowerCase(name.charAt(name.lastIndexOf('.') + 1));
+    }
+
+    private boolean hasChildElements(Element element) {
+        NodeList childNodes = element.getChildNodes();
+        for( int i = 0; i < childNodes.getLength(); i++ ){
+            if( childNodes.item(i).getNodeType() == Node.ELEMENT_NODE ){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isFxmlNamespace(String namespace) {
+        return namespace != null && namespace.startsWith(FXML_NAMESPACE_PREFIX);
+    }
+
+    private Instance declare(Class<?> type, String expression) {
+        String variable = "v" + variableCounter++;
+        writeLine("final %s %s = %s;", getSourceName(type), variable, expression);
+        return new Instance(variable, type);
+    }
+
+    private void writeLine(String format, Object... arguments) {
+        body.append(INDENTATION).append(String.format(format, arguments)).append("\n");
+    }
+
+    private String getSourceName(Class<?> type) {
+        return type.getCanonicalName();
+    }
+
+    private String getDefaultValue(Class<?> type) {
+        if( type == boolean.class ){
+            return "false";
+        }
+        if( type == char.class ){
+            return "'\\0'";
+        }
+        return type.isPrimitive() ? "0" : "null";
+    }
+
+    private static String toDoubleLiteral(double value) {
+        if( Double.isNaN(value) ){
+            return "Double.NaN";
+        }
+        if( Double.isInfinite(value) ){
+            return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        return Double.toString(value);
+    }
+
+    private static String toFloatLiteral(float value) {
+        if( Float.isNaN(value) ){
+            return "Float.NaN";
+        }
+        if( Float.isInfinite(value) ){
+            return value > 0 ? "Float.POSITIVE_INFINITY" : "Float.NEGATIVE_INFINITY";
+        }
+        return Float.toString(value) + "f";
+    }
+
+    private static String toCharLiteral(char value) {
+        if( value == '\'' ){
+            return "'\\''";
+        }
+        if( value == '"' ){
+            return "'\"'";
+        }
+        String quoted = quote(String.valueOf(value));
+        return "'" + quoted.substring(1, quoted.length() - 1) + "'";
+    }
+
+    private static String capitalize(String name) {
+        return name.isEmpty() ? name : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for( char character : value.toCharArray() ){
+            switch(character) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if( character < 0x20 || character > 0x7e ){
+                        quoted.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        quoted.append(character);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static class Instance {
+
+        private final String variable;
+
+        private final Class<?> type;
+
+        Instance(String variable, Class<?> type) {
+            this.variable = variable;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Thrown when some FXML document uses features which can not be compiled.
+     */
+    public static class UnsupportedFxmlException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedFxmlException(String message) {
+            super(message);
+        }
+    }
+}
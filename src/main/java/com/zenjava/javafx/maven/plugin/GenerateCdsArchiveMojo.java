@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Runs the application once for training and creates some class data sharing archive (AppCDS) from all classes
+ * loaded while running, which makes the JVM start faster. The training run records the list of loaded classes, which
+ * gets dumped into the archive by a second JVM afterwards. The archive gets placed inside the app-folder, so
+ * "jfx:native" picks it up for all native launchers.
+ * <p>
+ * This requires Java 10 or newer, on Java 10 the JVM additionally needs "-XX:+UseAppCDS" for using the archive. The
+ * JVM silently ignores the archive when it does not match the used runtime or the jar-files of the classpath were
+ * modified after creating it.
+ *
+ * @goal generate-cds-archive
+ * @execute goal="jar"
+ * @threadSafe
+ */
+public class GenerateCdsArchiveMojo extends RunMojo {
+
+    private static final String CLASS_LIST_FILENAME = "cds-classlist.txt";
+
+    /**
+     * Main class used for the training run, this makes it possible to have some special training-entry which
+     * exercises the application and exits afterwards. When not set, the main class of the JavaFX JAR is used.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.cdsTrainingMainClass"
+     */
+    protected String cdsTrainingMainClass;
+
+    /**
+     * Arguments passed to the application for the training run.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.cdsTrainingArguments"
+     */
+    protected String cdsTrainingArguments;
+
+    /**
+     * Seconds to wait before stopping the training run, in case the application does not exit on its own.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.cdsTrainingTimeout" default-value="30"
+     */
+    protected int cdsTrainingTimeout = 30;
+
+    /**
+     * Stops the training run as soon as the application prints some line containing this text, e.g. when the main
+     * window is shown.
+     * <p>
+     * Please note that stopping the application requires it to exit normally for writing the complete class list,
+     * which is not the case on Windows, there the application has to exit on its own (e.g. by calling System.exit).
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.cdsTrainingExitMarker"
+     */
+    protected String cdsTrainingExitMarker;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if( skip ){
+            getLog().info("Skipping execution of GenerateCdsArchiveMojo MOJO.");
+            return;
+        }
+
+        // the java executable of the environment might be some other version
+        if( !useEnvironmentRelativeExecutables && !JavaDetectionTools.isAtLeastJavaVersion(10) ){
+            throw new MojoExecutionException(String.format("Creating a CDS archive requires at least Java 10, but this build uses Java %s.", System.getProperty("java.version")));
+        }
+
+        getLog().info("Generating CDS archive for JavaFX Application");
+
+        File cdsArchive = new File(jfxAppOutputDir, cdsArchiveName);
+        File classList = new File(cacheDir, CLASS_LIST_FILENAME);
+        try{
+            Files.deleteIfExists(cdsArchive.toPath());
+            Files.createDirectories(cacheDir.toPath());
+            Files.deleteIfExists(classList.toPath());
+        } catch(IOException ex){
+            throw new MojoExecutionException("Could not remove previous CDS archive.", ex);
+        }
+
+        List<String> trainingCommand = createJavaCommand();
+        Optional.ofNullable(runJavaParameter).ifPresent(parameter -> {
+            if( !parameter.trim().isEmpty() ){
+                trainingCommand.add(parameter);
+            }
+        });
+        // sharing has to be off, otherwise classes of the default archive are missing in the list
+        trainingCommand.add("-Xshare:off");
+        trainingCommand.add("-XX:DumpLoadedClassList=" + classList.getAbsolutePath());
+        if( cdsTrainingMainClass == null || cdsTrainingMainClass.trim().isEmpty() ){
+            trainingCommand.add("-jar");
+            trainingCommand.add(jfxMainAppJarName);
+        } else {
+            trainingCommand.add("-cp");
+            trainingCommand.add(jfxMainAppJarName);
+            trainingCommand.add(cdsTrainingMainClass.trim());
+        }
+
+        Optional.ofNullable(cdsTrainingArguments).ifPresent(arguments -> {
+            if( !arguments.trim().isEmpty() ){
+                trainingCommand.add(arguments);
+            }
+        });
+
+        runWithTimeout(trainingCommand, cdsTrainingTimeout, line -> {
+            getLog().info(line);
+            return cdsTrainingExitMarker != null && !cdsTrainingExitMarker.isEmpty() && line.contains(cdsTrainingExitMarker);
+        });
+
+        if( !classList.isFile() ){
+            throw new MojoExecutionException("No class list was recorded, please make sure the application is started using Java 10 or newer.");
+        }
+
+        // the classpath has to be the same as when running the application later, so use relative paths only
+        List<String> dumpCommand = createJavaCommand();
+        dumpCommand.add("-Xshare:dump");
+        dumpCommand.add("-XX:SharedClassListFile=" + classList.getAbsolutePath());
+        dumpCommand.add("-XX:SharedArchiveFile=" + cdsArchiveName);
+        dumpCommand.add("-cp");
+        dumpCommand.add(jfxMainAppJarName);
+        dumpArchive(dumpCommand);
+
+        if( !cdsArchive.isFile() ){
+            throw new MojoExecutionException("No CDS archive was created, please make sure the application is started using Java 10 or newer.");
+        }
+        getLog().info(String.format("Created CDS archive with %s KB: %s", cdsArchive.length() / 1024, cdsArchive.getAbsolutePath()));
+    }
+
+    private List<String> createJavaCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(getEnvironmentRelativeExecutablePath() + "java");
+        // Java 10 only archives classes of the platform- and application-classloader when asked for
+        if( JavaDetectionTools.isJavaVersion(10, true) ){
+            command.add("-XX:+UseAppCDS");
+        }
+        return command;
+    }
+
+    private void dumpArchive(List<String> command) throws MojoExecutionException {
+        if( verbose ){
+            getLog().info("Running command: " + String.join(" ", command));
+        }
+        try{
+            Process p = new ProcessBuilder()
+                    .redirectErrorStream(true)
+                    .directory(jfxAppOutputDir)
+                    .command(command)
+                    .start();
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))){
+                String line;
+                while( (line = reader.readLine()) != null ){
+                    // classes which can not be archived are reported per class
+                    getLog().debug(line);
+                }
+            }
+            if( p.waitFor() != 0 ){
+                throw new MojoExecutionException(String.format("Creating the CDS archive failed with exit code %s, please check the debug output.", p.exitValue()));
+            }
+        } catch(IOException ex){
+            throw new MojoExecutionException("There was an exception while creating the CDS archive.", ex);
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while creating the CDS archive.", ex);
+        }
+    }
+}
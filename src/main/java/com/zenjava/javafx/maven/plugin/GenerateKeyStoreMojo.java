@@ -44,6 +44,7 @@ import org.apache.maven.project.MavenProject;
  * @goal build-keystore
  * @phase validate
  * @requiresDependencyResolution
+ * @threadSafe
  */
 public class GenerateKeyStoreMojo extends AbstractMojo {
 
@@ -0,0 +1,547 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Losslessly shrinks all PNG and JPEG files of some folder and generates "@2x" variants (as picked up by JavaFX on
+ * HiDPI screens) from high-resolution sources.
+ * <p>
+ * PNG files keep their pixel data byte by byte: the image data gets deflated again using the best compression and
+ * textual metadata is dropped. JPEG files keep their compressed image data too, only metadata segments (like EXIF,
+ * XMP or comments) are dropped, color profiles are kept. Files which would not get smaller stay untouched.
+ * <p>
+ * Results are cached by the hash of their content, so only new or changed images have to be processed again.
+ */
+public class ImageOptimizer {
+
+    public static final String HIDPI_SUFFIX = "@2x";
+
+    // part of each cache-key, change this when the optimized output changes
+    private static final String OPTIMIZER_VERSION = "1";
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private static final Set<String> PNG_DROPPED_CHUNKS = new HashSet<>(Arrays.asList("tEXt", "zTXt", "iTXt", "tIME", "dSIG"));
+
+    private static final Set<String> PNG_CRITICAL_CHUNKS = new HashSet<>(Arrays.asList("IHDR", "PLTE", "IDAT", "IEND"));
+
+    private static final String UNCHANGED_SUFFIX = ".unchanged";
+
+    private final File cacheFolder;
+
+    private final int parallelism;
+
+    private final Log logger;
+
+    private final FileStager fileStager;
+
+    private final List<OptimizedImage> optimizedImages = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger cachedImages = new AtomicInteger();
+
+    public ImageOptimizer(File cacheFolder, int parallelism, Log logger) {
+        this.cacheFolder = cacheFolder;
+        this.parallelism = parallelism;
+        this.logger = logger;
+        this.fileStager = new FileStager(StagingStrategy.HARDLINK, logger);
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * Optimizes all images of the source folder and generates the HiDPI variants, placing each result at the same
+     * relative location inside the target folder. Images which could not be made smaller are not placed there. All
+     * previous content of the target folder is removed.
+     * <p>
+     * Each image of the HiDPI source folder is scaled to twice the size of the image with the same relative path
+     * inside the source folder, and placed next to it using the name suffix {@value #HIDPI_SUFFIX}.
+     *
+     * @param sourceFolder folder containing the images (e.g. target/classes)
+     * @param hiDpiSourceFolder folder containing the high-resolution sources, might be null or missing
+     * @param targetFolder folder receiving the optimized images
+     *
+     * @return all images which could not be processed, including the reason
+     *
+     * @throws IOException when the folders could not be processed
+     */
+    public List<String> optimize(Path sourceFolder, Path hiDpiSourceFolder, Path targetFolder) throws IOException {
+        FileTools.deleteRecursive(targetFolder);
+        Files.createDirectories(targetFolder);
+        Files.createDirectories(cacheFolder.toPath());
+        optimizedImages.clear();
+        cachedImages.set(0);
+
+        List<Path> images = findImages(sourceFolder);
+        List<Path> hiDpiSources = hiDpiSourceFolder == null ? new ArrayList<>() : findImages(hiDpiSourceFolder);
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        if( images.isEmpty() && hiDpiSources.isEmpty() ){
+            return failures;
+        }
+
+        int poolSize = Math.max(1, Math.min(parallelism, images.size() + hiDpiSources.size()));
+        ExecutorService executor = ThreadTools.newDaemonThreadPool(poolSize, "jfx-image-optimizer-");
+        try{
+            List<Future<?>> tasks = new ArrayList<>();
+            for( Path image : images ){
+                String relativePath = sourceFolder.relativize(image).toString().replace("\\", "/");
+                tasks.add(executor.submit(() -> {
+                    try{
+                        optimizeImage(image, relativePath, targetFolder.resolve(relativePath));
+                    } catch(IOException | RuntimeException ex){
+                        getLog().debug(ex);
+                        failures.add(String.format("%s (%s)", relativePath, ex.getMessage()));
+                    }
+                }));
+            }
+            for( Path hiDpiSource : hiDpiSources ){
+                String relativePath = hiDpiSourceFolder.relativize(hiDpiSource).toString().replace("\\", "/");
+                tasks.add(executor.submit(() -> {
+                    try{
+                        generateHiDpiVariant(hiDpiSource, sourceFolder.resolve(relativePath), getHiDpiPath(relativePath), targetFolder);
+                    } catch(IOException | RuntimeException ex){
+                        getLog().debug(ex);
+                        failures.add(String.format("%s (%s)", getHiDpiPath(relativePath), ex.getMessage()));
+                    }
+                }));
+            }
+            for( Future<?> task : tasks ){
+                task.get();
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while optimizing images", ex);
+        } catch(ExecutionException ex){
+            throw new IOException("Unexpected problem while optimizing images", ex.getCause());
+        } finally{
+            executor.shutdownNow();
+        }
+
+        long savedBytes = optimizedImages.stream().mapToLong(OptimizedImage::getSavedBytes).sum();
+        long shrunkImages = optimizedImages.stream().filter(optimizedImage -> !optimizedImage.isGenerated() && optimizedImage.getSavedBytes() > 0).count();
+        long generatedImages = optimizedImages.stream().filter(OptimizedImage::isGenerated).count();
+        getLog().info(String.format("Optimized images: %s of %s shrunk by %s bytes in total, %s HiDPI variants generated, %s from cache, %s failed", shrunkImages, images.size(), savedBytes, generatedImages, cachedImages.get(), failures.size()));
+        return failures;
+    }
+
+    /**
+     * Writes the size of each image before and after optimizing, sorted by the saved bytes.
+     *
+     * @param reportFile the file to write
+     *
+     * @throws IOException when the report could not be written
+     */
+    public void writeReport(File reportFile) throws IOException {
+        List<OptimizedImage> sortedImages = new ArrayList<>(optimizedImages);
+        sortedImages.sort(Comparator.comparingLong(OptimizedImage::getSavedBytes).reversed().thenComparing(OptimizedImage::getPath));
+        long originalSize = sortedImages.stream().filter(optimizedImage -> !optimizedImage.isGenerated()).mapToLong(OptimizedImage::getOriginalSize).sum();
+        long optimizedSize = sortedImages.stream().filter(optimizedImage -> !optimizedImage.isGenerated()).mapToLong(OptimizedImage::getOptimizedSize).sum();
+
+        Files.createDirectories(reportFile.getAbsoluteFile().getParentFile().toPath());
+        try(Writer writer = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)){
+            writer.write(String.format("# image optimization by javafx-maven-plugin: %s bytes before, %s bytes after, %s bytes saved%n", originalSize, optimizedSize, originalSize - optimizedSize));
+            writer.write(String.format("# saved bytes\toriginal bytes\toptimized bytes\timage%n"));
+            for( OptimizedImage optimizedImage : sortedImages ){
+                if( optimizedImage.isGenerated() ){
+                    writer.write(String.format("-\t-\t%s\t%s (generated)%n", optimizedImage.getOptimizedSize(), optimizedImage.getPath()));
+                } else {
+                    writer.write(String.format("%s\t%s\t%s\t%s%n", optimizedImage.getSavedBytes(), optimizedImage.getOriginalSize(), optimizedImage.getOptimizedSize(), optimizedImage.getPath()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param relativePath path of some image, e.g. "icons/save.png"
+     *
+     * @return path of its HiDPI variant, e.g. "icons/save@2x.png"
+     */
+    public static String getHiDpiPath(String relativePath) {
+        int extensionStart = relativePath.lastIndexOf('.');
+        return relativePath.substring(0, extensionStart) + HIDPI_SUFFIX + relativePath.substring(extensionStart);
+    }
+
+    private void optimizeImage(Path image, String relativePath, Path target) throws IOException {
+        byte[] original = Files.readAllBytes(image);
+        String extension = getExtension(image);
+        MessageDigest digest = ChecksumTools.createDigest();
+        digest.update(OPTIMIZER_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update(original);
+        Path cachedFile = cacheFolder.toPath().resolve(ChecksumTools.toHex(digest.digest()) + "." + extension);
+        Path unchangedMarker = cachedFile.resolveSibling(cachedFile.getFileName().toString() + UNCHANGED_SUFFIX);
+
+        if( Files.isRegularFile(cachedFile) || Files.isRegularFile(unchangedMarker) ){
+            cachedImages.incrementAndGet();
+        } else {
+            byte[] optimized = "png".equals(extension) ? recompressPng(original) : stripJpegMetadata(original);
+            if( optimized.length < original.length ){
+                writeToCache(cachedFile, optimized);
+            } else {
+                writeToCache(unchangedMarker, new byte[0]);
+            }
+        }
+
+        if( Files.isRegularFile(cachedFile) ){
+            Files.createDirectories(target.getParent());
+            fileStager.stage(cachedFile, target);
+            optimizedImages.add(new OptimizedImage(relativePath, original.length, Files.size(cachedFile), false));
+        } else {
+            optimizedImages.add(new OptimizedImage(relativePath, original.length, original.length, false));
+        }
+    }
+
+    private void generateHiDpiVariant(Path hiDpiSource, Path baseImage, String hiDpiPath, Path targetFolder) throws IOException {
+        Path target = targetFolder.resolve(hiDpiPath);
+        if( !Files.isRegularFile(baseImage) ){
+            throw new IOException("no image with the same name found, which defines the size");
+        }
+        if( Files.exists(baseImage.resolveSibling(target.getFileName())) ){
+            throw new IOException("HiDPI variant already exists");
+        }
+        BufferedImage base = readImage(Files.readAllBytes(baseImage));
+        int width = base.getWidth() * 2;
+        int height = base.getHeight() * 2;
+        String extension = getExtension(hiDpiSource);
+
+        MessageDigest digest = ChecksumTools.createDigest();
+        digest.update(OPTIMIZER_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update(String.format("%sx%s", width, height).getBytes(StandardCharsets.UTF_8));
+        ChecksumTools.update(digest, hiDpiSource);
+        Path cachedFile = cacheFolder.toPath().resolve(ChecksumTools.toHex(digest.digest()) + "." + extension);
+
+        if( Files.isRegularFile(cachedFile) ){
+            cachedImages.incrementAndGet();
+        } else {
+            BufferedImage source = readImage(Files.readAllBytes(hiDpiSource));
+            if( source.getWidth() < width || source.getHeight() < height ){
+                throw new IOException(String.format("source has %sx%s pixels, but at least %sx%s are required", source.getWidth(), source.getHeight(), width, height));
+            }
+            boolean png = "png".equals(extension);
+            BufferedImage scaled = scale(source, width, height, png);
+            writeToCache(cachedFile, png ? recompressPng(encode(scaled, "png")) : encode(scaled, "jpeg"));
+        }
+
+        Files.createDirectories(target.getParent());
+        fileStager.stage(cachedFile, target);
+        optimizedImages.add(new OptimizedImage(hiDpiPath, 0, Files.size(cachedFile), true));
+    }
+
+    /**
+     * Deflates the image data again using the best compression and removes textual metadata, the filtered pixel
+     * data itself stays the same. Animated PNGs and files with unknown critical chunks are returned unchanged.
+     */
+    static byte[] recompressPng(byte[] png) throws IOException {
+        if( png.length < PNG_SIGNATURE.length || !Arrays.equals(Arrays.copyOf(png, PNG_SIGNATURE.length), PNG_SIGNATURE) ){
+            throw new IOException("not a valid PNG file");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        buffer.position(PNG_SIGNATURE.length);
+        ByteArrayOutputStream chunksBeforeData = new ByteArrayOutputStream();
+        ByteArrayOutputStream chunksAfterData = new ByteArrayOutputStream();
+        ByteArrayOutputStream compressedData = new ByteArrayOutputStream();
+        boolean afterData = false;
+        while( buffer.remaining() >= 12 ){
+            int length = buffer.getInt();
+            byte[] typeBytes = new byte[4];
+            buffer.get(typeBytes);
+            String type = new String(typeBytes, StandardCharsets.US_ASCII);
+            if( length < 0 || buffer.remaining() < length + 4 ){
+                throw new IOException("truncated PNG chunk " + type);
+            }
+            byte[] data = new byte[length];
+            buffer.get(data);
+            // skip the checksum, it gets recalculated
+            buffer.getInt();
+
+            if( "acTL".equals(type) || (Character.isUpperCase(type.charAt(0)) && !PNG_CRITICAL_CHUNKS.contains(type)) ){
+                return png;
+            }
+            if( "IDAT".equals(type) ){
+                compressedData.write(data);
+                continue;
+            }
+            if( compressedData.size() > 0 ){
+                afterData = true;
+            }
+            if( !PNG_DROPPED_CHUNKS.contains(type) ){
+                writePngChunk(afterData ? chunksAfterData : chunksBeforeData, type, data);
+            }
+        }
+
+        ByteArrayOutputStream optimized = new ByteArrayOutputStream(png.length);
+        optimized.write(PNG_SIGNATURE);
+        chunksBeforeData.writeTo(optimized);
+        writePngChunk(optimized, "IDAT", deflate(inflate(compressedData.toByteArray())));
+        chunksAfterData.writeTo(optimized);
+        return optimized.toByteArray();
+    }
+
+    /**
+     * Removes all metadata segments except the ones affecting the colors (JFIF, ICC profile and Adobe), the
+     * compressed image data stays the same.
+     */
+    static byte[] stripJpegMetadata(byte[] jpeg) throws IOException {
+        if( jpeg.length < 4 || (jpeg[0] & 0xff) != 0xff || (jpeg[1] & 0xff) != 0xd8 ){
+            throw new IOException("not a valid JPEG file");
+        }
+        ByteArrayOutputStream stripped = new ByteArrayOutputStream(jpeg.length);
+        stripped.write(jpeg, 0, 2);
+        int position = 2;
+        while( position + 4 <= jpeg.length ){
+            if( (jpeg[position] & 0xff) != 0xff ){
+                throw new IOException("invalid JPEG segment");
+            }
+            int marker = jpeg[position + 1] & 0xff;
+            if( marker == 0xff ){
+                // fill byte
+                position++;
+                continue;
+            }
+            // start of scan, everything following is image data
+            if( marker == 0xda ){
+                stripped.write(jpeg, position, jpeg.length - position);
+                return stripped.toByteArray();
+            }
+            int segmentLength = 2 + (((jpeg[position + 2] & 0xff) << 8) | (jpeg[position + 3] & 0xff));
+            if( position + segmentLength > jpeg.length ){
+                throw new IOException("truncated JPEG segment");
+            }
+            if( !isDroppedJpegSegment(marker) ){
+                stripped.write(jpeg, position, segmentLength);
+            }
+            position += segmentLength;
+        }
+        throw new IOException("JPEG file contains no image data");
+    }
+
+    private static boolean isDroppedJpegSegment(int marker) {
+        // APP1 (EXIF, XMP), APP3 to APP13 and APP15, comments
+        boolean applicationSegment = marker >= 0xe1 && marker <= 0xef;
+        return (applicationSegment && marker != 0xe2 && marker != 0xee) || marker == 0xfe;
+    }
+
+    private static void writePngChunk(ByteArrayOutputStream output, String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(data.length).put(typeBytes);
+        output.write(header.array(), 0, 8);
+        output.write(data, 0, data.length);
+        output.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array(), 0, 4);
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try{
+            inflater.setInput(compressed);
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[64 * 1024];
+            while( !inflater.finished() ){
+                int inflatedBytes = inflater.inflate(buffer);
+                if( inflatedBytes == 0 && (inflater.needsInput() || inflater.needsDictionary()) ){
+                    throw new IOException("truncated PNG image data");
+                }
+                inflated.write(buffer, 0, inflatedBytes);
+            }
+            return inflated.toByteArray();
+        } catch(DataFormatException ex){
+            throw new IOException("invalid PNG image data", ex);
+        } finally{
+            inflater.end();
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        // filtered data compresses better with one strategy or the other, so just try both
+        byte[] smallest = null;
+        for( int strategy : new int[]{Deflater.DEFAULT_STRATEGY, Deflater.FILTERED} ){
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try{
+                deflater.setStrategy(strategy);
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream deflated = new ByteArrayOutputStream(data.length / 2 + 64);
+                byte[] buffer = new byte[64 * 1024];
+                while( !deflater.finished() ){
+                    deflated.write(buffer, 0, deflater.deflate(buffer));
+                }
+                if( smallest == null || deflated.size() < smallest.length ){
+                    smallest = deflated.toByteArray();
+                }
+            } finally{
+                deflater.end();
+            }
+        }
+        return smallest;
+    }
+
+    private static BufferedImage readImage(byte[] content) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(content));
+        if( image == null ){
+            throw new IOException("unsupported image format");
+        }
+        return image;
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height, boolean keepAlpha) {
+        int imageType = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        // halving step by step keeps the quality of bilinear scaling for large factors
+        do{
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, imageType);
+            Graphics2D graphics = step.createGraphics();
+            try{
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(scaled, 0, 0, currentWidth, currentHeight, null);
+            } finally{
+                graphics.dispose();
+            }
+            scaled = step;
+        } while( currentWidth != width || currentHeight != height );
+        return scaled;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Iterator<ImageWriter> imageWriters = ImageIO.getImageWritersByFormatName(format);
+        if( !imageWriters.hasNext() ){
+            throw new IOException("no image writer for " + format);
+        }
+        ImageWriter imageWriter = imageWriters.next();
+        try(ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(encoded)){
+            imageWriter.setOutput(imageOutputStream);
+            ImageWriteParam writeParam = imageWriter.getDefaultWriteParam();
+            if( "jpeg".equals(format) ){
+                writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                writeParam.setCompressionQuality(0.92f);
+            }
+            imageWriter.write(null, new IIOImage(image, null, null), writeParam);
+        } finally{
+            imageWriter.dispose();
+        }
+        return encoded.toByteArray();
+    }
+
+    private void writeToCache(Path cachedFile, byte[] content) throws IOException {
+        Path temporaryFile = cachedFile.resolveSibling("." + cachedFile.getFileName().toString() + "-" + Thread.currentThread().getId() + FileStager.TEMPORARY_FILE_SUFFIX);
+        try{
+            Files.write(temporaryFile, content);
+            FileStager.publish(temporaryFile, cachedFile);
+        } finally{
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private static String getExtension(Path image) {
+        String fileName = image.getFileName().toString().toLowerCase(Locale.ROOT);
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+        return "jpeg".equals(extension) ? "jpg" : extension;
+    }
+
+    private static List<Path> findImages(Path folder) throws IOException {
+        if( !Files.isDirectory(folder) ){
+            return new ArrayList<>();
+        }
+        try(Stream<Path> walkedPaths = Files.walk(folder)){
+            return walkedPaths.filter(path -> Files.isRegularFile(path) && Arrays.asList("png", "jpg").contains(getExtension(path))).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static class OptimizedImage {
+
+        private final String path;
+
+        private final long originalSize;
+
+        private final long optimizedSize;
+
+        private final boolean generated;
+
+        OptimizedImage(String path, long originalSize, long optimizedSize, boolean generated) {
+            this.path = path;
+            this.originalSize = originalSize;
+            this.optimizedSize = optimizedSize;
+            this.generated = generated;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        long getOriginalSize() {
+            return originalSize;
+        }
+
+        long getOptimizedSize() {
+            return optimizedSize;
+        }
+
+        long getSavedBytes() {
+            return generated ? 0 : originalSize - optimizedSize;
+        }
+
+        boolean isGenerated() {
+            return generated;
+        }
+    }
+}
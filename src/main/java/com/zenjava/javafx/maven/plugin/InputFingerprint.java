@@ -0,0 +1,191 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects everything some build step depends on into one single hash. When the hash of the current build equals
+ * the one recorded for the last build, and the produced file is still the same, that build step can be skipped.
+ * <p>
+ * Folders and files are only described by their names, sizes and timestamps, so calculating the fingerprint does
+ * not require reading any file content.
+ */
+public class InputFingerprint {
+
+    private static final String KEY_FINGERPRINT = "fingerprint";
+
+    private static final String KEY_OUTPUT_SIZE = "outputSize";
+
+    private static final String KEY_OUTPUT_LAST_MODIFIED = "outputLastModified";
+
+    private final MessageDigest digest = ChecksumTools.createDigest();
+
+    private boolean complete = true;
+
+    public InputFingerprint add(String name, String value) {
+        update(name);
+        update(String.valueOf(value));
+        return this;
+    }
+
+    public InputFingerprint add(String name, boolean value) {
+        return add(name, String.valueOf(value));
+    }
+
+    public InputFingerprint add(String name, Map<String, String> values) {
+        update(name);
+        if( values != null ){
+            // order of the map must not matter
+            new TreeMap<>(values).forEach((key, value) -> {
+                update(key);
+                update(String.valueOf(value));
+            });
+        }
+        return this;
+    }
+
+    public InputFingerprint addFile(String name, File file) {
+        update(name);
+        if( file == null || !file.isFile() ){
+            update("missing");
+            return this;
+        }
+        try{
+            update(file.getAbsolutePath());
+            update(String.valueOf(file.length()));
+            update(String.valueOf(Files.getLastModifiedTime(file.toPath()).toMillis()));
+        } catch(IOException ex){
+            complete = false;
+        }
+        return this;
+    }
+
+    public InputFingerprint addFolder(String name, File folder) {
+        update(name);
+        if( folder == null || !folder.isDirectory() ){
+            update("missing");
+            return this;
+        }
+        Path folderPath = folder.toPath();
+        try(Stream<Path> walkedPaths = Files.walk(folderPath)){
+            List<Path> files = walkedPaths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            for( Path file : files ){
+                update(folderPath.relativize(file).toString().replace("\\", "/"));
+                update(String.valueOf(Files.size(file)));
+                update(String.valueOf(Files.getLastModifiedTime(file).toMillis()));
+            }
+        } catch(IOException | UncheckedIOException ex){
+            complete = false;
+        }
+        return this;
+    }
+
+    /**
+     * @return false when some input could not be read, such a fingerprint never matches the one of the last build
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public String getHash() {
+        try{
+            // digesting resets the digest, so work on some copy for being able to add more values
+            return ChecksumTools.toHex(((MessageDigest) digest.clone()).digest());
+        } catch(CloneNotSupportedException ex){
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Checks if the output of the last build was created from the same inputs and was not modified afterwards.
+     *
+     * @param fingerprintFile the file written by {@link #record(File, File)} during the last build
+     * @param output the file produced by the build step
+     *
+     * @return the reason why the output is outdated, or null when it is still up to date
+     *
+     * @throws IOException when the fingerprint file could not be read
+     */
+    public String getOutdatedReason(File fingerprintFile, File output) throws IOException {
+        if( !complete ){
+            return "some inputs could not be read";
+        }
+        if( !fingerprintFile.isFile() ){
+            return "no fingerprint of last build";
+        }
+        if( !output.isFile() ){
+            return "output is missing";
+        }
+        Properties properties = new Properties();
+        try(InputStream in = Files.newInputStream(fingerprintFile.toPath())){
+            properties.load(in);
+        }
+        if( !getHash().equals(properties.getProperty(KEY_FINGERPRINT)) ){
+            return "inputs have changed";
+        }
+        String outputSize = String.valueOf(output.length());
+        String outputLastModified = String.valueOf(Files.getLastModifiedTime(output.toPath()).toMillis());
+        if( !outputSize.equals(properties.getProperty(KEY_OUTPUT_SIZE)) || !outputLastModified.equals(properties.getProperty(KEY_OUTPUT_LAST_MODIFIED)) ){
+            return "output was modified";
+        }
+        return null;
+    }
+
+    /**
+     * Remembers the fingerprint together with the state of the produced file.
+     *
+     * @param fingerprintFile where to write the fingerprint to
+     * @param output the file produced by the build step
+     *
+     * @throws IOException when the fingerprint file could not be written
+     */
+    public void record(File fingerprintFile, File output) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_FINGERPRINT, getHash());
+        properties.setProperty(KEY_OUTPUT_SIZE, String.valueOf(output.length()));
+        properties.setProperty(KEY_OUTPUT_LAST_MODIFIED, String.valueOf(Files.getLastModifiedTime(output.toPath()).toMillis()));
+        File parentFolder = fingerprintFile.getParentFile();
+        if( parentFolder != null && !parentFolder.exists() ){
+            Files.createDirectories(parentFolder.toPath());
+        }
+        try(OutputStream out = Files.newOutputStream(fingerprintFile.toPath())){
+            properties.store(out, "input fingerprint of the javafx-maven-plugin, do not edit");
+        }
+    }
+
+    private void update(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(bytes);
+        // separator, so "ab"+"c" differs from "a"+"bc"
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Creates the content of META-INF/INDEX.LIST, which tells the classloader which jar-file contains which package,
+ * so it does not have to probe all jar-files of the manifest classpath one after another. The rules for which
+ * entries get indexed are the same the jar-tool of the JDK uses ("jar -i").
+ * <p>
+ * Only Java 8 up to Java 17 make use of this index, newer versions simply ignore it.
+ */
+public class JarIndexGenerator {
+
+    public static final String INDEX_NAME = "META-INF/INDEX.LIST";
+
+    private static final String INDEX_VERSION_HEADER = "JarIndex-Version: 1.0";
+
+    private final Log logger;
+
+    private final Map<String, List<String>> splitPackages = new TreeMap<>();
+
+    public JarIndexGenerator(Log logger) {
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * Creates the index for all given jar-files, they have to be in the same order as the classpath.
+     *
+     * @param baseFolder the folder all jar-paths are relative to (the folder of the indexed jar-file)
+     * @param jarPaths the indexed jar-file itself, followed by all entries of its manifest classpath
+     *
+     * @return content of INDEX.LIST
+     *
+     * @throws IOException when some jar-file could not be read
+     */
+    public String createIndex(File baseFolder, List<String> jarPaths) throws IOException {
+        Map<String, Set<String>> indexedNamesPerJar = new LinkedHashMap<>();
+        Map<String, List<String>> jarsPerPackage = new TreeMap<>();
+        splitPackages.clear();
+
+        for( String jarPath : jarPaths ){
+            Set<String> indexedNames = new LinkedHashSet<>();
+            try(JarFile jarFile = new JarFile(new File(baseFolder, jarPath))){
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while( entries.hasMoreElements() ){
+                    String entryName = entries.nextElement().getName();
+                    if( isSkipped(entryName) ){
+                        continue;
+                    }
+                    int lastSlash = entryName.lastIndexOf('/');
+                    indexedNames.add(lastSlash < 0 ? entryName : entryName.substring(0, lastSlash));
+                    if( entryName.endsWith(".class") && lastSlash > 0 ){
+                        String packageName = entryName.substring(0, lastSlash);
+                        List<String> jarsOfPackage = jarsPerPackage.computeIfAbsent(packageName, name -> new ArrayList<>());
+                        if( !jarsOfPackage.contains(jarPath) ){
+                            jarsOfPackage.add(jarPath);
+                        }
+                    }
+                }
+            }
+            indexedNamesPerJar.put(jarPath, indexedNames);
+        }
+
+        jarsPerPackage.entrySet().stream().filter(entry -> entry.getValue().size() > 1).forEach(entry -> {
+            splitPackages.put(entry.getKey().replace('/', '.'), entry.getValue());
+        });
+
+        StringBuilder index = new StringBuilder();
+        index.append(INDEX_VERSION_HEADER).append("\n\n");
+        indexedNamesPerJar.forEach((jarPath, indexedNames) -> {
+            index.append(jarPath).append("\n");
+            indexedNames.forEach(indexedName -> index.append(indexedName).append("\n"));
+            index.append("\n");
+        });
+        return index.toString();
+    }
+
+    /**
+     * Packages found in more than one jar-file. For these the classloader still has to look into every listed
+     * jar-file, which defeats the purpose of the index.
+     *
+     * @return package name mapped to all jar-files containing classes of that package
+     */
+    public Map<String, List<String>> getSplitPackages() {
+        return splitPackages;
+    }
+
+    public void reportSplitPackages() {
+        if( splitPackages.isEmpty() ){
+            return;
+        }
+        getLog().warn(String.format("Found %s split packages, these are spread over multiple jar-files and slow down class loading even when having a jar index:", splitPackages.size()));
+        splitPackages.forEach((packageName, jarPaths) -> getLog().warn(String.format("  %s (%s)", packageName, String.join(", ", jarPaths))));
+    }
+
+    private boolean isSkipped(String entryName) {
+        return "META-INF/".equals(entryName) || INDEX_NAME.equals(entryName) || JarFile.MANIFEST_NAME.equals(entryName) || entryName.startsWith("META-INF/versions/");
+    }
+}
@@ -16,9 +16,12 @@
 
 package com.zenjava.javafx.maven.plugin;
 
+import com.oracle.tools.packager.Log;
 import com.sun.javafx.tools.packager.CreateJarParams;
 import com.sun.javafx.tools.packager.PackagerException;
+import com.sun.javafx.tools.packager.PackagerLib;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Build;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -26,22 +29,30 @@ import org.apache.maven.plugin.MojoFailureException;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import org.apache.maven.artifact.Artifact;
+import java.util.Set;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
 
 /**
  * @goal build-jar
  * @phase package
  * @requiresDependencyResolution
+ * @threadSafe
  */
 public class JarMojo extends AbstractJfxToolsMojo {
 
@@ -50,11 +61,81 @@ public class JarMojo extends AbstractJfxToolsMojo {
      * performance gains, but it's debatable whether you will notice them, and some people have experienced problems
      * with the resulting compiled files. Use at your own risk. By default this is false and CSS files are left in their
      * plain text format as they are found.
+     * <p>
+     * Converted stylesheets are cached inside &lt;cacheDir&gt;, so only changed stylesheets get converted again.
      *
      * @parameter property="jfx.css2bin" default-value=false
      */
     protected boolean css2bin;
 
+    /**
+     * Number of threads used for hashing CSS files and staging the converted files, 0 uses one thread per available
+     * processor. The conversion itself is always done by one thread at a time, as the CSS parser of JavaFX 8 is one
+     * shared instance (even for parallel maven builds), so only hashing and staging scale with this value.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.css2binParallelism" default-value="0"
+     */
+    protected int css2binParallelism = 0;
+
+    /**
+     * Compiles the FXML files of the classes-folder into Java classes, which create the same scene graph without
+     * having the FXMLLoader parse the FXML file at runtime. Only a subset of FXML is supported (e.g. no fx:include,
+     * fx:define, fx:root, scripts, expressions or bindings), FXML files which could not be compiled are reported.
+     * All FXML files stay inside the JavaFX JAR, so the FXMLLoader can still be used for them.
+     * <p>
+     * For "com/example/Main.fxml" the class "com.example.Main_fxml" gets created, which implements
+     * BiFunction&lt;Object, ResourceBundle, Object&gt;: it takes the controller (or null for creating the one
+     * specified by fx:controller) and the resources, and returns the root element. All compiled FXML files are
+     * listed inside META-INF/compiled-fxml.properties, which is referenced by the manifest attribute
+     * "JavaFX-Compiled-FXML". The JAR additionally contains the class "com.zenjava.javafx.fxml.CompiledFxmlLoader",
+     * so the application can call CompiledFxmlLoader.load(getClass(), "Main.fxml") instead of
+     * FXMLLoader.load(getClass().getResource("Main.fxml")), which uses the compiled form if available and falls back
+     * to the FXMLLoader otherwise. This requires running Maven using some JDK.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.precompileFxml" default-value="false"
+     */
+    protected boolean precompileFxml;
+
+    /**
+     * Shrinks all PNG and JPEG files of the classes-folder before packaging them, without changing a single pixel:
+     * PNG image data gets compressed again and textual metadata is removed, JPEG files only lose their metadata (like
+     * EXIF, XMP or comments). Images which would not get smaller are kept as they are, the original files inside the
+     * classes-folder are never modified.
+     * <p>
+     * Optimized images are cached inside &lt;cacheDir&gt;, so only changed images get processed again. The size of
+     * each image before and after optimizing is written to &lt;imageOptimizationReport&gt;.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.optimizeImages" default-value="false"
+     */
+    protected boolean optimizeImages;
+
+    /**
+     * Folder containing high-resolution sources for HiDPI images, used when &lt;optimizeImages&gt; is enabled. Each
+     * image of this folder gets scaled to twice the size of the image having the same relative path inside the
+     * classes-folder, and is packaged next to it with "@2x" appended to its name (e.g. "icons/save@2x.png"), which
+     * JavaFX picks up automatically on HiDPI screens.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.hiDpiImageSourceDir" default-value="${project.basedir}/src/main/hidpi-images"
+     */
+    protected File hiDpiImageSourceDir;
+
+    /**
+     * Report listing the size of each image before and after optimizing.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.imageOptimizationReport" default-value="${project.build.directory}/jfx/image-optimization.txt"
+     */
+    protected File imageOptimizationReport;
+
     /**
      * A custom class that can act as a Pre-Loader for your app. The Pre-Loader is run before anything else and is
      * useful for showing splash screens or similar 'progress' style windows. For more information on Pre-Loaders, see
@@ -133,6 +214,18 @@ public class JarMojo extends AbstractJfxToolsMojo {
      */
     protected boolean classpathExcludesTransient;
 
+    /**
+     * For excluding a lot of dependencies at once (e.g. all dependencies of some vendor), you can specify patterns
+     * in the form "groupId:artifactId" here, both parts may contain wildcards ('*' and '?'), e.g. "org.apache.*:*".
+     * When only providing the groupId, all artifacts of that group are excluded. These patterns are handled like
+     * entries of &lt;classpathExcludes&gt;, including &lt;classpathExcludesTransient&gt;.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.classpathExcludePatterns"
+     */
+    protected List<String> classpathExcludePatterns = new ArrayList<>();
+
     /**
      * When you need to add additional files to generated app-folder (e.g. README, license, third-party-tools, ...),
      * you can specify the source-folder here. All files will be copied recursively.
@@ -193,6 +286,277 @@ public class JarMojo extends AbstractJfxToolsMojo {
      */
     protected boolean prefixWithGroupIdForClasspathDependencies = false;
 
+    /**
+     * Number of dependencies being copied at the same time into the lib-folder. On network-backed build disks
+     * the copy latency dominates the build time, so setting this to a higher value might speed up your build.
+     * The classpath inside the manifest keeps its order.
+     *
+     * This defaults to 1, which copies one dependency after the other, like in previous versions.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.stagingParallelism" default-value="1"
+     */
+    protected int stagingParallelism = 1;
+
+    /**
+     * Inside reactor builds having multiple applications, every module copies the same dependencies into its own
+     * lib-folder. Set this to true for storing every dependency once inside &lt;sharedDependencyStoreDir&gt;
+     * (identified by its SHA-256 checksum), the lib-folders then get linked to these stored files. When
+     * &lt;stagingStrategy&gt; is "copy", hardlinks are used, falling back to copying when the store resides on
+     * some other filesystem.
+     * <p>
+     * Please do not modify the files inside the lib-folder afterwards, as these changes would end up inside the store.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.useSharedDependencyStore" default-value="false"
+     */
+    protected boolean useSharedDependencyStore;
+
+    /**
+     * The folder of the shared dependency store, defaults to the build directory of the top-level project, so all
+     * modules of the reactor share the same store and a "mvn clean" removes it.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.sharedDependencyStoreDir" default-value="${session.topLevelProject.build.directory}/jfx-shared-dependencies"
+     */
+    protected File sharedDependencyStoreDir;
+
+    /**
+     * Creating the JavaFX JAR is skipped when nothing changed since the last build, that is the content of the
+     * classes-folder (or the existing jar-file), the manifest attributes, the css2bin-flag, the preloader and the
+     * classpath. Set this to false for always re-creating the JavaFX JAR.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.skipUnchangedJar" default-value="true"
+     */
+    protected boolean skipUnchangedJar = true;
+
+    /**
+     * Which implementation to use for writing the JavaFX JAR:
+     * <ul>
+     * <li><b>packager</b> uses the packager of the JDK (ant-javafx.jar), this is the default</li>
+     * <li><b>native</b> uses some jar-writer of this plugin, which streams all files directly into the JAR, does not
+     * require the packager and makes the compression level configurable</li>
+     * </ul>
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.jarWriter" default-value="packager"
+     */
+    protected String jarWriter = JAR_WRITER_PACKAGER;
+
+    /**
+     * Compression level used by the native jar-writer, from 0 (no compression) to 9 (best compression), -1 uses the
+     * default level.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.jarCompressionLevel" default-value="-1"
+     */
+    protected int jarCompressionLevel = -1;
+
+    /**
+     * Stores all entries of the JavaFX JAR uncompressed. This is meant for native bundles whose installer compresses
+     * its payload anyway (like deb or rpm): the download stays small, but the application does not have to inflate
+     * its classes and resources while starting. When using the packager, its result gets rewritten afterwards.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.storeUncompressedJar" default-value="false"
+     */
+    protected boolean storeUncompressedJar;
+
+    /**
+     * Stores all entries of the jar-files inside the lib-folder uncompressed, instead of copying or linking them.
+     * Like &lt;storeUncompressedJar&gt;, this is meant for native bundles only.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.storeUncompressedDependencies" default-value="false"
+     */
+    protected boolean storeUncompressedDependencies;
+
+    /**
+     * Creates a reproducible JavaFX JAR: all entries are sorted, get the same timestamp and manifest attributes are
+     * written in sorted order. Building unchanged sources then always results in a bit-identical JAR. When using the
+     * packager, its result gets rewritten afterwards.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.reproducibleJar" default-value="false"
+     */
+    protected boolean reproducibleJar;
+
+    /**
+     * Timestamp used for all entries of a reproducible JavaFX JAR, either ISO-8601 (e.g. "2020-04-01T10:15:30Z") or
+     * seconds since epoch. When not set, some fixed timestamp is used.
+     *
+     * @since 8.10.0
+     *
+     * @parameter default-value="${project.build.outputTimestamp}"
+     */
+    protected String outputTimestamp;
+
+    /**
+     * Creates one single self-contained JavaFX JAR instead of having all dependencies inside the lib-folder. All
+     * dependencies (respecting &lt;classpathExcludes&gt;) are merged into the JavaFX JAR, their manifests and
+     * signatures are dropped, service-files inside META-INF/services are merged. This always uses the native
+     * jar-writer. Dependencies are merged even when &lt;skipCopyingDependencies&gt; is set.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.fatJar" default-value="false"
+     */
+    protected boolean fatJar;
+
+    /**
+     * How to handle files existing in more than one dependency with different content when creating a fat JAR:
+     * <ul>
+     * <li><b>first</b> keeps the file of the first dependency, like the classloader would do (default)</li>
+     * <li><b>last</b> keeps the file of the last dependency</li>
+     * <li><b>fail</b> fails the build</li>
+     * </ul>
+     * All conflicting files are reported.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.fatJarDuplicatePolicy" default-value="first"
+     */
+    protected String fatJarDuplicatePolicy = "first";
+
+    /**
+     * Adds META-INF/INDEX.LIST to the JavaFX JAR, which maps all packages to the jar-files of the lib-folder
+     * containing them. This way the classloader does not have to look into every jar-file of the manifest classpath
+     * when loading some class. Packages spread over multiple jar-files (split packages) are reported, as they defeat
+     * the index.
+     * <p>
+     * Please note that only Java 8 up to Java 17 make use of this index.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.generateJarIndex" default-value="false"
+     */
+    protected boolean generateJarIndex;
+
+    /**
+     * When a startup trace exists (see &lt;startupTraceFile&gt;), all entries of the JavaFX JAR and the manifest
+     * classpath get ordered by their first usage while starting the application. Set this to false for ignoring
+     * the startup trace.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.useStartupTrace" default-value="true"
+     */
+    protected boolean useStartupTrace = true;
+
+    /**
+     * Analyzes which dependencies are used by the application: starting from the main class, the preloader, the main
+     * classes of all secondary launchers and all classes referenced by FXML files (like controllers), all reachable
+     * classes are collected by following the references inside each class-file. Dependencies without any reachable
+     * class are reported. Dependencies not containing any class at all (e.g. only resources) are never reported.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.analyzeDependencies" default-value="false"
+     */
+    protected boolean analyzeDependencies;
+
+    /**
+     * Removes all dependencies reported as unused (see &lt;analyzeDependencies&gt;) from the lib-folder and the
+     * manifest classpath, like they were listed inside &lt;classpathExcludes&gt;. Please make sure to add all
+     * classes only loaded via reflection to &lt;dependencyAnalysisEntryPoints&gt;.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.pruneUnusedDependencies" default-value="false"
+     */
+    protected boolean pruneUnusedDependencies;
+
+    /**
+     * Additional classes to start the dependency analysis from, e.g. classes only loaded via reflection.
+     *
+     * @since 8.10.0
+     *
+     * @parameter
+     */
+    protected List<String> dependencyAnalysisEntryPoints;
+
+    /**
+     * Secondary launchers as configured for "jfx:native", their main classes are used as entry points of the
+     * dependency analysis.
+     *
+     * @since 8.10.0
+     *
+     * @parameter
+     */
+    protected List<NativeLauncher> secondaryLaunchers;
+
+    /**
+     * Removes all unreachable classes from the JavaFX JAR and the jar-files of the lib-folder, using the same
+     * analysis as &lt;analyzeDependencies&gt; (starting at the main class, the preloader, the main classes of all
+     * secondary launchers, FXML-referenced classes and service providers). Resources are only removed when they
+     * reside inside some package whose classes got all removed. This replaces the need for running ProGuard just
+     * for shrinking, but does not obfuscate or optimize anything.
+     * <p>
+     * All removed entries are written to &lt;shrinkReport&gt;. Classes only loaded via reflection have to be kept
+     * using &lt;shrinkKeepRules&gt;.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.shrink" default-value="false"
+     */
+    protected boolean shrink;
+
+    /**
+     * Classes to keep when shrinking, including all classes they reference. Each rule is some class name, where "*"
+     * matches any part of a name without dots and "**" matches anything, e.g. "com.example.Plugin",
+     * "com.example.model.*" or "org.hibernate.**".
+     *
+     * @since 8.10.0
+     *
+     * @parameter
+     */
+    protected List<String> shrinkKeepRules;
+
+    /**
+     * Report of all entries removed by shrinking, grouped by the jar-file or folder they were removed from.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.shrinkReport" default-value="${project.build.directory}/jfx/shrink-report.txt"
+     */
+    protected File shrinkReport;
+
+    private StartupTrace startupTrace = new StartupTrace();
+
+    private ReachabilityAnalyzer reachabilityAnalyzer = null;
+
+    private Set<String> removedMainJarEntries = Collections.emptySet();
+
+    private static final String JAR_WRITER_PACKAGER = "packager";
+
+    private static final String JAR_WRITER_NATIVE = "native";
+
+    private static final String STAGING_MANIFEST_FILENAME = "lib-staging.properties";
+
+    private static final String FINGERPRINT_FILENAME_SUFFIX = ".fingerprint";
+
+    private static final String CSS2BIN_CACHE_FOLDERNAME = "css";
+
+    private static final String CSS2BIN_OUTPUT_FOLDERNAME = "css2bin";
+
+    private static final String FXML_SOURCES_FOLDERNAME = "fxml-sources";
+
+    private static final String FXML_CLASSES_FOLDERNAME = "fxml-classes";
+
+    private static final String IMAGES_CACHE_FOLDERNAME = "images";
+
+    private static final String IMAGES_OUTPUT_FOLDERNAME = "optimized-images";
+
     @Override
     @SuppressWarnings("cyclomaticcomplexity")
     public void execute() throws MojoExecutionException, MojoFailureException {
@@ -235,12 +599,19 @@ public class JarMojo extends AbstractJfxToolsMojo {
             throw new MojoExecutionException("Unable to create app lib dir: " + libDir);
         }
 
+        boolean useNativeJarWriter = isUsingNativeJarWriter();
+        startupTrace = loadStartupTrace();
+
+        InputFingerprint jarFingerprint = new InputFingerprint();
+        File jarSource;
         if( updateExistingJar ){
             File potentialExistingFile = new File(build.getDirectory() + File.separator + build.getFinalName() + ".jar");
             if( !potentialExistingFile.exists() ){
                 throw new MojoExecutionException("Could not update existing jar-file, because it does not exist. Please make sure this file gets created or exists, or set updateExistingJar to false.");
             }
             createJarParams.addResource(null, potentialExistingFile);
+            jarSource = potentialExistingFile;
+            jarFingerprint.addFile("existingJar", potentialExistingFile);
         } else {
             File potentialExistingGeneratedClasses = new File(build.getOutputDirectory());
             // make sure folder exists, it is possible to have just some bootstraping "-jfx.jar"
@@ -249,12 +620,17 @@ public class JarMojo extends AbstractJfxToolsMojo {
                 potentialExistingGeneratedClasses.mkdirs();
             }
             createJarParams.addResource(potentialExistingGeneratedClasses, "");
+            jarSource = potentialExistingGeneratedClasses;
+            jarFingerprint.addFolder("classes", potentialExistingGeneratedClasses);
         }
 
+        List<DependencyStager.StagedFile> filesToStage = new ArrayList<>();
+        // a fat jar always needs all dependencies, skipping only means not copying them into the lib-folder
+        boolean collectDependencies = !skipCopyingDependencies || fatJar;
         try{
             if( checkIfJavaIsHavingPackagerJar() ){
                 getLog().debug("Check if packager.jar needs to be added");
-                if( addPackagerJar && !skipCopyingDependencies ){
+                if( addPackagerJar && collectDependencies ){
                     getLog().debug("Searching for packager.jar ...");
                     String targetPackagerJarPath = libFolderName + File.separator + "packager.jar";
                     for( Dependency dependency : project.getDependencies() ){
@@ -264,10 +640,7 @@ public class JarMojo extends AbstractJfxToolsMojo {
                             String packagerJarFilePathString = packagerJarFile.toPath().normalize().toString();
                             if( packagerJarFile.exists() && packagerJarFilePathString.endsWith(targetPackagerJarPath) ){
                                 getLog().debug(String.format("Including packager.jar from system-scope: %s", packagerJarFilePathString));
-                                File dest = new File(libDir, packagerJarFile.getName());
-                                if( !dest.exists() ){
-                                    Files.copy(packagerJarFile.toPath(), dest.toPath());
-                                }
+                                filesToStage.add(new DependencyStager.StagedFile(packagerJarFile, packagerJarFile.getName(), dependency.getManagementKey()));
                                 // this is for INSIDE the manifes-file, so always use "/"
                                 classpath.append(libFolderName).append("/").append(packagerJarFile.getName()).append(" ");
                             }
@@ -281,18 +654,20 @@ public class JarMojo extends AbstractJfxToolsMojo {
                     getLog().warn("Skipped checking for packager.jar. Please install at least Java 1.8u40 for using this feature.");
                 }
             }
-            List<String> brokenArtifacts = new ArrayList<>();
-            project.getArtifacts().stream().filter(artifact -> {
+            ClasspathExclusions classpathExclusions = new ClasspathExclusions(classpathExcludes, classpathExcludePatterns, classpathExcludesTransient);
+            List<Artifact> classpathArtifacts = project.getArtifacts().stream().filter(artifact -> {
                 // filter all unreadable, non-file artifacts
                 File artifactFile = artifact.getFile();
                 return artifactFile.isFile() && artifactFile.canRead();
             }).filter(artifact -> {
-                if( classpathExcludes.isEmpty() ){
+                if( classpathExclusions.isEmpty() ){
                     return true;
                 }
-                boolean isListedInList = isListedInExclusionList(artifact);
+                boolean isListedInList = classpathExclusions.isExcluded(artifact);
                 return !isListedInList;
-            }).forEach(artifact -> {
+            }).collect(Collectors.toList());
+            classpathArtifacts.removeAll(findUnusedDependencies(jarSource, classpathArtifacts));
+            classpathArtifacts.forEach(artifact -> {
                 File artifactFile = artifact.getFile();
                 getLog().debug(String.format("Including classpath element: %s", artifactFile.getAbsolutePath()));
                 String artifactFileName = artifactFile.getName();
@@ -301,31 +676,39 @@ public class JarMojo extends AbstractJfxToolsMojo {
                     artifactFileName = artifact.getGroupId() + "." + artifactFile.getName();
                 }
 
-                File dest = new File(libDir, artifactFileName);
-
-                if( !dest.exists() ){
-                    try{
-                        if( !skipCopyingDependencies ){
-                            Files.copy(artifactFile.toPath(), dest.toPath());
-                        } else {
-                            getLog().info(String.format("Skipped copying classpath element: %s", artifactFile.getAbsolutePath()));
-                        }
-                    } catch(IOException ex){
-                        getLog().warn(String.format("Couldn't read from file %s", artifactFile.getAbsolutePath()));
-                        getLog().debug(ex);
-                        brokenArtifacts.add(artifactFile.getAbsolutePath());
-                    }
+                if( collectDependencies ){
+                    filesToStage.add(new DependencyStager.StagedFile(artifactFile, artifactFileName, artifact.getId()));
+                } else {
+                    getLog().info(String.format("Skipped copying classpath element: %s", artifactFile.getAbsolutePath()));
                 }
                 classpath.append(libFolderName).append("/").append(artifactFileName).append(" ");
             });
-            if( !brokenArtifacts.isEmpty() ){
-                throw new MojoExecutionException("Error copying dependencies for application");
+
+            Map<File, Set<String>> removedEntries = prepareShrinking(jarSource, filesToStage);
+            if( !skipCopyingDependencies ){
+                // only copy what has changed since last build, and remove what is not required anymore
+                DependencyStager dependencyStager = new DependencyStager(libDir, new File(cacheDir, STAGING_MANIFEST_FILENAME), getStagingStrategy(), stagingParallelism, getLog());
+                dependencyStager.setStoreJarsUncompressed(storeUncompressedDependencies);
+                dependencyStager.setRemovedEntries(removedEntries);
+                ArtifactCache artifactCache = getArtifactCache();
+                if( artifactCache != null ){
+                    dependencyStager.setSharedStore(artifactCache);
+                } else if( useSharedDependencyStore ){
+                    dependencyStager.setSharedStore(new SharedDependencyStore(sharedDependencyStoreDir, getLog()));
+                }
+                // a fat jar contains all dependencies, this removes what was staged by previous builds
+                List<String> brokenArtifacts = dependencyStager.stage(fatJar ? Collections.emptyList() : filesToStage);
+                Optional.ofNullable(artifactCache).ifPresent(this::evictArtifactCache);
+                if( !brokenArtifacts.isEmpty() ){
+                    throw new MojoExecutionException("Error copying dependencies for application");
+                }
             }
         } catch(IOException e){
             throw new MojoExecutionException("Error copying dependency for application", e);
         }
 
-        if( useLibFolderContentForManifestClasspath ){
+        String manifestClasspath = fatJar ? "" : classpath.toString();
+        if( useLibFolderContentForManifestClasspath && !fatJar ){
             StringBuilder scannedClasspath = new StringBuilder();
             try{
                 Files.walkFileTree(libDir.toPath(), new SimpleFileVisitor<Path>() {
@@ -338,31 +721,90 @@ public class JarMojo extends AbstractJfxToolsMojo {
             } catch(IOException ioex){
                 getLog().warn("Got problem while scanning lib-folder", ioex);
             }
-            createJarParams.setClasspath(scannedClasspath.toString());
-        } else {
-            createJarParams.setClasspath(classpath.toString());
+            manifestClasspath = scannedClasspath.toString();
         }
 
-        Optional.ofNullable(fixedManifestClasspath).ifPresent(manifestClasspath -> {
-            if( manifestClasspath.trim().isEmpty() ){
-                return;
+        if( !startupTrace.isEmpty() ){
+            // the lib-files used first are placed first, so the classloader finds them faster
+            try{
+                manifestClasspath = startupTrace.orderClasspath(manifestClasspath, jfxAppOutputDir);
+            } catch(IOException e){
+                throw new MojoExecutionException("Unable to order classpath by startup trace", e);
             }
-            createJarParams.setClasspath(manifestClasspath);
+        }
+
+        if( fixedManifestClasspath != null && !fixedManifestClasspath.trim().isEmpty() ){
+            manifestClasspath = fixedManifestClasspath;
 
             if( useLibFolderContentForManifestClasspath ){
                 getLog().warn("You specified to use the content of the lib-folder AND specified a fixed classpath. The fixed classpath will get taken.");
             }
-        });
+        }
+        createJarParams.setClasspath(manifestClasspath);
 
         // https://docs.oracle.com/javase/8/docs/technotes/guides/deploy/manifest.html#JSDPG896
         if( allPermissions ){
             manifestAttributes.put("Permissions", "all-permissions");
         }
 
-        try{
-            getPackagerLib().packageAsJar(createJarParams);
-        } catch(PackagerException e){
-            throw new MojoExecutionException("Unable to build JFX JAR for application", e);
+        jarFingerprint.add("mainClass", mainClass)
+                .add("preLoader", preLoader)
+                .add("css2bin", css2bin)
+                .add("precompileFxml", precompileFxml)
+                .add("optimizeImages", optimizeImages)
+                .add("manifestAttributes", manifestAttributes)
+                .add("classpath", manifestClasspath)
+                .add("jarWriter", useNativeJarWriter ? JAR_WRITER_NATIVE + jarCompressionLevel : JAR_WRITER_PACKAGER)
+                .add("fatJar", fatJar ? fatJarDuplicatePolicy : "false")
+                .add("reproducible", reproducibleJar ? String.valueOf(outputTimestamp) : "false")
+                .add("storeUncompressed", storeUncompressedJar)
+                // the packager might produce different results on other JDKs
+                .add("java.version", System.getProperty("java.version"));
+
+        if( !startupTrace.isEmpty() ){
+            jarFingerprint.addFile("startupTrace", startupTraceFile);
+        }
+        if( optimizeImages ){
+            jarFingerprint.addFolder("hiDpiImages", hiDpiImageSourceDir);
+        }
+        if( fatJar || generateJarIndex || shrink ){
+            filesToStage.forEach(fileToStage -> jarFingerprint.addFile("dependency", fileToStage.getSource()));
+            jarFingerprint.add("generateJarIndex", generateJarIndex);
+            // removed entries of the JavaFX JAR depend on all dependencies
+            jarFingerprint.add("shrink", shrink ? removedMainJarEntries.stream().sorted().collect(Collectors.joining(",")) : "false");
+        }
+
+        File mainAppJarFile = new File(jfxAppOutputDir, jfxMainAppJarName);
+        File jarFingerprintFile = new File(cacheDir, jfxMainAppJarName + FINGERPRINT_FILENAME_SUFFIX);
+        String outdatedReason = getJarOutdatedReason(jarFingerprint, jarFingerprintFile, mainAppJarFile);
+        if( outdatedReason == null ){
+            getLog().info(String.format("Skipped building JavaFX JAR, nothing has changed since last build: %s", mainAppJarFile.getAbsolutePath()));
+        } else {
+            getLog().debug(String.format("Building JavaFX JAR, because %s", outdatedReason));
+            long startTime = System.currentTimeMillis();
+            File convertedStylesheets = convertStylesheets(jarSource);
+            if( convertedStylesheets != null ){
+                createJarParams.setCss2bin(false);
+            }
+            List<File> generatedFolders = new ArrayList<>();
+            Optional.ofNullable(convertedStylesheets).ifPresent(generatedFolders::add);
+            Optional.ofNullable(compileFxml(jarSource)).ifPresent(generatedFolders::add);
+            File optimizedImages = optimizeImages(jarSource);
+            if( useNativeJarWriter ){
+                packageJarUsingNativeWriter(jarSource, generatedFolders, optimizedImages, mainAppJarFile, manifestClasspath, filesToStage);
+            } else {
+                generatedFolders.forEach(generatedFolder -> createJarParams.addResource(generatedFolder, ""));
+                packageJarUsingPackager(createJarParams);
+                // the packager can not replace files, so optimized images are put in place by rewriting the jar
+                if( reproducibleJar || storeUncompressedJar || !removedMainJarEntries.isEmpty() || !startupTrace.isEmpty() || optimizedImages != null ){
+                    rewritePackagerJar(mainAppJarFile, optimizedImages);
+                }
+            }
+            if( generateJarIndex ){
+                addJarIndex(mainAppJarFile, manifestClasspath);
+            }
+            getLog().info(String.format("Built JavaFX JAR using %s jar-writer in %s ms", useNativeJarWriter ? JAR_WRITER_NATIVE : JAR_WRITER_PACKAGER, System.currentTimeMillis() - startTime));
+            recordJarFingerprint(jarFingerprint, jarFingerprintFile, mainAppJarFile);
         }
 
         if( copyAdditionalAppResourcesToJar ){
@@ -400,28 +842,345 @@ public class JarMojo extends AbstractJfxToolsMojo {
         }
     }
 
-    private boolean checkIfJavaIsHavingPackagerJar() {
-        if( JavaDetectionTools.IS_JAVA_8 && JavaDetectionTools.isAtLeastOracleJavaUpdateVersion(40) ){
+    private boolean isUsingNativeJarWriter() throws MojoExecutionException {
+        if( fatJar ){
+            if( css2bin && updateExistingJar ){
+                getLog().warn("Creating a fat JAR does not support css2bin when updating an existing jar-file, CSS files are left in their plain text format.");
+            }
             return true;
         }
-        if( JavaDetectionTools.IS_JAVA_9_AND_BEYOND ){ // NOSONAR
-            return true;
+        if( jarWriter == null || JAR_WRITER_PACKAGER.equalsIgnoreCase(jarWriter.trim()) ){
+            return false;
+        }
+        if( !JAR_WRITER_NATIVE.equalsIgnoreCase(jarWriter.trim()) ){
+            throw new MojoExecutionException(String.format("Unknown jar-writer \"%s\", please use \"%s\" or \"%s\".", jarWriter, JAR_WRITER_PACKAGER, JAR_WRITER_NATIVE));
+        }
+        if( css2bin && updateExistingJar ){
+            getLog().warn("The native jar-writer does not support css2bin when updating an existing jar-file, using the packager instead.");
+            return false;
+        }
+        return true;
+    }
+
+    private void packageJarUsingPackager(CreateJarParams createJarParams) throws MojoExecutionException {
+        try{
+            PackagerLib packagerLib = getPackagerLib();
+            // goes through the packager logger, like all messages of the packager itself
+            Log.verbose(String.format("Packaging %s using the packager", jfxMainAppJarName));
+            packagerLib.packageAsJar(createJarParams);
+        } catch(PackagerException e){
+            throw new MojoExecutionException("Unable to build JFX JAR for application", e);
+        } finally{
+            // the thread might be reused by some other build
+            uninstallPackagerLogger();
+        }
+    }
+
+    private File convertStylesheets(File jarSource) throws MojoExecutionException {
+        // stylesheets inside existing jar-files are left to the packager
+        if( !css2bin || !jarSource.isDirectory() ){
+            return null;
+        }
+        File convertedStylesheets = new File(cacheDir, CSS2BIN_OUTPUT_FOLDERNAME);
+        int parallelism = css2binParallelism > 0 ? css2binParallelism : Runtime.getRuntime().availableProcessors();
+        Css2BinConverter css2BinConverter = new Css2BinConverter(new File(cacheDir, CSS2BIN_CACHE_FOLDERNAME), parallelism, getLog());
+        try{
+            List<String> failures = css2BinConverter.convert(jarSource.toPath(), convertedStylesheets.toPath());
+            if( !failures.isEmpty() ){
+                getLog().warn(String.format("Couldn't convert %s CSS files, these are left in their plain text format:", failures.size()));
+                failures.stream().sorted().forEach(failure -> getLog().warn("  " + failure));
+            }
+        } catch(IOException e){
+            throw new MojoExecutionException("Unable to convert CSS files to binary format", e);
+        }
+        return convertedStylesheets;
+    }
+
+    private File compileFxml(File jarSource) throws MojoExecutionException {
+        if( !precompileFxml ){
+            return null;
+        }
+        if( !jarSource.isDirectory() ){
+            getLog().warn("Compiling FXML files is not supported when updating an existing jar-file, skipping.");
+            return null;
+        }
+        // all dependencies are needed for resolving the used classes, even the excluded ones
+        List<File> compileClasspath = project.getArtifacts().stream()
+                .map(Artifact::getFile)
+                .filter(artifactFile -> artifactFile != null && artifactFile.isFile())
+                .collect(Collectors.toList());
+        String targetVersion = Optional.ofNullable(project.getProperties().getProperty("maven.compiler.release"))
+                .orElse(project.getProperties().getProperty("maven.compiler.target"));
+        File compiledFxml = new File(cacheDir, FXML_CLASSES_FOLDERNAME);
+        FxmlPrecompiler fxmlPrecompiler = new FxmlPrecompiler(compileClasspath, targetVersion, getLog());
+        try{
+            List<String> failures = fxmlPrecompiler.compile(jarSource.toPath(), new File(cacheDir, FXML_SOURCES_FOLDERNAME).toPath(), compiledFxml.toPath());
+            if( !failures.isEmpty() ){
+                getLog().warn(String.format("Couldn't compile %s FXML files, these have to be loaded using the FXMLLoader:", failures.size()));
+                failures.forEach(failure -> getLog().warn("  " + failure));
+            }
+            if( new File(compiledFxml, FxmlPrecompiler.INDEX_NAME).isFile() ){
+                manifestAttributes.put(FxmlPrecompiler.MANIFEST_ATTRIBUTE, FxmlPrecompiler.INDEX_NAME);
+            }
+        } catch(IOException e){
+            throw new MojoExecutionException("Unable to compile FXML files", e);
+        }
+        return compiledFxml;
+    }
+
+    private File optimizeImages(File jarSource) throws MojoExecutionException {
+        if( !optimizeImages ){
+            return null;
+        }
+        if( !jarSource.isDirectory() ){
+            getLog().warn("Optimizing images is not supported when updating an existing jar-file, skipping.");
+            return null;
+        }
+        File optimizedImages = new File(cacheDir, IMAGES_OUTPUT_FOLDERNAME);
+        ImageOptimizer imageOptimizer = new ImageOptimizer(new File(cacheDir, IMAGES_CACHE_FOLDERNAME), Runtime.getRuntime().availableProcessors(), getLog());
+        try{
+            List<String> failures = imageOptimizer.optimize(jarSource.toPath(), hiDpiImageSourceDir == null ? null : hiDpiImageSourceDir.toPath(), optimizedImages.toPath());
+            if( !failures.isEmpty() ){
+                getLog().warn(String.format("Couldn't process %s images, these are packaged as they are:", failures.size()));
+                failures.stream().sorted().forEach(failure -> getLog().warn("  " + failure));
+            }
+            imageOptimizer.writeReport(imageOptimizationReport);
+            getLog().info(String.format("Wrote image optimization report: %s", imageOptimizationReport.getAbsolutePath()));
+        } catch(IOException e){
+            throw new MojoExecutionException("Unable to optimize images", e);
+        }
+        return optimizedImages;
+    }
+
+    private void packageJarUsingNativeWriter(File jarSource, List<File> generatedFolders, File optimizedImages, File mainAppJarFile, String manifestClasspath, List<DependencyStager.StagedFile> dependencies) throws MojoExecutionException {
+        JfxJarWriter jfxJarWriter = createJfxJarWriter();
+        jfxJarWriter.setCompressionLevel(jarCompressionLevel);
+        if( jarSource.isDirectory() ){
+            jfxJarWriter.addSourceFolder(jarSource);
+        } else {
+            jfxJarWriter.addSourceJar(jarSource);
+        }
+        generatedFolders.forEach(jfxJarWriter::addSourceFolder);
+        Optional.ofNullable(optimizedImages).ifPresent(jfxJarWriter::addOverlayFolder);
+        if( fatJar ){
+            try{
+                jfxJarWriter.setDuplicatePolicy(JfxJarWriter.DuplicatePolicy.fromString(fatJarDuplicatePolicy));
+            } catch(IllegalArgumentException e){
+                throw new MojoExecutionException(String.format("Unknown duplicate policy \"%s\", please use \"first\", \"last\" or \"fail\".", fatJarDuplicatePolicy), e);
+            }
+            dependencies.forEach(dependency -> jfxJarWriter.addDependencyJar(dependency.getSource()));
+        }
+        try{
+            jfxJarWriter.write(mainAppJarFile, JfxJarWriter.createManifest(mainClass, preLoader, manifestClasspath, manifestAttributes));
+        } catch(IOException | IllegalArgumentException e){
+            throw new MojoExecutionException("Unable to build JFX JAR for application", e);
+        }
+        if( fatJar ){
+            getLog().info(String.format("Merged %s dependencies into fat JAR, found %s conflicting entries", dependencies.size(), jfxJarWriter.getCollisions().size()));
+        }
+    }
+
+    private void rewritePackagerJar(File mainAppJarFile, File optimizedImages) throws MojoExecutionException {
+        // the packager gives no control about the jar-entries, so just rewrite the whole jar
+        JfxJarWriter jfxJarWriter = createJfxJarWriter();
+        jfxJarWriter.addSourceJar(mainAppJarFile);
+        Optional.ofNullable(optimizedImages).ifPresent(jfxJarWriter::addOverlayFolder);
+        try{
+            jfxJarWriter.write(mainAppJarFile, new Manifest());
+        } catch(IOException e){
+            throw new MojoExecutionException("Unable to rewrite JFX JAR", e);
+        }
+    }
+
+    private List<Artifact> findUnusedDependencies(File jarSource, List<Artifact> classpathArtifacts) {
+        if( !analyzeDependencies && !pruneUnusedDependencies && !shrink ){
+            return Collections.emptyList();
+        }
+        ReachabilityAnalyzer analyzer = new ReachabilityAnalyzer(getLog());
+        analyzer.addEntryPoint(mainClass);
+        analyzer.addEntryPoint(preLoader);
+        Optional.ofNullable(secondaryLaunchers).ifPresent(launchers -> launchers.forEach(launcher -> analyzer.addEntryPoint(launcher.getMainClass())));
+        Optional.ofNullable(dependencyAnalysisEntryPoints).ifPresent(entryPoints -> entryPoints.forEach(analyzer::addEntryPoint));
+        Optional.ofNullable(shrinkKeepRules).ifPresent(keepRules -> keepRules.forEach(analyzer::addKeepRule));
+
+        Map<File, int[]> reachableClasses;
+        try{
+            long startTime = System.currentTimeMillis();
+            reachableClasses = analyzer.analyze(jarSource, classpathArtifacts.stream().map(Artifact::getFile).collect(Collectors.toList()));
+            getLog().info(String.format("Analyzed %s dependencies in %s ms", classpathArtifacts.size(), System.currentTimeMillis() - startTime));
+        } catch(IOException ex){
+            getLog().warn("Couldn't analyze dependencies, keeping all classes and dependencies.");
+            getLog().debug(ex);
+            return Collections.emptyList();
+        }
+        reachabilityAnalyzer = analyzer;
+        if( !analyzeDependencies && !pruneUnusedDependencies ){
+            return Collections.emptyList();
+        }
+
+        // dependencies without classes might be used for their resources
+        List<Artifact> unusedArtifacts = classpathArtifacts.stream().filter(artifact -> {
+            int[] classCounts = reachableClasses.get(artifact.getFile());
+            return classCounts != null && classCounts[0] == 0 && classCounts[1] > 0;
+        }).collect(Collectors.toList());
+        if( unusedArtifacts.isEmpty() ){
+            getLog().info("Found no unused dependencies.");
+            return unusedArtifacts;
+        }
+        getLog().warn(String.format("Found %s dependencies without any reachable class:", unusedArtifacts.size()));
+        unusedArtifacts.forEach(artifact -> getLog().warn(String.format("  %s (%s classes)", artifact.getId(), reachableClasses.get(artifact.getFile())[1])));
+        if( !pruneUnusedDependencies ){
+            getLog().info("Set <pruneUnusedDependencies> to true for removing them from the lib-folder and the manifest classpath.");
+            return Collections.emptyList();
+        }
+        getLog().info(String.format("Removed %s unused dependencies from the lib-folder and the manifest classpath.", unusedArtifacts.size()));
+        return unusedArtifacts;
+    }
+
+    private Map<File, Set<String>> prepareShrinking(File jarSource, List<DependencyStager.StagedFile> stagedFiles) throws IOException {
+        if( !shrink || reachabilityAnalyzer == null ){
+            return Collections.emptyMap();
+        }
+        Map<File, Set<String>> removedEntries = new LinkedHashMap<>();
+        removedEntries.put(jarSource, reachabilityAnalyzer.getRemovableEntries(jarSource));
+        stagedFiles.forEach(stagedFile -> removedEntries.put(stagedFile.getSource(), reachabilityAnalyzer.getRemovableEntries(stagedFile.getSource())));
+
+        removedMainJarEntries = new HashSet<>(removedEntries.get(jarSource));
+        if( fatJar ){
+            removedEntries.values().forEach(removedMainJarEntries::addAll);
+        }
+
+        long removedClasses = removedEntries.values().stream().flatMap(Set::stream).filter(entryName -> entryName.endsWith(".class")).count();
+        long removedResources = removedEntries.values().stream().mapToInt(Set::size).sum() - removedClasses;
+        Files.createDirectories(shrinkReport.getAbsoluteFile().getParentFile().toPath());
+        try(Writer writer = Files.newBufferedWriter(shrinkReport.toPath(), StandardCharsets.UTF_8)){
+            writer.write(String.format("# shrinking by javafx-maven-plugin: %s classes and %s resources removed%n", removedClasses, removedResources));
+            writer.write(String.format("# source\tremoved entry%n"));
+            for( Map.Entry<File, Set<String>> removedSourceEntries : removedEntries.entrySet() ){
+                for( String entryName : removedSourceEntries.getValue() ){
+                    writer.write(String.format("%s\t%s%n", removedSourceEntries.getKey().getName(), entryName));
+                }
+            }
+        }
+        getLog().info(String.format("Shrinking removes %s classes and %s resources, wrote report: %s", removedClasses, removedResources, shrinkReport.getAbsolutePath()));
+        return removedEntries;
+    }
+
+    private StartupTrace loadStartupTrace() {
+        if( !useStartupTrace || startupTraceFile == null || !startupTraceFile.isFile() ){
+            return new StartupTrace();
+        }
+        try{
+            StartupTrace loadedStartupTrace = StartupTrace.load(startupTraceFile);
+            getLog().info(String.format("Using startup trace for ordering JavaFX JAR and classpath: %s", startupTraceFile.getAbsolutePath()));
+            return loadedStartupTrace;
+        } catch(IOException ex){
+            getLog().warn("Couldn't read startup trace, ignoring it.");
+            getLog().debug(ex);
+            return new StartupTrace();
         }
-        return false;
     }
 
-    private boolean isListedInExclusionList(Artifact artifact) {
-        return classpathExcludes.stream().filter(dependency -> {
-            // we are checking for "groupID:artifactId:" because we don't care about versions nor types (jar, war, source, ...)
-            String dependencyTrailIdentifier = dependency.getGroupId() + ":" + dependency.getArtifactId() + ":";
+    private void addJarIndex(File mainAppJarFile, String manifestClasspath) throws MojoExecutionException {
+        if( fatJar ){
+            getLog().info("Skipped creating jar index, as a fat JAR does not have any classpath.");
+            return;
+        }
+        // the index has to cover all entries of the classpath, in the same order
+        List<String> indexedJars = new ArrayList<>();
+        indexedJars.add(mainAppJarFile.getName());
+        for( String classpathElement : manifestClasspath.trim().split("\\s+") ){
+            if( classpathElement.isEmpty() ){
+                continue;
+            }
+            if( !classpathElement.toLowerCase().endsWith(".jar") || !new File(jfxAppOutputDir, classpathElement).isFile() ){
+                // classes inside not indexed classpath-elements would not be found anymore
+                getLog().warn(String.format("Skipped creating jar index, classpath element is not an existing jar-file: %s", classpathElement));
+                return;
+            }
+            indexedJars.add(classpathElement);
+        }
 
-            // when not transitive, look at the artifact information
-            if( !classpathExcludesTransient ){
-                return dependencyTrailIdentifier.startsWith(artifact.getGroupId() + ":" + artifact.getArtifactId() + ":");
+        JarIndexGenerator jarIndexGenerator = new JarIndexGenerator(getLog());
+        try{
+            String index = jarIndexGenerator.createIndex(jfxAppOutputDir, indexedJars);
+            JfxJarWriter jfxJarWriter = createJfxJarWriter();
+            jfxJarWriter.setCompressionLevel(jarCompressionLevel);
+            jfxJarWriter.addSourceJar(mainAppJarFile);
+            jfxJarWriter.addGeneratedEntry(JarIndexGenerator.INDEX_NAME, index.getBytes(StandardCharsets.UTF_8));
+            jfxJarWriter.write(mainAppJarFile, new Manifest());
+        } catch(IOException e){
+            throw new MojoExecutionException("Unable to add jar index to JFX JAR", e);
+        }
+        jarIndexGenerator.reportSplitPackages();
+        getLog().info(String.format("Added jar index for %s jar-files", indexedJars.size()));
+    }
+
+    private List<String> getMainJarEntryOrder() {
+        List<String> entryOrder = startupTrace.getEntryOrder(jfxMainAppJarName);
+        if( !entryOrder.isEmpty() ){
+            return entryOrder;
+        }
+        // name of the JavaFX JAR contains the version, which might have changed since recording the trace
+        return startupTrace.getJarOrder().stream()
+                .filter(jarPath -> !jarPath.contains("/"))
+                .findFirst()
+                .map(startupTrace::getEntryOrder)
+                .orElse(entryOrder);
+    }
+
+    private JfxJarWriter createJfxJarWriter() throws MojoExecutionException {
+        JfxJarWriter jfxJarWriter = new JfxJarWriter(getLog());
+        jfxJarWriter.setEntryOrder(getMainJarEntryOrder());
+        jfxJarWriter.setStored(storeUncompressedJar);
+        jfxJarWriter.setRemovedEntries(removedMainJarEntries);
+        if( reproducibleJar ){
+            jfxJarWriter.setReproducible(true);
+            try{
+                Optional.ofNullable(JfxJarWriter.parseOutputTimestamp(outputTimestamp)).ifPresent(jfxJarWriter::setReproducibleTimestamp);
+            } catch(IllegalArgumentException e){
+                throw new MojoExecutionException("Unable to use project.build.outputTimestamp", e);
             }
+        }
+        return jfxJarWriter;
+    }
 
-            // when transitive, look at the trail
-            return artifact.getDependencyTrail().stream().anyMatch((dependencyTrail) -> (dependencyTrail.startsWith(dependencyTrailIdentifier)));
-        }).count() > 0;
+    private String getJarOutdatedReason(InputFingerprint jarFingerprint, File jarFingerprintFile, File mainAppJarFile) {
+        if( !skipUnchangedJar ){
+            return "skipping unchanged JAR is disabled";
+        }
+        try{
+            return jarFingerprint.getOutdatedReason(jarFingerprintFile, mainAppJarFile);
+        } catch(IOException ex){
+            getLog().debug(ex);
+            return "fingerprint of last build could not be read";
+        }
+    }
+
+    private void recordJarFingerprint(InputFingerprint jarFingerprint, File jarFingerprintFile, File mainAppJarFile) {
+        if( !mainAppJarFile.isFile() ){
+            return;
+        }
+        try{
+            if( skipUnchangedJar && jarFingerprint.isComplete() ){
+                jarFingerprint.record(jarFingerprintFile, mainAppJarFile);
+            } else {
+                // make sure a later build won't use some outdated fingerprint
+                Files.deleteIfExists(jarFingerprintFile.toPath());
+            }
+        } catch(IOException ex){
+            getLog().warn("Couldn't write fingerprint of JavaFX JAR, it will be created again on next build.");
+            getLog().debug(ex);
+        }
+    }
+
+    private boolean checkIfJavaIsHavingPackagerJar() {
+        if( JavaDetectionTools.IS_JAVA_8 && JavaDetectionTools.isAtLeastOracleJavaUpdateVersion(40) ){
+            return true;
+        }
+        if( JavaDetectionTools.IS_JAVA_9_AND_BEYOND ){ // NOSONAR
+            return true;
+        }
+        return false;
     }
 }
@@ -41,7 +41,26 @@ public class JavaDetectionTools {
         return isJavaVersion(oracleJavaVersion, false);
     }
 
+    public static boolean isAtLeastJavaVersion(int javaVersion) {
+        return PackagingEngine.getInstance().probeJdk("isAtLeastJavaVersion:" + javaVersion, () -> detectAtLeastJavaVersion(javaVersion));
+    }
+
     public static boolean isAtLeastOracleJavaUpdateVersion(int updateNumber) {
+        return PackagingEngine.getInstance().probeJdk("isAtLeastOracleJavaUpdateVersion:" + updateNumber, () -> detectAtLeastOracleJavaUpdateVersion(updateNumber));
+    }
+
+    private static boolean detectAtLeastJavaVersion(int javaVersion) {
+        String specificationVersion = System.getProperty("java.specification.version");
+        // up to Java 8 the version is reported as "1.x"
+        String majorVersion = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+        try{
+            return Integer.parseInt(majorVersion.split("\\.")[0], 10) >= javaVersion;
+        } catch(NumberFormatException ex){
+            return false;
+        }
+    }
+
+    private static boolean detectAtLeastOracleJavaUpdateVersion(int updateNumber) {
         String javaVersion = System.getProperty("java.version");
         String[] javaVersionSplitted = javaVersion.split("_");
         if( javaVersionSplitted.length <= 1 ){
@@ -0,0 +1,848 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Creates the JavaFX JAR without using the packager of the JDK. All sources (folders or existing jar-files) are
+ * streamed straight into the target file, the manifest contains the same JavaFX-specific entries the packager
+ * would have created.
+ * <p>
+ * Dependency jars can be merged into the written jar-file (fat jar): their manifests, signatures and index files
+ * are dropped, all service-files under META-INF/services are merged and conflicting entries are handled according
+ * to some {@link DuplicatePolicy}. When some dependency is a multi-release jar, the written jar-file becomes one too,
+ * versioned entries of all other dependencies are dropped, as their runtime never used them.
+ * <p>
+ * When being reproducible, all entries are sorted by name, get the same timestamp and the manifest attributes are
+ * written in sorted order, so unchanged sources always result in a bit-identical jar-file.
+ * <p>
+ * All entries can be stored uncompressed, e.g. when the jar-file ends up inside some installer which gets compressed
+ * anyway. Reading such entries at runtime does not require inflating them.
+ * <p>
+ * The jar-file is written under some temporary name and gets moved to its final location when completed.
+ */
+public class JfxJarWriter {
+
+    public static final String MANIFEST_JAVAFX_VERSION = "JavaFX-Version";
+
+    public static final String MANIFEST_JAVAFX_APPLICATION_CLASS = "JavaFX-Application-Class";
+
+    public static final String MANIFEST_JAVAFX_PRELOADER_CLASS = "JavaFX-Preloader-Class";
+
+    public static final String MANIFEST_JAVAFX_CLASS_PATH = "JavaFX-Class-Path";
+
+    /**
+     * Used for all entries when being reproducible without having some explicit timestamp, it's far enough
+     * from 1980-01-01 (the minimum of the zip-format) to not get out of range in any timezone.
+     */
+    public static final long DEFAULT_REPRODUCIBLE_TIMESTAMP = 318211200000L;
+
+    private static final String MANIFEST_CREATED_BY = "Created-By";
+
+    private static final String MANIFEST_MULTI_RELEASE = "Multi-Release";
+
+    private static final String META_INF_FOLDER = "META-INF/";
+
+    private static final String SERVICES_FOLDER = "META-INF/services/";
+
+    private static final String VERSIONS_FOLDER = "META-INF/versions/";
+
+    private static final int MAX_REPORTED_COLLISIONS = 10;
+
+    private static final String JAVAFX_VERSION = "8.0";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MANIFEST_LINE_LENGTH = 72;
+
+    private final Log logger;
+
+    private final List<Path> sourceFolders = new ArrayList<>();
+
+    private final List<File> sourceJars = new ArrayList<>();
+
+    private final List<File> dependencyJars = new ArrayList<>();
+
+    private final List<Path> overlayFolders = new ArrayList<>();
+
+    private final Map<String, SourceEntry> overlayEntries = new HashMap<>();
+
+    private final Map<String, byte[]> generatedEntries = new LinkedHashMap<>();
+
+    private final List<String> collisions = new ArrayList<>();
+
+    private final Set<String> removedEntries = new HashSet<>();
+
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.FIRST;
+
+    private List<String> entryOrder = new ArrayList<>();
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private boolean stored = false;
+
+    private boolean reproducible = false;
+
+    private long reproducibleTimestamp = DEFAULT_REPRODUCIBLE_TIMESTAMP;
+
+    private int writtenEntries = 0;
+
+    private boolean mergedMultiReleaseJar = false;
+
+    public JfxJarWriter(Log logger) {
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @param stored true for storing all entries uncompressed, the compression level is ignored then
+     */
+    public void setStored(boolean stored) {
+        this.stored = stored;
+    }
+
+    /**
+     * @param removedEntries names of entries which are not written, e.g. classes found to be unreachable
+     */
+    public void setRemovedEntries(Collection<String> removedEntries) {
+        this.removedEntries.clear();
+        this.removedEntries.addAll(removedEntries);
+    }
+
+    public void setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+    }
+
+    /**
+     * Entries with these names are written first, in the given order (e.g. the order of loading classes while
+     * starting the application), all other entries follow.
+     *
+     * @param entryOrder names of the entries to write first
+     */
+    public void setEntryOrder(List<String> entryOrder) {
+        this.entryOrder = entryOrder;
+    }
+
+    public void setReproducible(boolean reproducible) {
+        this.reproducible = reproducible;
+    }
+
+    public void setReproducibleTimestamp(long reproducibleTimestamp) {
+        this.reproducibleTimestamp = reproducibleTimestamp;
+    }
+
+    /**
+     * Adds all files of this folder, relative to that folder.
+     *
+     * @param sourceFolder the folder to add
+     */
+    public void addSourceFolder(File sourceFolder) {
+        sourceFolders.add(sourceFolder.toPath());
+    }
+
+    /**
+     * Adds all entries of some existing jar-file. The main attributes of its manifest are taken over, but can be
+     * overwritten by the ones given to {@link #write(File, Manifest)}.
+     *
+     * @param sourceJar the jar-file to add
+     */
+    public void addSourceJar(File sourceJar) {
+        sourceJars.add(sourceJar);
+    }
+
+    /**
+     * Merges all entries of some dependency into the jar-file, except its manifest, signature-files and index.
+     *
+     * @param dependencyJar the jar-file to merge
+     */
+    public void addDependencyJar(File dependencyJar) {
+        dependencyJars.add(dependencyJar);
+    }
+
+    /**
+     * Adds all files of this folder, relative to that folder. Each file replaces the entry with the same name coming
+     * from any other source (e.g. optimized images), files without such entry are added.
+     *
+     * @param overlayFolder the folder to add
+     */
+    public void addOverlayFolder(File overlayFolder) {
+        overlayFolders.add(overlayFolder.toPath());
+    }
+
+    /**
+     * Adds some entry with the given content, it replaces any entry with the same name coming from some source.
+     *
+     * @param entryName the name of the entry
+     * @param content the content of the entry
+     */
+    public void addGeneratedEntry(String entryName, byte[] content) {
+        generatedEntries.put(entryName, content);
+    }
+
+    public int getWrittenEntries() {
+        return writtenEntries;
+    }
+
+    /**
+     * @return all conflicting entries of the last write, as "entry (first source, second source)"
+     */
+    public List<String> getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * Creates the manifest containing all entries required for JavaFX applications, like the packager would do.
+     *
+     * @param mainClass the JavaFX application class
+     * @param preLoader the preloader class, might be null
+     * @param classpath the classpath as used inside the manifest, might be null
+     * @param manifestAttributes additional custom entries, might be null
+     *
+     * @return the created manifest
+     */
+    public static Manifest createManifest(String mainClass, String preLoader, String classpath, Map<String, String> manifestAttributes) {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.putValue(MANIFEST_CREATED_BY, "JavaFX Maven Plugin");
+        attributes.putValue(MANIFEST_JAVAFX_VERSION, JAVAFX_VERSION);
+        if( mainClass != null ){
+            attributes.put(Attributes.Name.MAIN_CLASS, mainClass);
+            attributes.putValue(MANIFEST_JAVAFX_APPLICATION_CLASS, mainClass);
+        }
+        if( preLoader != null ){
+            attributes.putValue(MANIFEST_JAVAFX_PRELOADER_CLASS, preLoader);
+        }
+        if( classpath != null && !classpath.trim().isEmpty() ){
+            attributes.put(Attributes.Name.CLASS_PATH, classpath.trim());
+            attributes.putValue(MANIFEST_JAVAFX_CLASS_PATH, classpath.trim());
+        }
+        if( manifestAttributes != null ){
+            manifestAttributes.forEach(attributes::putValue);
+        }
+        return manifest;
+    }
+
+    /**
+     * Parses the timestamp like maven does for "project.build.outputTimestamp", which is either some ISO-8601
+     * date-time with offset (e.g. "2020-04-01T10:15:30Z") or the seconds since epoch.
+     *
+     * @param outputTimestamp the configured timestamp
+     *
+     * @return milliseconds since epoch, or null when no timestamp was configured
+     *
+     * @throws IllegalArgumentException when the timestamp has some unknown format
+     */
+    public static Long parseOutputTimestamp(String outputTimestamp) {
+        // maven uses single characters for disabling the timestamp
+        if( outputTimestamp == null || outputTimestamp.trim().length() < 2 ){
+            return null;
+        }
+        String trimmedTimestamp = outputTimestamp.trim();
+        if( trimmedTimestamp.chars().allMatch(Character::isDigit) ){
+            return Long.parseLong(trimmedTimestamp) * 1000;
+        }
+        try{
+            return OffsetDateTime.parse(trimmedTimestamp).toInstant().toEpochMilli();
+        } catch(DateTimeParseException ex){
+            try{
+                return Instant.parse(trimmedTimestamp).toEpochMilli();
+            } catch(DateTimeParseException ex2){
+                throw new IllegalArgumentException("Invalid output timestamp: " + outputTimestamp, ex2);
+            }
+        }
+    }
+
+    /**
+     * Writes all sources into the target jar-file, replacing any existing file.
+     *
+     * @param targetJar the jar-file to create
+     * @param manifest the manifest to use
+     *
+     * @throws IOException when some source could not be read or the target could not be written
+     */
+    public void write(File targetJar, Manifest manifest) throws IOException {
+        List<SourceEntry> sourceEntries = collectSourceEntries();
+        Manifest effectiveManifest = mergeWithSourceManifests(manifest);
+        if( reproducible ){
+            sourceEntries.sort(Comparator.comparing(SourceEntry::getName));
+        }
+        if( !entryOrder.isEmpty() ){
+            Map<String, Integer> positions = new HashMap<>();
+            entryOrder.forEach(entryName -> positions.putIfAbsent(entryName, positions.size()));
+            // sorting is stable, so all other entries keep their order
+            sourceEntries.sort(Comparator.comparingInt(sourceEntry -> positions.getOrDefault(sourceEntry.getName(), Integer.MAX_VALUE)));
+        }
+
+        Path target = targetJar.toPath();
+        Path temporaryTarget = target.resolveSibling("." + target.getFileName().toString() + FileStager.TEMPORARY_FILE_SUFFIX);
+        Map<File, JarFile> openedJars = new HashMap<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        writtenEntries = 0;
+
+        try{
+            try(JarOutputStream jarOutputStream = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryTarget), BUFFER_SIZE))){
+                jarOutputStream.setLevel(compressionLevel);
+                writeManifest(jarOutputStream, effectiveManifest);
+                for( SourceEntry sourceEntry : sourceEntries ){
+                    JarEntry entry = new JarEntry(sourceEntry.getName());
+                    setTime(entry, sourceEntry.getLastModified());
+                    if( stored ){
+                        // size and checksum of stored entries have to be known before writing them
+                        ByteArrayOutputStream content = new ByteArrayOutputStream();
+                        writeEntryContent(sourceEntry, content, openedJars, buffer);
+                        putStoredEntry(jarOutputStream, entry, content.toByteArray());
+                    } else {
+                        jarOutputStream.putNextEntry(entry);
+                        writeEntryContent(sourceEntry, jarOutputStream, openedJars, buffer);
+                    }
+                    jarOutputStream.closeEntry();
+                    writtenEntries++;
+                }
+            } finally{
+                for( JarFile jarFile : openedJars.values() ){
+                    jarFile.close();
+                }
+            }
+            FileStager.publish(temporaryTarget, target);
+        } finally{
+            Files.deleteIfExists(temporaryTarget);
+        }
+        getLog().debug(String.format("Wrote %s entries into %s", writtenEntries, targetJar.getAbsolutePath()));
+    }
+
+    /**
+     * Rewrites some existing jar-file, optionally having all entries stored uncompressed and without some entries.
+     * Names, order, timestamps and content of all other entries are kept, so signatures of jar-files without removed
+     * entries stay valid.
+     *
+     * @param sourceJar the jar-file to read
+     * @param targetJar the jar-file to write, might be the same as the source
+     * @param stored true for storing all entries uncompressed
+     * @param removedEntries names of entries which are not written
+     *
+     * @throws IOException when reading or writing failed
+     */
+    public static void rewrite(File sourceJar, File targetJar, boolean stored, Set<String> removedEntries) throws IOException {
+        Path target = targetJar.toPath();
+        Path temporaryTarget = target.resolveSibling("." + target.getFileName().toString() + FileStager.TEMPORARY_FILE_SUFFIX);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try{
+            try(ZipFile zipFile = new ZipFile(sourceJar); ZipOutputStream zipOutputStream = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryTarget), BUFFER_SIZE))){
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while( entries.hasMoreElements() ){
+                    ZipEntry sourceEntry = entries.nextElement();
+                    if( removedEntries.contains(sourceEntry.getName()) ){
+                        continue;
+                    }
+                    ZipEntry entry = new ZipEntry(sourceEntry);
+                    try(InputStream in = zipFile.getInputStream(sourceEntry)){
+                        if( stored ){
+                            ByteArrayOutputStream content = new ByteArrayOutputStream();
+                            copy(in, content, buffer);
+                            putStoredEntry(zipOutputStream, entry, content.toByteArray());
+                        } else {
+                            // gets compressed again, maybe with another size
+                            entry.setCompressedSize(-1);
+                            zipOutputStream.putNextEntry(entry);
+                            copy(in, zipOutputStream, buffer);
+                        }
+                    }
+                    zipOutputStream.closeEntry();
+                }
+                zipOutputStream.setComment(zipFile.getComment());
+            }
+            FileStager.publish(temporaryTarget, target);
+        } finally{
+            Files.deleteIfExists(temporaryTarget);
+        }
+    }
+
+    private static void putStoredEntry(ZipOutputStream zipOutputStream, ZipEntry entry, byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        zipOutputStream.putNextEntry(entry);
+        zipOutputStream.write(content);
+    }
+
+    private void writeEntryContent(SourceEntry sourceEntry, OutputStream out, Map<File, JarFile> openedJars, byte[] buffer) throws IOException {
+        if( sourceEntry.getContent() != null ){
+            out.write(sourceEntry.getContent());
+        } else if( sourceEntry.getFile() != null ){
+            Files.copy(sourceEntry.getFile(), out);
+        } else if( sourceEntry.getJar() != null ){
+            JarFile jarFile = openedJars.get(sourceEntry.getJar());
+            if( jarFile == null ){
+                jarFile = new JarFile(sourceEntry.getJar());
+                openedJars.put(sourceEntry.getJar(), jarFile);
+            }
+            try(InputStream in = jarFile.getInputStream(jarFile.getEntry(sourceEntry.getName()))){
+                copy(in, out, buffer);
+            }
+        }
+    }
+
+    private Manifest mergeWithSourceManifests(Manifest manifest) throws IOException {
+        if( sourceJars.isEmpty() && !mergedMultiReleaseJar ){
+            return manifest;
+        }
+        Manifest mergedManifest = new Manifest();
+        for( File sourceJar : sourceJars ){
+            try(JarFile jarFile = new JarFile(sourceJar)){
+                Manifest sourceManifest = jarFile.getManifest();
+                if( sourceManifest != null ){
+                    mergedManifest.getMainAttributes().putAll(sourceManifest.getMainAttributes());
+                    mergedManifest.getEntries().putAll(sourceManifest.getEntries());
+                }
+            }
+        }
+        mergedManifest.getMainAttributes().putAll(manifest.getMainAttributes());
+        mergedManifest.getEntries().putAll(manifest.getEntries());
+        // otherwise the versioned entries of the merged dependencies are ignored at runtime
+        if( mergedMultiReleaseJar ){
+            mergedManifest.getMainAttributes().putValue(MANIFEST_MULTI_RELEASE, "true");
+        }
+        return mergedManifest;
+    }
+
+    private List<SourceEntry> collectSourceEntries() throws IOException {
+        // the manifest and its folder are always written first
+        Map<String, SourceEntry> sourceEntries = new LinkedHashMap<>();
+        sourceEntries.put(META_INF_FOLDER, null);
+        sourceEntries.put(JarFile.MANIFEST_NAME, null);
+        Map<String, Set<String>> serviceProviders = new HashMap<>();
+        collisions.clear();
+        mergedMultiReleaseJar = false;
+
+        generatedEntries.forEach((entryName, content) -> {
+            SourceEntry generatedEntry = new SourceEntry(entryName, System.currentTimeMillis(), null, null);
+            generatedEntry.setContent(content);
+            sourceEntries.put(entryName, generatedEntry);
+        });
+
+        collectOverlayEntries();
+
+        for( Path sourceFolder : sourceFolders ){
+            if( !Files.isDirectory(sourceFolder) ){
+                continue;
+            }
+            List<Path> paths;
+            try(Stream<Path> walkedPaths = Files.walk(sourceFolder)){
+                paths = walkedPaths.filter(path -> !path.equals(sourceFolder)).collect(Collectors.toList());
+            }
+            for( Path path : paths ){
+                String entryName = sourceFolder.relativize(path).toString().replace("\\", "/");
+                long lastModified = Files.getLastModifiedTime(path).toMillis();
+                if( Files.isDirectory(path) ){
+                    addSourceEntry(sourceEntries, new SourceEntry(entryName + "/", lastModified, null, null));
+                } else if( isServiceFile(entryName) ){
+                    try(InputStream in = Files.newInputStream(path)){
+                        addServiceFile(sourceEntries, serviceProviders, entryName, lastModified, in);
+                    }
+                } else {
+                    addSourceEntry(sourceEntries, new SourceEntry(entryName, lastModified, path, null));
+                }
+            }
+        }
+
+        for( File sourceJar : sourceJars ){
+            collectJarEntries(sourceEntries, serviceProviders, sourceJar, false);
+        }
+        for( File dependencyJar : dependencyJars ){
+            collectJarEntries(sourceEntries, serviceProviders, dependencyJar, true);
+        }
+
+        // overlay entries not replacing anything are new ones
+        overlayEntries.values().forEach(overlayEntry -> addSourceEntry(sourceEntries, overlayEntry));
+
+        if( !collisions.isEmpty() ){
+            reportCollisions();
+        }
+
+        return sourceEntries.values().stream().filter(sourceEntry -> sourceEntry != null).collect(Collectors.toList());
+    }
+
+    private void collectJarEntries(Map<String, SourceEntry> sourceEntries, Map<String, Set<String>> serviceProviders, File jar, boolean isDependency) throws IOException {
+        try(JarFile jarFile = new JarFile(jar)){
+            boolean multiReleaseJar = isMultiReleaseJar(jarFile);
+            if( isDependency && multiReleaseJar ){
+                mergedMultiReleaseJar = true;
+            }
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while( entries.hasMoreElements() ){
+                JarEntry sourceEntry = entries.nextElement();
+                String entryName = sourceEntry.getName();
+                if( isDependency && (isDroppedDependencyEntry(entryName) || (!multiReleaseJar && entryName.startsWith(VERSIONS_FOLDER))) ){
+                    continue;
+                }
+                if( sourceEntry.isDirectory() ){
+                    addSourceEntry(sourceEntries, new SourceEntry(entryName, sourceEntry.getTime(), null, null));
+                } else if( isServiceFile(entryName) ){
+                    try(InputStream in = jarFile.getInputStream(sourceEntry)){
+                        addServiceFile(sourceEntries, serviceProviders, entryName, sourceEntry.getTime(), in);
+                    }
+                } else {
+                    SourceEntry entry = new SourceEntry(entryName, sourceEntry.getTime(), null, jar);
+                    entry.setChecksum(sourceEntry.getSize(), sourceEntry.getCrc());
+                    addSourceEntry(sourceEntries, entry);
+                }
+            }
+        }
+    }
+
+    private static boolean isMultiReleaseJar(JarFile jarFile) throws IOException {
+        Manifest manifest = jarFile.getManifest();
+        return manifest != null && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(MANIFEST_MULTI_RELEASE));
+    }
+
+    private boolean isDroppedDependencyEntry(String entryName) {
+        String upperCaseName = entryName.toUpperCase(Locale.ROOT);
+        if( JarFile.MANIFEST_NAME.equals(upperCaseName) || "META-INF/INDEX.LIST".equals(upperCaseName) ){
+            return true;
+        }
+        // signatures are only valid for the original jar-file
+        if( upperCaseName.startsWith(META_INF_FOLDER) && upperCaseName.indexOf('/', META_INF_FOLDER.length()) < 0 ){
+            if( upperCaseName.endsWith(".SF") || upperCaseName.endsWith(".RSA") || upperCaseName.endsWith(".DSA") || upperCaseName.endsWith(".EC") || upperCaseName.startsWith("META-INF/SIG-") ){
+                return true;
+            }
+        }
+        // module-descriptors of dependencies would describe the wrong module
+        return entryName.equals("module-info.class") || (entryName.startsWith(VERSIONS_FOLDER) && entryName.endsWith("/module-info.class"));
+    }
+
+    private boolean isServiceFile(String entryName) {
+        return entryName.startsWith(SERVICES_FOLDER) && entryName.length() > SERVICES_FOLDER.length() && entryName.indexOf('/', SERVICES_FOLDER.length()) < 0;
+    }
+
+    private void addServiceFile(Map<String, SourceEntry> sourceEntries, Map<String, Set<String>> serviceProviders, String entryName, long lastModified, InputStream in) throws IOException {
+        Set<String> providers = serviceProviders.computeIfAbsent(entryName, name -> new LinkedHashSet<>());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while( (line = reader.readLine()) != null ){
+            String provider = line.trim();
+            // comments are not required inside the merged file
+            if( provider.startsWith("#") || provider.isEmpty() ){
+                continue;
+            }
+            providers.add(provider);
+        }
+        StringBuilder mergedContent = new StringBuilder();
+        providers.forEach(provider -> mergedContent.append(provider).append("\n"));
+
+        SourceEntry knownEntry = sourceEntries.get(entryName);
+        SourceEntry mergedEntry = new SourceEntry(entryName, knownEntry == null ? lastModified : knownEntry.getLastModified(), null, null);
+        mergedEntry.setContent(mergedContent.toString().getBytes(StandardCharsets.UTF_8));
+        // replacing keeps the position of the first occurrence
+        sourceEntries.put(entryName, mergedEntry);
+    }
+
+    private void collectOverlayEntries() throws IOException {
+        overlayEntries.clear();
+        for( Path overlayFolder : overlayFolders ){
+            if( !Files.isDirectory(overlayFolder) ){
+                continue;
+            }
+            List<Path> paths;
+            try(Stream<Path> walkedPaths = Files.walk(overlayFolder)){
+                paths = walkedPaths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for( Path path : paths ){
+                String entryName = overlayFolder.relativize(path).toString().replace("\\", "/");
+                overlayEntries.put(entryName, new SourceEntry(entryName, Files.getLastModifiedTime(path).toMillis(), path, null));
+            }
+        }
+    }
+
+    private void addSourceEntry(Map<String, SourceEntry> sourceEntries, SourceEntry entry) {
+        String entryName = entry.getName();
+        if( JarFile.MANIFEST_NAME.equalsIgnoreCase(entryName) || META_INF_FOLDER.equalsIgnoreCase(entryName) || removedEntries.contains(entryName) ){
+            return;
+        }
+        // the overlay entry takes the place of the replaced entry
+        SourceEntry sourceEntry = overlayEntries.getOrDefault(entryName, entry);
+        SourceEntry knownEntry = sourceEntries.get(entryName);
+        if( knownEntry == null ){
+            sourceEntries.put(entryName, sourceEntry);
+            return;
+        }
+        if( knownEntry == sourceEntry || generatedEntries.containsKey(entryName) || entryName.endsWith("/") || knownEntry.hasSameContent(sourceEntry) ){
+            return;
+        }
+        collisions.add(String.format("%s (%s, %s)", entryName, knownEntry.getOrigin(), sourceEntry.getOrigin()));
+        if( duplicatePolicy == DuplicatePolicy.LAST ){
+            sourceEntries.put(entryName, sourceEntry);
+        }
+    }
+
+    private void reportCollisions() throws IOException {
+        if( duplicatePolicy == DuplicatePolicy.FAIL ){
+            throw new IOException(String.format("Found %s conflicting jar-entries: %s", collisions.size(), String.join(", ", collisions)));
+        }
+        getLog().warn(String.format("Found %s conflicting jar-entries, kept the %s one of each:", collisions.size(), duplicatePolicy.name().toLowerCase(Locale.ROOT)));
+        collisions.stream().limit(MAX_REPORTED_COLLISIONS).forEach(collision -> getLog().warn("  " + collision));
+        if( collisions.size() > MAX_REPORTED_COLLISIONS ){
+            getLog().warn(String.format("  ... and %s more (run with -X for the full list)", collisions.size() - MAX_REPORTED_COLLISIONS));
+            collisions.stream().skip(MAX_REPORTED_COLLISIONS).forEach(collision -> getLog().debug("  " + collision));
+        }
+    }
+
+    private void writeManifest(JarOutputStream jarOutputStream, Manifest manifest) throws IOException {
+        JarEntry folderEntry = new JarEntry(META_INF_FOLDER);
+        setTime(folderEntry, System.currentTimeMillis());
+        if( stored ){
+            putStoredEntry(jarOutputStream, folderEntry, new byte[0]);
+        } else {
+            jarOutputStream.putNextEntry(folderEntry);
+        }
+        jarOutputStream.closeEntry();
+        writtenEntries++;
+
+        JarEntry manifestEntry = new JarEntry(JarFile.MANIFEST_NAME);
+        setTime(manifestEntry, System.currentTimeMillis());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        if( reproducible ){
+            writeSortedManifest(manifest, content);
+        } else {
+            manifest.write(content);
+        }
+        if( stored ){
+            putStoredEntry(jarOutputStream, manifestEntry, content.toByteArray());
+        } else {
+            jarOutputStream.putNextEntry(manifestEntry);
+            content.writeTo(jarOutputStream);
+        }
+        jarOutputStream.closeEntry();
+        writtenEntries++;
+    }
+
+    private void setTime(JarEntry entry, long lastModified) {
+        if( !reproducible ){
+            if( lastModified >= 0 ){
+                entry.setTime(lastModified);
+            }
+            return;
+        }
+        // zip-entries store local time, correct this to get the same bytes regardless of the timezone of the build-machine
+        entry.setTime(reproducibleTimestamp - TimeZone.getDefault().getOffset(reproducibleTimestamp));
+    }
+
+    private static void writeSortedManifest(Manifest manifest, OutputStream out) throws IOException {
+        // the manifest itself keeps attributes in hash-order, which might differ between JDKs
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Attributes mainAttributes = manifest.getMainAttributes();
+        String manifestVersion = mainAttributes.getValue(Attributes.Name.MANIFEST_VERSION);
+        writeManifestLine(content, Attributes.Name.MANIFEST_VERSION.toString(), manifestVersion == null ? "1.0" : manifestVersion);
+        writeSortedAttributes(content, mainAttributes, Attributes.Name.MANIFEST_VERSION.toString());
+        content.write("\r\n".getBytes(StandardCharsets.UTF_8));
+
+        for( Map.Entry<String, Attributes> section : new TreeMap<>(manifest.getEntries()).entrySet() ){
+            writeManifestLine(content, "Name", section.getKey());
+            writeSortedAttributes(content, section.getValue(), null);
+            content.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        content.writeTo(out);
+    }
+
+    private static void writeSortedAttributes(ByteArrayOutputStream content, Attributes attributes, String skippedName) throws IOException {
+        Map<String, String> sortedAttributes = new TreeMap<>();
+        attributes.forEach((name, value) -> sortedAttributes.put(String.valueOf(name), String.valueOf(value)));
+        for( Map.Entry<String, String> attribute : sortedAttributes.entrySet() ){
+            if( attribute.getKey().equalsIgnoreCase(skippedName) ){
+                continue;
+            }
+            writeManifestLine(content, attribute.getKey(), attribute.getValue());
+        }
+    }
+
+    private static void writeManifestLine(ByteArrayOutputStream content, String name, String value) throws IOException {
+        // lines must not be longer than 72 bytes, continuation-lines start with a single space
+        byte[] line = (name + ": " + value).getBytes(StandardCharsets.UTF_8);
+        int lineStart = 0;
+        int maxLength = MANIFEST_LINE_LENGTH;
+        while( line.length - lineStart > maxLength ){
+            int lineEnd = lineStart + maxLength;
+            // never split multi-byte characters
+            while( (line[lineEnd] & 0xC0) == 0x80 ){
+                lineEnd--;
+            }
+            content.write(line, lineStart, lineEnd - lineStart);
+            content.write("\r\n ".getBytes(StandardCharsets.UTF_8));
+            lineStart = lineEnd;
+            maxLength = MANIFEST_LINE_LENGTH - 1;
+        }
+        content.write(line, lineStart, line.length - lineStart);
+        content.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void copy(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        int read;
+        while( (read = in.read(buffer)) != -1 ){
+            out.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * How to handle entries which exist in more than one source (having different content).
+     */
+    public enum DuplicatePolicy {
+
+        /**
+         * Keeps the entry of the first source (the application itself comes first, then all dependencies in order
+         * of the classpath), like the classloader would do.
+         */
+        FIRST,
+        /**
+         * Keeps the entry of the last source.
+         */
+        LAST,
+        /**
+         * Fails creating the jar-file.
+         */
+        FAIL;
+
+        public static DuplicatePolicy fromString(String value) {
+            if( value == null || value.trim().isEmpty() ){
+                return FIRST;
+            }
+            return DuplicatePolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Some entry to write, either a file of some source folder, an entry of some source jar, some merged content or
+     * a directory.
+     */
+    private static class SourceEntry {
+
+        private final String name;
+
+        private final long lastModified;
+
+        private final Path file;
+
+        private final File jar;
+
+        private byte[] content = null;
+
+        private long size = -1;
+
+        private long crc = -1;
+
+        SourceEntry(String name, long lastModified, Path file, File jar) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.file = file;
+            this.jar = jar;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        File getJar() {
+            return jar;
+        }
+
+        byte[] getContent() {
+            return content;
+        }
+
+        void setContent(byte[] content) {
+            this.content = content;
+        }
+
+        void setChecksum(long size, long crc) {
+            this.size = size;
+            this.crc = crc;
+        }
+
+        boolean hasSameContent(SourceEntry other) {
+            // only known for entries of jar-files, everything else is handled as different
+            return size >= 0 && crc >= 0 && size == other.size && crc == other.crc;
+        }
+
+        String getOrigin() {
+            if( jar != null ){
+                return jar.getName();
+            }
+            if( file != null ){
+                return file.toString();
+            }
+            return "merged";
+        }
+    }
+}
@@ -17,7 +17,6 @@
 package com.zenjava.javafx.maven.plugin;
 
 import com.oracle.tools.packager.BundlerParamInfo;
-import com.oracle.tools.packager.Bundlers;
 import com.oracle.tools.packager.ConfigException;
 import com.oracle.tools.packager.UnsupportedPlatformException;
 import java.util.Collection;
@@ -32,17 +31,17 @@ import org.apache.maven.plugin.MojoFailureException;
  *
  * @author Danny Althoff
  * @goal list-bundlers
+ * @threadSafe
  */
 public class ListBundlersMojo extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        Bundlers bundlers = Bundlers.createBundlersInstance();
 
         getLog().info("Available bundlers:");
         getLog().info("-------------------");
         Map<String, ? super Object> dummyParams = new HashMap<>();
-        bundlers.getBundlers().stream().forEach((bundler) -> {
+        PackagingEngine.getInstance().createBundlers(getLog()).stream().forEach((bundler) -> {
             try{
                 bundler.validate(dummyParams);
             } catch(UnsupportedPlatformException ex){
@@ -18,7 +18,6 @@ package com.zenjava.javafx.maven.plugin;
 
 import com.oracle.tools.packager.AbstractBundler;
 import com.oracle.tools.packager.Bundler;
-import com.oracle.tools.packager.Bundlers;
 import com.oracle.tools.packager.ConfigException;
 import com.oracle.tools.packager.RelativeFileSet;
 import com.oracle.tools.packager.StandardBundlerParam;
@@ -47,6 +46,7 @@ import java.util.stream.Collectors;
 
 /**
  * @goal build-native
+ * @threadSafe
  */
 public class NativeMojo extends AbstractJfxToolsMojo {
 
@@ -458,12 +458,88 @@ public class NativeMojo extends AbstractJfxToolsMojo {
      */
     protected boolean skipKeypassWhileSigning = false;
 
+    /**
+     * When the app-folder contains some class data sharing archive (see &lt;cdsArchiveName&gt; and
+     * "jfx:generate-cds-archive"), the main launcher and all secondary launchers get configured to use it. Set this to
+     * false for ignoring the archive.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.useCdsArchive" default-value="true"
+     */
+    protected boolean useCdsArchive = true;
+
+    /**
+     * Instead of letting the bundlers copy the whole JRE into each bundle, create some minimal runtime using jlink,
+     * only containing the modules required by the JavaFX JAR and all jar-files of the lib-folder (as detected by
+     * jdeps). The runtime is cached by its module-set and passed to the bundlers as "runtime". This requires Java 9
+     * or newer, and is skipped when "runtime" is set inside &lt;bundleArguments&gt;.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.createMinimalRuntime" default-value="false"
+     */
+    protected boolean createMinimalRuntime;
+
+    /**
+     * Modules to add to the minimal runtime which can not be detected, e.g. when they are only used via reflection
+     * or ServiceLoader (like "jdk.crypto.ec" or "jdk.charsets").
+     *
+     * @since 8.10.0
+     *
+     * @parameter
+     */
+    protected List<String> runtimeAdditionalModules;
+
+    /**
+     * Folders containing jmod-files besides the ones of the current JDK, e.g. the jmod-files of JavaFX.
+     *
+     * @since 8.10.0
+     *
+     * @parameter
+     */
+    protected List<File> runtimeModulePath;
+
+    /**
+     * Compression of the minimal runtime, as understood by the "--compress"-option of jlink of the used JDK (e.g.
+     * "2" or "zip-6"). Leave this empty for no compression.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.runtimeCompression" default-value="2"
+     */
+    protected String runtimeCompression = "2";
+
+    /**
+     * Removes all debug information from the minimal runtime.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.runtimeStripDebug" default-value="true"
+     */
+    protected boolean runtimeStripDebug = true;
+
+    /**
+     * Comma-separated list of locales the minimal runtime should contain (e.g. "en,de"), all other locales are
+     * removed. When not set, the runtime contains only the default locales of the "java.base"-module.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.runtimeIncludeLocales"
+     */
+    protected String runtimeIncludeLocales;
+
     protected Workarounds workarounds = null;
 
     private static final String CFG_WORKAROUND_MARKER = "cfgWorkaroundMarker";
 
     private static final String CFG_WORKAROUND_DONE_MARKER = CFG_WORKAROUND_MARKER + ".done";
 
+    private static final String RUNTIME_CACHE_FOLDERNAME = "runtime";
+
+    // not available as StandardBundlerParam on every supported JDK
+    private static final String DROP_IN_RESOURCES_ROOT_PARAM = "dropinResourcesRoot";
+
     @Override
     @SuppressWarnings("cyclomaticcomplexity")
     public void execute() throws MojoExecutionException, MojoFailureException {
@@ -479,6 +555,7 @@ public class NativeMojo extends AbstractJfxToolsMojo {
 
         getLog().info("Building Native Installers");
 
+        installPackagerLogger();
         workarounds = new Workarounds(nativeOutputDir, getLog());
 
         try{
@@ -505,7 +582,8 @@ public class NativeMojo extends AbstractJfxToolsMojo {
             Optional.ofNullable(jvmProperties).ifPresent(jvmProps -> {
                 params.put(StandardBundlerParam.JVM_PROPERTIES.getID(), new HashMap<>(jvmProps));
             });
-            Optional.ofNullable(jvmArgs).ifPresent(jvmOptions -> {
+            List<String> cdsArchiveJvmArgs = getCdsArchiveJvmArgs();
+            Optional.ofNullable(addCdsArchiveJvmArgs(jvmArgs, cdsArchiveJvmArgs)).ifPresent(jvmOptions -> {
                 params.put(StandardBundlerParam.JVM_OPTIONS.getID(), new ArrayList<>(jvmOptions));
             });
             Optional.ofNullable(userJvmArgs).ifPresent(userJvmOptions -> {
@@ -567,6 +645,16 @@ public class NativeMojo extends AbstractJfxToolsMojo {
                 throw new MojoExecutionException("The following keys in <bundleArguments> duplicate other settings, please remove one or the other: " + duplicateKeys.toString());
             }
 
+            if( createMinimalRuntime ){
+                addMinimalRuntime(params, resourceFiles);
+            }
+
+            // bundlers look for drop-in resources using their own classloader, which is shared with other (maybe
+            // parallel) executions, so point them to the deploy-folder of this project instead
+            if( deployDir != null && new File(deployDir).isDirectory() ){
+                params.putIfAbsent(DROP_IN_RESOURCES_ROOT_PARAM, new File(deployDir));
+            }
+
             if( !skipMainClassScanning ){
                 boolean mainClassInsideResourceJarFile = resourceFiles.stream().filter(resourceFile -> resourceFile.toString().endsWith(".jar")).filter(resourceJarFile -> isClassInsideJarFile(mainClass, resourceJarFile)).findFirst().isPresent();
                 if( !mainClassInsideResourceJarFile ){
@@ -603,7 +691,7 @@ public class NativeMojo extends AbstractJfxToolsMojo {
                         // as we can set another JAR-file, this might be completly different
                         addToMapWhenNotNull(launcher.getClasspath(), StandardBundlerParam.CLASSPATH.getID(), secondaryLauncher);
 
-                        Optional.ofNullable(launcher.getJvmArgs()).ifPresent(jvmOptions -> {
+                        Optional.ofNullable(addCdsArchiveJvmArgs(launcher.getJvmArgs(), cdsArchiveJvmArgs)).ifPresent(jvmOptions -> {
                             secondaryLauncher.put(StandardBundlerParam.JVM_OPTIONS.getID(), new ArrayList<>(jvmOptions));
                         });
                         Optional.ofNullable(launcher.getJvmProperties()).ifPresent(jvmProps -> {
@@ -655,13 +743,9 @@ public class NativeMojo extends AbstractJfxToolsMojo {
                 }
             }
 
-            Bundlers bundlers = Bundlers.createBundlersInstance(); // service discovery?
-            Collection<Bundler> loadedBundlers = bundlers.getBundlers();
-
-            // makes it possible to kick out all default bundlers
-            if( onlyCustomBundlers ){
-                loadedBundlers.clear();
-            }
+            // service discovery happens only once per JVM, but every execution gets its own bundler instances
+            // (onlyCustomBundlers makes it possible to kick out all default bundlers)
+            List<Bundler> loadedBundlers = onlyCustomBundlers ? new ArrayList<>() : PackagingEngine.getInstance().createBundlers(getLog());
 
             // don't allow to overwrite existing bundler IDs
             List<String> existingBundlerIds = loadedBundlers.stream().map(existingBundler -> existingBundler.getID()).collect(Collectors.toList());
@@ -680,13 +764,7 @@ public class NativeMojo extends AbstractJfxToolsMojo {
                         getLog().warn("There was an exception while creating a new instance of custom bundler: " + customBundlerClassName, ex);
                     }
                     return null;
-                }).filter(customBundler -> customBundler != null).forEach(customBundler -> {
-                    if( onlyCustomBundlers ){
-                        loadedBundlers.add(customBundler);
-                    } else {
-                        bundlers.loadBundler(customBundler);
-                    }
-                });
+                }).filter(customBundler -> customBundler != null).forEach(loadedBundlers::add);
             });
 
             boolean foundBundler = false;
@@ -696,7 +774,7 @@ public class NativeMojo extends AbstractJfxToolsMojo {
                 throw new MojoExecutionException("There were no bundlers registered. Please make sure to add your custom bundlers as dependency to the plugin.");
             }
 
-            for( Bundler b : bundlers.getBundlers() ){
+            for( Bundler b : loadedBundlers ){
                 String currentRunningBundlerID = b.getID();
                 // sometimes we need to run this bundler, so do special check
                 if( !shouldBundlerRun(bundler, currentRunningBundlerID, params) ){
@@ -759,6 +837,43 @@ public class NativeMojo extends AbstractJfxToolsMojo {
             throw new MojoExecutionException("An error occurred while generating native deployment bundles", e);
         } catch(PackagerException ex){
             throw new MojoExecutionException("An error occurred while generating native deployment bundles", ex);
+        } finally{
+            // the thread might be reused by some other build
+            uninstallPackagerLogger();
+        }
+    }
+
+    private void addMinimalRuntime(Map<String, ? super Object> params, Set<File> resourceFiles) throws MojoExecutionException {
+        if( !JavaDetectionTools.isAtLeastJavaVersion(9) ){
+            getLog().warn("Creating some minimal runtime requires Java 9 or newer, the bundlers will use the whole JRE.");
+            return;
+        }
+        if( params.containsKey(StandardBundlerParam.RUNTIME.getID()) ){
+            getLog().info("Skipped creating minimal runtime, as \"runtime\" is set inside <bundleArguments>.");
+            return;
+        }
+        ArtifactCache artifactCache = getArtifactCache();
+        File runtimeCacheFolder = artifactCache == null ? new File(cacheDir, RUNTIME_CACHE_FOLDERNAME) : artifactCache.getRuntimesFolder();
+        RuntimeImageBuilder runtimeImageBuilder = new RuntimeImageBuilder(runtimeCacheFolder, getLog());
+        Optional.ofNullable(runtimeAdditionalModules).ifPresent(runtimeImageBuilder::setAdditionalModules);
+        Optional.ofNullable(runtimeModulePath).ifPresent(runtimeImageBuilder::setModulePath);
+        runtimeImageBuilder.setCompression(runtimeCompression);
+        runtimeImageBuilder.setStripDebug(runtimeStripDebug);
+        runtimeImageBuilder.setIncludeLocales(runtimeIncludeLocales);
+        try{
+            List<File> jars = resourceFiles.stream().filter(resourceFile -> resourceFile.getName().toLowerCase().endsWith(".jar")).sorted().collect(Collectors.toList());
+            Set<String> modules = runtimeImageBuilder.detectModules(jars);
+            getLog().info(String.format("Required modules for minimal runtime: %s", String.join(",", modules)));
+            File runtimeFolder;
+            if( artifactCache == null ){
+                runtimeFolder = runtimeImageBuilder.build(modules);
+            } else {
+                runtimeFolder = artifactCache.storeRuntime(runtimeImageBuilder, modules);
+                evictArtifactCache(artifactCache);
+            }
+            params.put(StandardBundlerParam.RUNTIME.getID(), new RelativeFileSet(runtimeFolder, PackagingEngine.getInstance().getRuntimeFiles(runtimeFolder)));
+        } catch(IOException e){
+            throw new MojoExecutionException("Unable to create minimal runtime", e);
         }
     }
 
@@ -930,7 +1045,12 @@ public class NativeMojo extends AbstractJfxToolsMojo {
                         if( verbose ){
                             getLog().info("Copying additional bundler resources into: " + targetFolder.toFile().getAbsolutePath());
                         }
-                        copyRecursive(sourceFolder, targetFolder);
+                        // bundlers put these files into their installers as they are, so never use symlinks here
+                        StagingStrategy bundlerStagingStrategy = getStagingStrategy();
+                        if( bundlerStagingStrategy == StagingStrategy.SYMLINK ){
+                            bundlerStagingStrategy = StagingStrategy.COPY;
+                        }
+                        copyRecursive(sourceFolder, targetFolder, bundlerStagingStrategy);
                     } catch(IOException e){
                         getLog().warn("Couldn't copy additional bundler resource-file(s).", e);
                     }
@@ -994,6 +1114,41 @@ public class NativeMojo extends AbstractJfxToolsMojo {
         return runBundler;
     }
 
+    private List<String> getCdsArchiveJvmArgs() {
+        if( !useCdsArchive || cdsArchiveName == null || cdsArchiveName.trim().isEmpty() ){
+            return null;
+        }
+        File cdsArchive = new File(jfxAppOutputDir, cdsArchiveName);
+        if( !cdsArchive.isFile() ){
+            return null;
+        }
+        if( new File(jfxAppOutputDir, jfxMainAppJarName).lastModified() > cdsArchive.lastModified() ){
+            getLog().warn("The CDS archive is older than the JavaFX JAR and will probably be ignored by the JVM, please run \"jfx:generate-cds-archive\" again.");
+        }
+        getLog().info(String.format("Using CDS archive for all native launchers: %s", cdsArchive.getAbsolutePath()));
+        List<String> cdsArchiveJvmArgs = new ArrayList<>();
+        // the bundled runtime is the one of the build, Java 10 only uses archived application classes when asked for
+        if( JavaDetectionTools.isJavaVersion(10, true) ){
+            cdsArchiveJvmArgs.add("-XX:+UseAppCDS");
+        }
+        // the native launcher replaces $APPDIR with the folder containing the application
+        cdsArchiveJvmArgs.add("-XX:SharedArchiveFile=$APPDIR/" + cdsArchiveName.trim().replace("\\", "/"));
+        return cdsArchiveJvmArgs;
+    }
+
+    private List<String> addCdsArchiveJvmArgs(List<String> launcherJvmArgs, List<String> cdsArchiveJvmArgs) {
+        if( cdsArchiveJvmArgs == null ){
+            return launcherJvmArgs;
+        }
+        List<String> allJvmArgs = new ArrayList<>();
+        Optional.ofNullable(launcherJvmArgs).ifPresent(allJvmArgs::addAll);
+        // some archive configured by the user wins
+        if( allJvmArgs.stream().noneMatch(jvmArg -> jvmArg.startsWith("-XX:SharedArchiveFile=")) ){
+            cdsArchiveJvmArgs.stream().filter(jvmArg -> !allJvmArgs.contains(jvmArg)).forEach(allJvmArgs::add);
+        }
+        return allJvmArgs;
+    }
+
     private void addToMapWhenNotNull(Object value, String key, Map<String, Object> map) {
         if( value == null ){
             return;
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import com.oracle.tools.packager.Log;
+
+/**
+ * The logger of the JavaFX packager is some process-wide static field, so parallel builds (using "mvn -T") would
+ * overwrite each other's logger. This logger is installed once and forwards all messages to the maven-logger of
+ * the mojo-execution running on the current thread (or the thread which started the current one).
+ * <p>
+ * Every execution has to uninstall its logger when being done, as threads are reused for other builds (e.g. by the
+ * maven daemon or some shared thread pool). Threads created while the execution was running keep their reference to
+ * it, but stop forwarding to its logger after uninstalling.
+ */
+public class PackagerLogger extends Log.Logger {
+
+    private static final PackagerLogger INSTANCE = new PackagerLogger();
+
+    private static final InheritableThreadLocal<Execution> CURRENT_EXECUTION = new InheritableThreadLocal<>();
+
+    private static boolean installed = false;
+
+    private PackagerLogger() {
+        super(false);
+    }
+
+    /**
+     * Forwards all messages of the packager created on the current thread to the given logger.
+     *
+     * @param logger the logger of the current mojo-execution
+     * @param verbose true for logging verbose messages as info instead of debug
+     */
+    public static void install(org.apache.maven.plugin.logging.Log logger, boolean verbose) {
+        synchronized(INSTANCE){
+            if( !installed ){
+                Log.setLogger(INSTANCE);
+                installed = true;
+            }
+        }
+        CURRENT_EXECUTION.set(new Execution(logger, verbose));
+    }
+
+    /**
+     * Stops forwarding messages to the logger installed on the current thread, including all threads started by it.
+     */
+    public static void uninstall() {
+        Execution execution = getCurrentExecution();
+        if( execution != null ){
+            execution.close();
+        }
+        CURRENT_EXECUTION.remove();
+    }
+
+    private static Execution getCurrentExecution() {
+        Execution execution = CURRENT_EXECUTION.get();
+        if( execution == null || execution.isClosed() ){
+            return null;
+        }
+        return execution;
+    }
+
+    @Override
+    public void setVerbose(boolean verbose) {
+        Execution execution = getCurrentExecution();
+        if( execution == null ){
+            super.setVerbose(verbose);
+            return;
+        }
+        execution.setVerbose(verbose);
+    }
+
+    @Override
+    public boolean isVerbose() {
+        Execution execution = getCurrentExecution();
+        if( execution == null ){
+            return super.isVerbose();
+        }
+        return execution.isVerbose();
+    }
+
+    @Override
+    public void info(String msg) {
+        Execution execution = getCurrentExecution();
+        if( execution == null ){
+            super.info(msg);
+            return;
+        }
+        execution.getLogger().info(msg);
+    }
+
+    @Override
+    public void verbose(String msg) {
+        Execution execution = getCurrentExecution();
+        if( execution == null ){
+            super.verbose(msg);
+            return;
+        }
+        if( execution.isVerbose() ){
+            execution.getLogger().info(msg);
+        } else {
+            execution.getLogger().debug(msg);
+        }
+    }
+
+    @Override
+    public void verbose(Throwable t) {
+        Execution execution = getCurrentExecution();
+        if( execution == null ){
+            super.verbose(t);
+            return;
+        }
+        if( execution.isVerbose() ){
+            execution.getLogger().info(t);
+        } else {
+            execution.getLogger().debug(t);
+        }
+    }
+
+    @Override
+    public void debug(String msg) {
+        Execution execution = getCurrentExecution();
+        if( execution == null ){
+            super.debug(msg);
+            return;
+        }
+        execution.getLogger().debug(msg);
+    }
+
+    @Override
+    public void debug(Throwable t) {
+        Execution execution = getCurrentExecution();
+        if( execution == null ){
+            super.debug(t);
+            return;
+        }
+        execution.getLogger().debug(t);
+    }
+
+    private static class Execution {
+
+        private final org.apache.maven.plugin.logging.Log logger;
+
+        private volatile boolean verbose;
+
+        private volatile boolean closed = false;
+
+        Execution(org.apache.maven.plugin.logging.Log logger, boolean verbose) {
+            this.logger = logger;
+            this.verbose = verbose;
+        }
+
+        org.apache.maven.plugin.logging.Log getLogger() {
+            return logger;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        boolean isVerbose() {
+            return verbose;
+        }
+
+        void setVerbose(boolean verbose) {
+            this.verbose = verbose;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import com.oracle.tools.packager.Bundler;
+import com.oracle.tools.packager.Bundlers;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Holds expensive results which can be reused by all executions of this plugin inside the same JVM. This is mostly
+ * useful when building with the maven daemon (mvnd), which keeps the plugin classloader (and therefore this class)
+ * between builds, so repeated builds skip discovering bundlers, probing the JDK, reading staging manifests and running
+ * jdeps.
+ * <p>
+ * Changing the plugin classpath creates another plugin classloader, having its own instance of this class. All
+ * results depending on the JDK are stored by its location and version, all results depending on files by their
+ * size and timestamp, so changed inputs are never served from this cache. This class is safe to be used by multiple
+ * threads.
+ */
+public class PackagingEngine {
+
+    private static final PackagingEngine INSTANCE = new PackagingEngine();
+
+    private final Map<String, List<Class<? extends Bundler>>> bundlerClasses = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> requiredModules = new ConcurrentHashMap<>();
+
+    private final Map<String, List<File>> runtimeFiles = new ConcurrentHashMap<>();
+
+    private final Map<String, Boolean> jdkProbes = new ConcurrentHashMap<>();
+
+    private final Map<String, StagingManifest> stagingManifests = new ConcurrentHashMap<>();
+
+    private PackagingEngine() {
+        // only one instance per plugin classloader
+    }
+
+    public static PackagingEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates all bundlers provided by the packager. Bundlers are discovered only once, but every call gets its own
+     * bundler instances, as bundlers are not meant to be shared between parallel executions.
+     *
+     * @param logger the logger of the current execution
+     *
+     * @return new instances of all bundlers
+     */
+    public List<Bundler> createBundlers(Log logger) {
+        String key = getJdkKey();
+        List<Class<? extends Bundler>> knownBundlerClasses = bundlerClasses.get(key);
+        if( knownBundlerClasses == null ){
+            return discoverBundlers(key, logger);
+        }
+        List<Bundler> createdBundlers = new ArrayList<>();
+        for( Class<? extends Bundler> bundlerClass : knownBundlerClasses ){
+            try{
+                createdBundlers.add(bundlerClass.getDeclaredConstructor().newInstance());
+            } catch(ReflectiveOperationException | SecurityException ex){
+                // not created by the service loader, so discover them again
+                logger.debug(String.format("Couldn't create bundler %s, discovering all bundlers again", bundlerClass.getName()));
+                logger.debug(ex);
+                return discoverBundlers(key, logger);
+            }
+        }
+        logger.debug(String.format("Reusing %s bundlers discovered by previous execution", createdBundlers.size()));
+        return createdBundlers;
+    }
+
+    private List<Bundler> discoverBundlers(String key, Log logger) {
+        Collection<Bundler> discoveredBundlers = Bundlers.createBundlersInstance().getBundlers();
+        bundlerClasses.put(key, discoveredBundlers.stream().map(Bundler::getClass).collect(Collectors.toList()));
+        logger.debug(String.format("Discovered %s bundlers", discoveredBundlers.size()));
+        return new ArrayList<>(discoveredBundlers);
+    }
+
+    /**
+     * Returns the modules required by the given jar-files, as long as none of these files changed since the last
+     * detection.
+     *
+     * @param jars all jar-files of the application
+     * @param detection the detection to run when no result is known
+     *
+     * @return names of the required modules
+     *
+     * @throws IOException when the detection failed
+     */
+    public Set<String> getRequiredModules(Collection<File> jars, ModuleDetection detection) throws IOException {
+        String key = getJdkKey() + "\n" + jars.stream().map(PackagingEngine::getFileKey).collect(Collectors.joining("\n"));
+        Set<String> knownModules = requiredModules.get(key);
+        if( knownModules != null ){
+            return knownModules;
+        }
+        Set<String> detectedModules = Collections.unmodifiableSet(detection.detect());
+        requiredModules.put(key, detectedModules);
+        return detectedModules;
+    }
+
+    /**
+     * Returns all files of some runtime created by {@link RuntimeImageBuilder}, as long as it was not created again
+     * since the last call.
+     *
+     * @param runtimeFolder folder of the runtime
+     *
+     * @return all files of the runtime
+     *
+     * @throws IOException when the folder could not be read
+     */
+    public List<File> getRuntimeFiles(File runtimeFolder) throws IOException {
+        String key = getFileKey(new File(runtimeFolder, RuntimeImageBuilder.COMPLETED_MARKER));
+        List<File> knownRuntimeFiles = runtimeFiles.get(key);
+        if( knownRuntimeFiles == null ){
+            knownRuntimeFiles = Collections.unmodifiableList(RuntimeImageBuilder.getRuntimeFiles(runtimeFolder));
+            runtimeFiles.put(key, knownRuntimeFiles);
+        }
+        return new ArrayList<>(knownRuntimeFiles);
+    }
+
+    /**
+     * Returns the result of some check of the running JDK (see {@link JavaDetectionTools}), which is done only once
+     * per JDK.
+     *
+     * @param probeName unique name of the check, including all of its arguments
+     * @param probe the check to run when no result is known
+     *
+     * @return result of the check
+     */
+    public boolean probeJdk(String probeName, BooleanSupplier probe) {
+        return jdkProbes.computeIfAbsent(getJdkKey() + "|" + probeName, key -> probe.getAsBoolean());
+    }
+
+    /**
+     * Loads some staging manifest, or reuses the one saved by some previous execution, as long as the file was not
+     * changed since then. Every call gets its own copy, as the manifests get changed while staging.
+     *
+     * @param manifestFile the file containing the manifest
+     *
+     * @return the loaded manifest, being empty when the file does not exist
+     *
+     * @throws IOException when the file could not be read
+     */
+    public StagingManifest loadStagingManifest(File manifestFile) throws IOException {
+        if( manifestFile == null || !manifestFile.isFile() ){
+            return StagingManifest.load(manifestFile);
+        }
+        StagingManifest knownManifest = stagingManifests.get(getFileKey(manifestFile));
+        if( knownManifest != null ){
+            return knownManifest.copy();
+        }
+        StagingManifest loadedManifest = StagingManifest.load(manifestFile);
+        stagingManifests.put(getFileKey(manifestFile), loadedManifest.copy());
+        return loadedManifest;
+    }
+
+    /**
+     * Saves some staging manifest and keeps it for the next call of {@link #loadStagingManifest(File)}.
+     *
+     * @param manifest the manifest to save
+     * @param manifestFile the file to write
+     *
+     * @throws IOException when the file could not be written
+     */
+    public void saveStagingManifest(StagingManifest manifest, File manifestFile) throws IOException {
+        manifest.save(manifestFile);
+        // the previous version of this file is never read again
+        String absolutePath = manifestFile.getAbsolutePath() + "|";
+        stagingManifests.keySet().removeIf(key -> key.startsWith(absolutePath));
+        stagingManifests.put(getFileKey(manifestFile), manifest.copy());
+    }
+
+    private static String getJdkKey() {
+        return System.getProperty("java.home") + "|" + System.getProperty("java.version");
+    }
+
+    private static String getFileKey(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    /**
+     * Detects the modules required by some application, e.g. by running jdeps.
+     */
+    @FunctionalInterface
+    public interface ModuleDetection {
+
+        Set<String> detect() throws IOException;
+    }
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Finds all classes reachable from some entry points (like the main class of the application) by following the
+ * references inside the constant pool of each class-file, across the application and all its dependencies.
+ * <p>
+ * The analysis is conservative: all types mentioned inside descriptors and signatures, all string constants looking
+ * like class names (e.g. for Class.forName), service providers of reachable services (or of services provided by
+ * the JDK), all classes referenced by FXML files and all skins referenced by stylesheets of the application count
+ * as reachable. Classes only loaded through some computed name can not be found, these have to be added as entry
+ * points or keep-rules.
+ */
+public class ReachabilityAnalyzer {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private static final String SERVICES_FOLDER = "META-INF/services/";
+
+    private static final String VERSIONS_FOLDER = "META-INF/versions/";
+
+    private static final Pattern DESCRIPTOR_TYPE = Pattern.compile("L([^;<>.\\[]+)[;<]");
+
+    private static final Pattern BINARY_CLASS_NAME = Pattern.compile("[\\w$]+(\\.[\\w$]+)+");
+
+    private static final Pattern FXML_IMPORT = Pattern.compile("<\\?import\\s+([\\w.$]+?)(\\.\\*)?\\s*\\?>");
+
+    private static final Pattern FXML_CLASS_ATTRIBUTE = Pattern.compile("(?:fx:controller|type)\\s*=\\s*\"([\\w.$]+)\"");
+
+    private static final Pattern CSS_SKIN = Pattern.compile("-fx-skin\\s*:\\s*[\"']?([\\w.$]+)");
+
+    private final Log logger;
+
+    private final Set<String> entryPoints = new LinkedHashSet<>();
+
+    private final List<Pattern> keepRules = new ArrayList<>();
+
+    private final Map<String, File> classOrigins = new HashMap<>();
+
+    // entries of multi-release jar-files, which replace the base class (or are the only one) on newer Java versions
+    private final Map<File, Map<String, List<String>>> versionedClassEntries = new HashMap<>();
+
+    private final Map<String, Set<String>> serviceProviders = new HashMap<>();
+
+    private final Map<File, JarFile> openedJars = new HashMap<>();
+
+    private final Map<File, List<String>> originEntries = new HashMap<>();
+
+    private final Set<String> reachableClasses = new HashSet<>();
+
+    public ReachabilityAnalyzer(Log logger) {
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * @param className binary name of some class which is always reachable (e.g. "com.example.Main")
+     */
+    public void addEntryPoint(String className) {
+        if( className != null && !className.trim().isEmpty() ){
+            entryPoints.add(className.trim().replace('.', '/'));
+        }
+    }
+
+    /**
+     * @param keepRule binary name of some class which is always reachable, where "*" matches any part of a name
+     * without dots and "**" matches anything (e.g. "com.example.plugins.**")
+     */
+    public void addKeepRule(String keepRule) {
+        if( keepRule == null || keepRule.trim().isEmpty() ){
+            return;
+        }
+        StringBuilder regex = new StringBuilder();
+        String internalName = keepRule.trim().replace('.', '/');
+        for( int index = 0; index < internalName.length(); index++ ){
+            char character = internalName.charAt(index);
+            if( character == '*' && index + 1 < internalName.length() && internalName.charAt(index + 1) == '*' ){
+                regex.append(".*");
+                index++;
+            } else if( character == '*' ){
+                regex.append("[^/]*");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(character)));
+            }
+        }
+        keepRules.add(Pattern.compile(regex.toString()));
+    }
+
+    /**
+     * Analyzes which classes of the dependencies are reachable.
+     *
+     * @param application folder or jar-file containing the classes of the application, its FXML files are scanned
+     * for referenced classes
+     * @param dependencies all jar-files of the classpath, in order of the classpath
+     *
+     * @return amount of reachable classes and amount of all classes for each dependency
+     *
+     * @throws IOException when some file could not be read
+     */
+    public Map<File, int[]> analyze(File application, List<File> dependencies) throws IOException {
+        classOrigins.clear();
+        versionedClassEntries.clear();
+        serviceProviders.clear();
+        originEntries.clear();
+        reachableClasses.clear();
+        try{
+            Map<File, int[]> result = new LinkedHashMap<>();
+            indexApplication(application);
+            for( File dependency : dependencies ){
+                result.put(dependency, new int[]{0, indexJar(dependency)});
+            }
+
+            findReachableClasses();
+            getLog().debug(String.format("Found %s reachable classes out of %s", reachableClasses.size(), classOrigins.size()));
+            reachableClasses.stream().map(classOrigins::get).filter(result::containsKey).forEach(origin -> result.get(origin)[0]++);
+            return result;
+        } finally{
+            for( JarFile jarFile : openedJars.values() ){
+                jarFile.close();
+            }
+            openedJars.clear();
+        }
+    }
+
+    /**
+     * Lists all entries of some analyzed folder or jar-file which are not required: all unreachable classes, and all
+     * resources inside folders whose classes are all unreachable. Resources inside folders without any class (like
+     * META-INF) are always kept.
+     *
+     * @param origin the application or some dependency, as passed to {@link #analyze(File, List)}
+     *
+     * @return names of all removable entries
+     */
+    public Set<String> getRemovableEntries(File origin) {
+        List<String> entries = originEntries.getOrDefault(origin, Collections.emptyList());
+        Set<String> classFolders = new HashSet<>();
+        Set<String> requiredFolders = new HashSet<>();
+        Set<String> removableEntries = new LinkedHashSet<>();
+        for( String entryName : entries ){
+            String className = getClassName(entryName);
+            if( className == null ){
+                continue;
+            }
+            String folder = getFolder(entryName);
+            classFolders.add(folder);
+            if( reachableClasses.contains(className) ){
+                requiredFolders.add(folder);
+            } else {
+                removableEntries.add(entryName);
+            }
+        }
+        entries.stream()
+                .filter(entryName -> getClassName(entryName) == null && !entryName.endsWith("/"))
+                .filter(entryName -> classFolders.contains(getFolder(entryName)) && !requiredFolders.contains(getFolder(entryName)))
+                .forEach(removableEntries::add);
+        return removableEntries;
+    }
+
+    private static String getClassName(String entryName) {
+        if( !entryName.endsWith(CLASS_SUFFIX) || entryName.endsWith("module-info.class") ){
+            return null;
+        }
+        String className = entryName.substring(0, entryName.length() - CLASS_SUFFIX.length());
+        if( className.startsWith(VERSIONS_FOLDER) ){
+            // "META-INF/versions/11/com/example/Some" belongs to "com/example/Some"
+            String[] parts = className.split("/", 4);
+            return parts.length == 4 ? parts[3] : null;
+        }
+        return className;
+    }
+
+    private static String getFolder(String entryName) {
+        int lastSlash = entryName.lastIndexOf('/');
+        return lastSlash < 0 ? "" : entryName.substring(0, lastSlash + 1);
+    }
+
+    private void indexApplication(File application) throws IOException {
+        if( !application.isDirectory() ){
+            indexJar(application);
+            scanFxmlAndCssFiles(getJar(application).stream()
+                    .filter(entry -> isFxmlOrCssFile(entry.getName()))
+                    .map(entry -> readJarEntryText(application, entry.getName()))
+                    .collect(Collectors.toList()));
+            return;
+        }
+        List<Path> paths;
+        try(Stream<Path> walkedPaths = Files.walk(application.toPath())){
+            paths = walkedPaths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        List<String> entries = new ArrayList<>();
+        List<String> fxmlAndCssFiles = new ArrayList<>();
+        for( Path path : paths ){
+            String entryName = application.toPath().relativize(path).toString().replace("\\", "/");
+            entries.add(entryName);
+            String className = getClassName(entryName);
+            if( className != null ){
+                indexClass(application, entryName, className);
+            } else if( isFxmlOrCssFile(entryName) ){
+                fxmlAndCssFiles.add(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            } else if( isServiceFile(entryName) ){
+                try(InputStream in = Files.newInputStream(path)){
+                    addServiceProviders(entryName, in);
+                }
+            }
+        }
+        originEntries.put(application, entries);
+        scanFxmlAndCssFiles(fxmlAndCssFiles);
+    }
+
+    private boolean isFxmlOrCssFile(String entryName) {
+        return entryName.endsWith(".fxml") || entryName.endsWith(".css");
+    }
+
+    private int indexJar(File jar) throws IOException {
+        Set<String> classNames = new HashSet<>();
+        List<String> entryNames = new ArrayList<>();
+        Enumeration<JarEntry> entries = getJar(jar).entries();
+        while( entries.hasMoreElements() ){
+            JarEntry entry = entries.nextElement();
+            String entryName = entry.getName();
+            entryNames.add(entryName);
+            String className = getClassName(entryName);
+            if( className != null ){
+                // versioned classes have the same names as the base ones
+                indexClass(jar, entryName, className);
+                classNames.add(className);
+            } else if( isServiceFile(entryName) ){
+                try(InputStream in = getJar(jar).getInputStream(entry)){
+                    addServiceProviders(entryName, in);
+                }
+            }
+        }
+        originEntries.put(jar, entryNames);
+        return classNames.size();
+    }
+
+    private void indexClass(File origin, String entryName, String className) {
+        classOrigins.putIfAbsent(className, origin);
+        if( entryName.startsWith(VERSIONS_FOLDER) ){
+            versionedClassEntries.computeIfAbsent(origin, versionedOrigin -> new HashMap<>()).computeIfAbsent(className, versionedClass -> new ArrayList<>()).add(entryName);
+        }
+    }
+
+    private void scanFxmlAndCssFiles(List<String> fxmlAndCssFiles) {
+        for( String content : fxmlAndCssFiles ){
+            Matcher importMatcher = FXML_IMPORT.matcher(content);
+            while( importMatcher.find() ){
+                if( importMatcher.group(2) == null ){
+                    addEntryPoint(importMatcher.group(1));
+                } else {
+                    addKeepRule(importMatcher.group(1) + ".*");
+                }
+            }
+            for( Pattern classPattern : new Pattern[]{FXML_CLASS_ATTRIBUTE, CSS_SKIN} ){
+                Matcher classMatcher = classPattern.matcher(content);
+                while( classMatcher.find() ){
+                    addEntryPoint(classMatcher.group(1));
+                }
+            }
+        }
+    }
+
+    private void findReachableClasses() {
+        Deque<String> pendingClasses = new ArrayDeque<>(entryPoints);
+        classOrigins.keySet().stream().filter(this::isKept).forEach(pendingClasses::add);
+        // services of the JDK (like java.sql.Driver) are used without referencing any class of the classpath
+        serviceProviders.entrySet().stream().filter(service -> !classOrigins.containsKey(service.getKey())).forEach(service -> pendingClasses.addAll(service.getValue()));
+        while( !pendingClasses.isEmpty() ){
+            String className = pendingClasses.poll();
+            File origin = classOrigins.get(className);
+            // classes of the JDK or JavaFX, or some missing class
+            if( origin == null || !reachableClasses.add(className) ){
+                continue;
+            }
+            try{
+                // the base class and all versioned ones might reference different classes
+                for( String classEntry : getClassEntries(className, origin) ){
+                    pendingClasses.addAll(getReferencedClasses(readEntry(classEntry, origin)));
+                }
+            } catch(IOException ex){
+                getLog().warn(String.format("Couldn't analyze class %s of %s, its references are ignored", className, origin.getAbsolutePath()));
+                getLog().debug(ex);
+            }
+            pendingClasses.addAll(serviceProviders.getOrDefault(className, Collections.emptySet()));
+        }
+    }
+
+    private boolean isKept(String className) {
+        return keepRules.stream().anyMatch(keepRule -> keepRule.matcher(className).matches());
+    }
+
+    private List<String> getClassEntries(String className, File origin) throws IOException {
+        List<String> classEntries = new ArrayList<>();
+        String baseEntry = className + CLASS_SUFFIX;
+        if( origin.isDirectory() ? Files.isRegularFile(origin.toPath().resolve(baseEntry)) : getJar(origin).getEntry(baseEntry) != null ){
+            classEntries.add(baseEntry);
+        }
+        classEntries.addAll(versionedClassEntries.getOrDefault(origin, Collections.emptyMap()).getOrDefault(className, Collections.emptyList()));
+        return classEntries;
+    }
+
+    private byte[] readEntry(String entryName, File origin) throws IOException {
+        if( origin.isDirectory() ){
+            return Files.readAllBytes(origin.toPath().resolve(entryName));
+        }
+        JarFile jarFile = getJar(origin);
+        try(InputStream in = jarFile.getInputStream(jarFile.getEntry(entryName))){
+            return readFully(in);
+        }
+    }
+
+    /**
+     * Collects all class names mentioned inside the constant pool of some class-file.
+     *
+     * @param classFile content of the class-file
+     *
+     * @return internal names of all referenced classes (e.g. "java/lang/String")
+     *
+     * @throws IOException when the class-file is broken
+     */
+    @SuppressWarnings("cyclomaticcomplexity")
+    static Set<String> getReferencedClasses(byte[] classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        if( in.readInt() != 0xCAFEBABE ){
+            throw new IOException("Not a class-file");
+        }
+        // minor and major version
+        in.readInt();
+        int constantPoolSize = in.readUnsignedShort();
+        String[] utf8Entries = new String[constantPoolSize];
+        List<Integer> classIndexes = new ArrayList<>();
+        List<Integer> stringIndexes = new ArrayList<>();
+        for( int index = 1; index < constantPoolSize; index++ ){
+            int tag = in.readUnsignedByte();
+            switch(tag){
+                case 1:
+                    utf8Entries[index] = in.readUTF();
+                    break;
+                case 7:
+                    classIndexes.add(in.readUnsignedShort());
+                    break;
+                case 8:
+                    stringIndexes.add(in.readUnsignedShort());
+                    break;
+                case 16:
+                case 19:
+                case 20:
+                    in.skipBytes(2);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5:
+                case 6:
+                    // takes two entries of the constant pool
+                    in.skipBytes(8);
+                    index++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        Set<String> referencedClasses = new HashSet<>();
+        for( int classIndex : classIndexes ){
+            String className = utf8Entries[classIndex];
+            if( className != null && !className.startsWith("[") ){
+                referencedClasses.add(className);
+            }
+        }
+        for( String utf8Entry : utf8Entries ){
+            // descriptors and generic signatures, including array types
+            if( utf8Entry != null && utf8Entry.indexOf(';') >= 0 ){
+                Matcher matcher = DESCRIPTOR_TYPE.matcher(utf8Entry);
+                while( matcher.find() ){
+                    referencedClasses.add(matcher.group(1));
+                }
+            }
+        }
+        for( int stringIndex : stringIndexes ){
+            String value = utf8Entries[stringIndex];
+            if( value != null && BINARY_CLASS_NAME.matcher(value).matches() ){
+                referencedClasses.add(value.replace('.', '/'));
+            }
+        }
+        return referencedClasses;
+    }
+
+    private boolean isServiceFile(String entryName) {
+        return entryName.startsWith(SERVICES_FOLDER) && entryName.length() > SERVICES_FOLDER.length() && entryName.indexOf('/', SERVICES_FOLDER.length()) < 0;
+    }
+
+    private void addServiceProviders(String entryName, InputStream in) throws IOException {
+        Set<String> providers = serviceProviders.computeIfAbsent(entryName.substring(SERVICES_FOLDER.length()).replace('.', '/'), service -> new LinkedHashSet<>());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while( (line = reader.readLine()) != null ){
+            String provider = line.split("#")[0].trim();
+            if( !provider.isEmpty() ){
+                providers.add(provider.replace('.', '/'));
+            }
+        }
+    }
+
+    private JarFile getJar(File jar) throws IOException {
+        JarFile jarFile = openedJars.get(jar);
+        if( jarFile == null ){
+            jarFile = new JarFile(jar);
+            openedJars.put(jar, jarFile);
+        }
+        return jarFile;
+    }
+
+    private String readJarEntryText(File jar, String entryName) {
+        try{
+            JarFile jarFile = getJar(jar);
+            try(InputStream in = jarFile.getInputStream(jarFile.getEntry(entryName))){
+                return new String(readFully(in), StandardCharsets.UTF_8);
+            }
+        } catch(IOException ex){
+            getLog().warn(String.format("Couldn't read %s from %s", entryName, jar.getAbsolutePath()));
+            getLog().debug(ex);
+            return "";
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while( (read = in.read(buffer)) != -1 ){
+            content.write(buffer, 0, read);
+        }
+        return content.toByteArray();
+    }
+}
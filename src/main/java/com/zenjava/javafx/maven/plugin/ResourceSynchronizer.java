@@ -0,0 +1,240 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Synchronizes some folder into another one, like rsync does: files having the same size and timestamp as their
+ * source (or optionally the same content) are skipped, everything else gets staged. Source files which were removed
+ * since the last synchronization can be removed from the target folder too.
+ * <p>
+ * All synchronized files are recorded inside a {@link StagingManifest} per source and target folder, so only files
+ * placed by this class are ever removed, and files staged as reflinks (which get a new timestamp) are detected as
+ * unchanged too.
+ */
+public class ResourceSynchronizer {
+
+    private final FileStager fileStager;
+
+    private final File manifestFolder;
+
+    private final boolean compareContent;
+
+    private final boolean deleteRemovedFiles;
+
+    private final Log logger;
+
+    private StagingManifest previousManifest;
+
+    private StagingManifest currentManifest;
+
+    private int copiedFiles = 0;
+
+    private long copiedBytes = 0;
+
+    private int unchangedFiles = 0;
+
+    private long skippedBytes = 0;
+
+    private int removedFiles = 0;
+
+    /**
+     * @param stagingStrategy the strategy used for placing changed files
+     * @param manifestFolder folder containing the manifests of previous synchronizations, might be null
+     * @param compareContent compare the content of the files (using checksums), not just size and timestamp
+     * @param deleteRemovedFiles remove previously synchronized files whose source does not exist anymore
+     * @param logger the logger
+     */
+    public ResourceSynchronizer(StagingStrategy stagingStrategy, File manifestFolder, boolean compareContent, boolean deleteRemovedFiles, Log logger) {
+        this.fileStager = new FileStager(stagingStrategy, logger);
+        this.manifestFolder = manifestFolder;
+        this.compareContent = compareContent;
+        this.deleteRemovedFiles = deleteRemovedFiles;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * Synchronizes all files of the source folder into the target folder. Files which could not be visited are
+     * reported but do not stop the synchronization.
+     *
+     * @param sourceFolder the folder to read from
+     * @param targetFolder the folder to write into
+     *
+     * @throws IOException when the target folder could not be written
+     */
+    public void sync(Path sourceFolder, Path targetFolder) throws IOException {
+        String targetFolderPath = targetFolder.toAbsolutePath().normalize().toString();
+        File manifestFile = null;
+        if( manifestFolder != null ){
+            String sourceFolderPath = sourceFolder.toAbsolutePath().normalize().toString();
+            manifestFile = new File(manifestFolder, ChecksumTools.sha256(sourceFolderPath + File.pathSeparator + targetFolderPath).substring(0, 16) + ".properties");
+        }
+        previousManifest = PackagingEngine.getInstance().loadStagingManifest(manifestFile);
+        if( !targetFolderPath.equals(previousManifest.getTargetFolder()) ){
+            previousManifest = new StagingManifest();
+        }
+        currentManifest = new StagingManifest();
+        currentManifest.setTargetFolder(targetFolderPath);
+
+        Files.walkFileTree(sourceFolder, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path subfolder, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(targetFolder.resolve(sourceFolder.relativize(subfolder).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path sourceFile, BasicFileAttributes attrs) throws IOException {
+                String name = sourceFolder.relativize(sourceFile).toString().replace("\\", "/");
+                syncFile(sourceFile, name, targetFolder.resolve(name));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path source, IOException ioe) throws IOException {
+                // don't fail, just inform user
+                getLog().warn(String.format("Couldn't copy resource %s with reason %s", source.toString(), ioe.getLocalizedMessage()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for( String name : previousManifest.getNames() ){
+            if( currentManifest.get(name) != null ){
+                continue;
+            }
+            if( deleteRemovedFiles ){
+                removeFile(sourceFolder, targetFolder, name);
+            } else {
+                // still remembered, so it can be removed later
+                currentManifest.put(name, previousManifest.get(name));
+            }
+        }
+
+        if( manifestFile != null ){
+            PackagingEngine.getInstance().saveStagingManifest(currentManifest, manifestFile);
+        }
+    }
+
+    /**
+     * @return summary about the last synchronization, e.g. "2 copied (1024 bytes), 10 unchanged (4096 bytes skipped)"
+     */
+    public String getReport() {
+        String report = String.format("%s copied (%s bytes), %s unchanged (%s bytes skipped)", copiedFiles, copiedBytes, unchangedFiles, skippedBytes);
+        if( deleteRemovedFiles ){
+            report += String.format(", %s removed", removedFiles);
+        }
+        if( copiedFiles > 0 ){
+            report += String.format(", used staging strategies: %s", fileStager.getReport());
+        }
+        return report;
+    }
+
+    private void syncFile(Path source, String name, Path target) throws IOException {
+        long sourceSize = Files.size(source);
+        long sourceLastModified = Files.getLastModifiedTime(source).toMillis();
+        String sha256 = compareContent ? ChecksumTools.sha256(source) : "";
+        StagingManifest.Entry knownEntry = previousManifest.get(name);
+
+        if( isUnchanged(source, target, knownEntry, sourceSize, sourceLastModified, sha256) ){
+            unchangedFiles++;
+            skippedBytes += sourceSize;
+        } else {
+            fileStager.stage(source, target);
+            copiedFiles++;
+            copiedBytes += sourceSize;
+        }
+
+        StagingManifest.Entry entry = new StagingManifest.Entry();
+        entry.setCoordinates(source.toAbsolutePath().toString());
+        entry.setSha256(sha256);
+        entry.setVariant(fileStager.getRequestedStrategy().name());
+        entry.setSourceSize(sourceSize);
+        entry.setSourceLastModified(sourceLastModified);
+        entry.setTargetSize(Files.size(target));
+        entry.setTargetLastModified(Files.getLastModifiedTime(target).toMillis());
+        currentManifest.put(name, entry);
+    }
+
+    private boolean isUnchanged(Path source, Path target, StagingManifest.Entry knownEntry, long sourceSize, long sourceLastModified, String sha256) throws IOException {
+        if( !Files.isRegularFile(target) || !isStagedAsRequested(target, knownEntry) ){
+            return false;
+        }
+        long targetSize = Files.size(target);
+        long targetLastModified = Files.getLastModifiedTime(target).toMillis();
+        boolean targetAsRecorded = knownEntry != null && targetSize == knownEntry.getTargetSize() && targetLastModified == knownEntry.getTargetLastModified();
+
+        if( compareContent ){
+            if( targetAsRecorded && sha256.equals(knownEntry.getSha256()) ){
+                return true;
+            }
+            return targetSize == sourceSize && sha256.equals(ChecksumTools.sha256(target));
+        }
+        if( targetAsRecorded && source.toAbsolutePath().toString().equals(knownEntry.getCoordinates()) && sourceSize == knownEntry.getSourceSize() && sourceLastModified == knownEntry.getSourceLastModified() ){
+            return true;
+        }
+        // copies keep the timestamp of their source
+        return targetSize == sourceSize && targetLastModified == sourceLastModified;
+    }
+
+    private boolean isStagedAsRequested(Path target, StagingManifest.Entry knownEntry) {
+        // after switching the strategy all files have to be staged again, e.g. symlinks must not stay when copying
+        StagingStrategy requestedStrategy = fileStager.getRequestedStrategy();
+        if( knownEntry != null && !requestedStrategy.name().equals(knownEntry.getVariant()) ){
+            return false;
+        }
+        return requestedStrategy == StagingStrategy.SYMLINK || !Files.isSymbolicLink(target);
+    }
+
+    private void removeFile(Path sourceFolder, Path targetFolder, String name) {
+        Path removedFile = targetFolder.resolve(name);
+        try{
+            if( !Files.deleteIfExists(removedFile) ){
+                return;
+            }
+            removedFiles++;
+            getLog().debug(String.format("Removed resource: %s", removedFile.toAbsolutePath()));
+            // remove folders which became empty, as long as they do not exist inside the source folder anymore
+            Path folder = removedFile.getParent();
+            while( folder != null && !folder.equals(targetFolder) && folder.startsWith(targetFolder) && !Files.isDirectory(sourceFolder.resolve(targetFolder.relativize(folder).toString())) ){
+                try{
+                    Files.delete(folder);
+                } catch(IOException ex){
+                    // not empty
+                    break;
+                }
+                folder = folder.getParent();
+            }
+        } catch(IOException ex){
+            getLog().warn(String.format("Couldn't remove resource %s", removedFile.toAbsolutePath()));
+            getLog().debug(ex);
+        }
+    }
+}
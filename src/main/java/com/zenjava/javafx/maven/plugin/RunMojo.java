@@ -16,10 +16,16 @@
 
 package com.zenjava.javafx.maven.plugin;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 
@@ -27,6 +33,7 @@ import org.apache.maven.plugin.MojoFailureException;
  *
  * @goal run
  * @execute goal="jar"
+ * @threadSafe
  */
 public class RunMojo extends AbstractJfxToolsMojo {
 
@@ -101,4 +108,67 @@ public class RunMojo extends AbstractJfxToolsMojo {
             throw new MojoExecutionException("There was an exception while executing JavaFX Application.", ex);
         }
     }
+
+    /**
+     * Runs the application inside the app-folder for a limited time, as JavaFX applications normally do not exit on
+     * their own. Every line printed by the application is passed to the output handler, which can stop the
+     * application by returning true.
+     *
+     * @param command the command starting the application
+     * @param timeout seconds to wait before stopping the application
+     * @param outputHandler receives every line printed by the application
+     *
+     * @throws MojoExecutionException when the application could not be started
+     */
+    protected void runWithTimeout(List<String> command, int timeout, Predicate<String> outputHandler) throws MojoExecutionException {
+        try{
+            ProcessBuilder pb = new ProcessBuilder()
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .redirectInput(ProcessBuilder.Redirect.INHERIT)
+                    .directory(jfxAppOutputDir)
+                    .command(command);
+
+            if( verbose ){
+                getLog().info("Running command: " + String.join(" ", command));
+            }
+
+            Process p = pb.start();
+            AtomicBoolean stoppedByOutput = new AtomicBoolean(false);
+            Thread outputReader = new Thread(() -> {
+                try(BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))){
+                    String line;
+                    while( (line = reader.readLine()) != null ){
+                        if( outputHandler.test(line) && stoppedByOutput.compareAndSet(false, true) ){
+                            getLog().info("Stopping application, as requested by its output");
+                            p.destroy();
+                        }
+                    }
+                } catch(IOException ex){
+                    // process got stopped
+                }
+            }, "jfx-application-output-reader");
+            outputReader.setDaemon(true);
+            outputReader.start();
+
+            if( p.waitFor(timeout, TimeUnit.SECONDS) ){
+                if( !stoppedByOutput.get() ){
+                    getLog().info(String.format("Application exited with code %s", p.exitValue()));
+                }
+            } else {
+                getLog().info(String.format("Stopping application after %s seconds", timeout));
+                p.destroy();
+            }
+            // stopping might take some time, e.g. for running shutdown hooks
+            if( !p.waitFor(30, TimeUnit.SECONDS) ){
+                p.destroyForcibly();
+                p.waitFor();
+            }
+            outputReader.join(TimeUnit.SECONDS.toMillis(10));
+        } catch(IOException ex){
+            throw new MojoExecutionException("There was an exception while executing JavaFX Application.", ex);
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while running JavaFX Application.", ex);
+        }
+    }
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Creates some minimal Java runtime using jlink, only containing the modules required by the application, as
+ * detected by running jdeps over all jar-files of the application.
+ * <p>
+ * Created runtimes are cached by their module-set, all jlink-options and the used jmod-files, so unchanged
+ * applications reuse the runtime of the previous build. This requires Java 9 or newer.
+ */
+public class RuntimeImageBuilder {
+
+    static final String COMPLETED_MARKER = ".complete";
+
+    private static final String LOCALE_MODULE = "jdk.localedata";
+
+    private static final Pattern MODULE_NAME = Pattern.compile("[a-zA-Z][\\w]*(\\.[a-zA-Z][\\w]*)*");
+
+    private final File cacheFolder;
+
+    private final Log logger;
+
+    private final List<File> modulePath = new ArrayList<>();
+
+    private final Set<String> additionalModules = new TreeSet<>();
+
+    private String compression = "2";
+
+    private boolean stripDebug = true;
+
+    private String includeLocales = null;
+
+    public RuntimeImageBuilder(File cacheFolder, Log logger) {
+        this.cacheFolder = cacheFolder;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * @param modulePath folders containing jmod-files besides the ones of the current JDK, e.g. JavaFX
+     */
+    public void setModulePath(Collection<File> modulePath) {
+        this.modulePath.clear();
+        this.modulePath.addAll(modulePath);
+    }
+
+    /**
+     * @param additionalModules modules which are not detected, e.g. as they are only used via reflection
+     */
+    public void setAdditionalModules(Collection<String> additionalModules) {
+        this.additionalModules.clear();
+        additionalModules.stream().map(String::trim).filter(module -> !module.isEmpty()).forEach(this.additionalModules::add);
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public void setStripDebug(boolean stripDebug) {
+        this.stripDebug = stripDebug;
+    }
+
+    /**
+     * @param includeLocales comma-separated list of locales to keep (e.g. "en,de"), all others get removed
+     */
+    public void setIncludeLocales(String includeLocales) {
+        this.includeLocales = includeLocales;
+    }
+
+    /**
+     * Detects all modules required by the given jar-files.
+     *
+     * @param jars all jar-files of the application
+     *
+     * @return names of all required modules, including the additional ones
+     *
+     * @throws IOException when jdeps failed
+     */
+    public Set<String> detectModules(Collection<File> jars) throws IOException {
+        // jdeps takes some seconds, so only run it again when some jar-file changed
+        Set<String> modules = new TreeSet<>(PackagingEngine.getInstance().getRequiredModules(jars, () -> runJdeps(jars)));
+        modules.addAll(additionalModules);
+        if( includeLocales != null && !includeLocales.trim().isEmpty() ){
+            modules.add(LOCALE_MODULE);
+        }
+        return modules;
+    }
+
+    private Set<String> runJdeps(Collection<File> jars) throws IOException {
+        String classpath = jars.stream().map(File::getAbsolutePath).collect(Collectors.joining(File.pathSeparator));
+        List<String> command = new ArrayList<>(Arrays.asList(getToolPath("jdeps"), "-q", "--multi-release", String.valueOf(getJavaFeatureVersion()), "--class-path", classpath));
+        List<String> output;
+        try{
+            List<String> printingCommand = new ArrayList<>(command);
+            printingCommand.addAll(Arrays.asList("--ignore-missing-deps", "--print-module-deps"));
+            jars.forEach(jar -> printingCommand.add(jar.getAbsolutePath()));
+            output = run(printingCommand);
+        } catch(IOException ex){
+            // older versions of jdeps only know about listing dependencies
+            getLog().debug(ex);
+            command.add("--list-deps");
+            jars.forEach(jar -> command.add(jar.getAbsolutePath()));
+            output = run(command);
+        }
+
+        Set<String> modules = new TreeSet<>();
+        modules.add("java.base");
+        for( String line : output ){
+            // either "java.base,java.desktop" or one module per line like "java.desktop/sun.awt" (internal API)
+            for( String dependency : line.split(",") ){
+                String module = dependency.trim().split("/")[0];
+                if( MODULE_NAME.matcher(module).matches() ){
+                    modules.add(module);
+                }
+            }
+        }
+        return modules;
+    }
+
+    /**
+     * Creates the runtime containing the given modules, or reuses the one created by some previous build.
+     *
+     * @param modules all modules to include
+     *
+     * @return folder of the runtime
+     *
+     * @throws IOException when jlink failed
+     */
+    public File build(Set<String> modules) throws IOException {
+        List<String> options = new ArrayList<>();
+        List<File> effectiveModulePath = new ArrayList<>(modulePath);
+        File jdkModules = new File(System.getProperty("java.home"), "jmods");
+        if( jdkModules.isDirectory() ){
+            effectiveModulePath.add(jdkModules);
+        }
+        if( !effectiveModulePath.isEmpty() ){
+            options.add("--module-path");
+            options.add(effectiveModulePath.stream().map(File::getAbsolutePath).collect(Collectors.joining(File.pathSeparator)));
+        }
+        options.add("--add-modules");
+        options.add(String.join(",", modules));
+        if( compression != null && !compression.trim().isEmpty() ){
+            options.add("--compress=" + compression.trim());
+        }
+        if( stripDebug ){
+            options.add("--strip-debug");
+        }
+        if( includeLocales != null && !includeLocales.trim().isEmpty() ){
+            options.add("--include-locales=" + includeLocales.trim());
+        }
+        options.add("--no-header-files");
+        options.add("--no-man-pages");
+
+        // a runtime created by some other JDK or other jmod-files would contain other modules
+        String runtimeKey = ChecksumTools.sha256(String.join("\n", options) + "\n" + System.getProperty("java.home") + "\n" + System.getProperty("java.version") + "\n" + describeModulePath(effectiveModulePath));
+        File runtimeFolder = new File(cacheFolder, runtimeKey.substring(0, 16));
+        if( new File(runtimeFolder, COMPLETED_MARKER).isFile() ){
+            getLog().info(String.format("Reusing minimal runtime containing %s modules: %s", modules.size(), runtimeFolder.getAbsolutePath()));
+            return runtimeFolder;
+        }
+
+        // the cache folder might be shared by concurrent builds, so every build needs its own temporary folder
+        Path temporaryFolder = new File(cacheFolder, runtimeFolder.getName() + "-" + UUID.randomUUID() + FileStager.TEMPORARY_FILE_SUFFIX).toPath();
+        removeLeftover(runtimeFolder);
+        Files.createDirectories(cacheFolder.toPath());
+
+        List<String> command = new ArrayList<>();
+        command.add(getToolPath("jlink"));
+        command.addAll(options);
+        command.add("--output");
+        command.add(temporaryFolder.toAbsolutePath().toString());
+        long startTime = System.currentTimeMillis();
+        try{
+            run(command);
+            Files.createFile(temporaryFolder.resolve(COMPLETED_MARKER));
+            Files.move(temporaryFolder, runtimeFolder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch(FileAlreadyExistsException | DirectoryNotEmptyException ex){
+            // some concurrent build was faster
+            if( !new File(runtimeFolder, COMPLETED_MARKER).isFile() ){
+                throw ex;
+            }
+        } finally{
+            FileTools.deleteRecursive(temporaryFolder);
+        }
+        getLog().info(String.format("Created minimal runtime containing %s modules in %s ms: %s", modules.size(), System.currentTimeMillis() - startTime, runtimeFolder.getAbsolutePath()));
+        return runtimeFolder;
+    }
+
+    /**
+     * Removes the runtime folder of some broken build. As some concurrent build might publish its runtime at any
+     * time, the folder gets moved aside first and is only deleted when it still is incomplete.
+     */
+    private void removeLeftover(File runtimeFolder) throws IOException {
+        if( !runtimeFolder.isDirectory() || new File(runtimeFolder, COMPLETED_MARKER).isFile() ){
+            return;
+        }
+        Path leftoverFolder = new File(cacheFolder, runtimeFolder.getName() + "-" + UUID.randomUUID() + FileStager.TEMPORARY_FILE_SUFFIX).toPath();
+        try{
+            Files.move(runtimeFolder.toPath(), leftoverFolder, StandardCopyOption.ATOMIC_MOVE);
+        } catch(NoSuchFileException ex){
+            // some concurrent build removed it already
+            return;
+        }
+        if( Files.isRegularFile(leftoverFolder.resolve(COMPLETED_MARKER)) ){
+            // got published in the meantime, so put it back
+            try{
+                Files.move(leftoverFolder, runtimeFolder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                return;
+            } catch(FileAlreadyExistsException | DirectoryNotEmptyException ex){
+                // some other complete runtime took its place
+                getLog().debug(ex);
+            }
+        }
+        FileTools.deleteRecursive(leftoverFolder);
+    }
+
+    private static String describeModulePath(List<File> modulePath) throws IOException {
+        // jlink only looks at the jmod-files directly inside the folders of the module path
+        StringBuilder description = new StringBuilder();
+        for( File modulePathEntry : modulePath ){
+            List<Path> modulePathFiles;
+            if( modulePathEntry.isDirectory() ){
+                try(Stream<Path> listedPaths = Files.list(modulePathEntry.toPath())){
+                    modulePathFiles = listedPaths.sorted().collect(Collectors.toList());
+                }
+            } else {
+                modulePathFiles = Collections.singletonList(modulePathEntry.toPath());
+            }
+            for( Path modulePathFile : modulePathFiles ){
+                if( Files.isRegularFile(modulePathFile) ){
+                    description.append(modulePathFile.toAbsolutePath()).append(" ").append(Files.size(modulePathFile)).append(" ").append(Files.getLastModifiedTime(modulePathFile).toMillis()).append("\n");
+                }
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * @param runtimeFolder some folder returned by {@link #build(Set)}
+     *
+     * @return all files of the runtime
+     *
+     * @throws IOException when the folder could not be read
+     */
+    public static List<File> getRuntimeFiles(File runtimeFolder) throws IOException {
+        try(Stream<Path> walkedPaths = Files.walk(runtimeFolder.toPath())){
+            return walkedPaths.filter(Files::isRegularFile)
+                    .filter(path -> !COMPLETED_MARKER.equals(path.getFileName().toString()))
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private List<String> run(List<String> command) throws IOException {
+        getLog().debug("Running command: " + String.join(" ", command));
+        Process process = new ProcessBuilder().command(command).redirectErrorStream(true).start();
+        List<String> output = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))){
+            String line;
+            while( (line = reader.readLine()) != null ){
+                output.add(line);
+            }
+        }
+        try{
+            if( process.waitFor() != 0 ){
+                throw new IOException(String.format("%s failed with exit code %s: %s", new File(command.get(0)).getName(), process.exitValue(), String.join(System.lineSeparator(), output)));
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + command.get(0), ex);
+        }
+        return output;
+    }
+
+    private static String getToolPath(String tool) {
+        // jlink has to match the jmod-files of the JDK running this build
+        File jdkTool = new File(new File(System.getProperty("java.home"), "bin"), tool + (System.getProperty("os.name").toLowerCase().contains("win") ? ".exe" : ""));
+        return jdkTool.isFile() ? jdkTool.getAbsolutePath() : tool;
+    }
+
+    private static int getJavaFeatureVersion() {
+        String specificationVersion = System.getProperty("java.specification.version");
+        try{
+            return Integer.parseInt(specificationVersion.split("\\.")[0], 10);
+        } catch(NumberFormatException ex){
+            return 9;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Content-addressed store of dependencies, shared by all modules of some reactor build. Every file is stored once by
+ * its SHA-256 checksum, the lib-folders of the modules get linked to these stored files instead of copying the same
+ * dependencies again and again.
+ * <p>
+ * Stored files are never changed after being placed, so linking to them is safe as long as nobody modifies the
+ * content of the lib-folders in place. This class is safe to be used by multiple threads and multiple modules being
+ * built in parallel.
+ */
+public class SharedDependencyStore {
+
+    private final File storeFolder;
+
+    private final Log logger;
+
+    private final AtomicInteger storedFiles = new AtomicInteger();
+
+    private final AtomicInteger reusedFiles = new AtomicInteger();
+
+    public SharedDependencyStore(File storeFolder, Log logger) {
+        this.storeFolder = storeFolder;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * Places the source file into the store, unless there already is some file with the same content.
+     *
+     * @param source the file to store
+     * @param sha256 checksum of the source file
+     *
+     * @return the stored file
+     *
+     * @throws IOException when the file could not be stored
+     */
+    public Path store(Path source, String sha256) throws IOException {
+        String fileName = source.getFileName().toString();
+        int extensionIndex = fileName.lastIndexOf('.');
+        String extension = extensionIndex > 0 ? fileName.substring(extensionIndex) : "";
+        Path storedFile = storeFolder.toPath().resolve(sha256.substring(0, 2)).resolve(sha256 + extension);
+
+        if( Files.isRegularFile(storedFile) && Files.size(storedFile) == Files.size(source) ){
+            reusedFiles.incrementAndGet();
+            return storedFile;
+        }
+
+        Files.createDirectories(storedFile.getParent());
+        // other modules might store the same file at the same time, so every writer needs its own temporary file
+        Path temporaryFile = Files.createTempFile(storedFile.getParent(), "." + storedFile.getFileName().toString(), FileStager.TEMPORARY_FILE_SUFFIX);
+        try{
+            // never link into the local repository, the store has to own its files, the timestamps are not copied as
+            // they would make the new file look unused to the eviction of the artifact cache
+            Files.copy(source, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+            FileStager.publish(temporaryFile, storedFile);
+        } finally{
+            Files.deleteIfExists(temporaryFile);
+        }
+        storedFiles.incrementAndGet();
+        getLog().debug(String.format("Stored classpath element inside shared dependency store: %s", source.toAbsolutePath()));
+        return storedFile;
+    }
+
+    /**
+     * @return summary about the stored files, e.g. "2 stored, 10 reused"
+     */
+    public String getReport() {
+        return String.format("%s stored, %s reused", storedFiles.get(), reusedFiles.get());
+    }
+}
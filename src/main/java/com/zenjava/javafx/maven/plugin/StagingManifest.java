@@ -0,0 +1,235 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Persisted record of all files the plugin has staged into some target folder (like the lib-folder). Each
+ * entry remembers where the file came from and how source and target looked like after staging, which makes
+ * it possible to detect changed files by comparing size and timestamps only, and to remove files that are
+ * not required anymore without touching files we never created.
+ */
+public class StagingManifest {
+
+    private static final String KEY_TARGET_FOLDER = "targetFolder";
+
+    private static final String KEY_COORDINATES = ".coordinates";
+
+    private static final String KEY_SHA256 = ".sha256";
+
+    private static final String KEY_VARIANT = ".variant";
+
+    private static final String KEY_SOURCE_SIZE = ".sourceSize";
+
+    private static final String KEY_SOURCE_LAST_MODIFIED = ".sourceLastModified";
+
+    private static final String KEY_TARGET_SIZE = ".targetSize";
+
+    private static final String KEY_TARGET_LAST_MODIFIED = ".targetLastModified";
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    private String targetFolder = "";
+
+    public static StagingManifest load(File manifestFile) throws IOException {
+        StagingManifest manifest = new StagingManifest();
+        if( manifestFile == null || !manifestFile.isFile() ){
+            return manifest;
+        }
+        Properties properties = new Properties();
+        try(InputStream in = Files.newInputStream(manifestFile.toPath())){
+            properties.load(in);
+        }
+        manifest.setTargetFolder(properties.getProperty(KEY_TARGET_FOLDER, ""));
+        properties.stringPropertyNames().stream().filter(key -> key.endsWith(KEY_COORDINATES)).forEach(key -> {
+            String name = key.substring(0, key.length() - KEY_COORDINATES.length());
+            try{
+                Entry entry = new Entry();
+                entry.setCoordinates(properties.getProperty(name + KEY_COORDINATES));
+                entry.setSha256(properties.getProperty(name + KEY_SHA256));
+                entry.setVariant(properties.getProperty(name + KEY_VARIANT, ""));
+                entry.setSourceSize(Long.parseLong(properties.getProperty(name + KEY_SOURCE_SIZE)));
+                entry.setSourceLastModified(Long.parseLong(properties.getProperty(name + KEY_SOURCE_LAST_MODIFIED)));
+                entry.setTargetSize(Long.parseLong(properties.getProperty(name + KEY_TARGET_SIZE)));
+                entry.setTargetLastModified(Long.parseLong(properties.getProperty(name + KEY_TARGET_LAST_MODIFIED)));
+                manifest.put(name, entry);
+            } catch(NumberFormatException | NullPointerException ex){
+                // broken entry, will be staged again
+            }
+        });
+        return manifest;
+    }
+
+    public synchronized void save(File manifestFile) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_TARGET_FOLDER, targetFolder);
+        entries.forEach((name, entry) -> {
+            properties.setProperty(name + KEY_COORDINATES, entry.getCoordinates());
+            properties.setProperty(name + KEY_SHA256, entry.getSha256());
+            properties.setProperty(name + KEY_VARIANT, entry.getVariant());
+            properties.setProperty(name + KEY_SOURCE_SIZE, String.valueOf(entry.getSourceSize()));
+            properties.setProperty(name + KEY_SOURCE_LAST_MODIFIED, String.valueOf(entry.getSourceLastModified()));
+            properties.setProperty(name + KEY_TARGET_SIZE, String.valueOf(entry.getTargetSize()));
+            properties.setProperty(name + KEY_TARGET_LAST_MODIFIED, String.valueOf(entry.getTargetLastModified()));
+        });
+        File parentFolder = manifestFile.getParentFile();
+        if( parentFolder != null && !parentFolder.exists() ){
+            Files.createDirectories(parentFolder.toPath());
+        }
+        try(OutputStream out = Files.newOutputStream(manifestFile.toPath())){
+            properties.store(out, "staged files of the javafx-maven-plugin, do not edit");
+        }
+    }
+
+    /**
+     * @return some independent copy of this manifest, changing its entries does not change this manifest
+     */
+    public synchronized StagingManifest copy() {
+        StagingManifest copiedManifest = new StagingManifest();
+        copiedManifest.setTargetFolder(targetFolder);
+        entries.forEach((name, entry) -> copiedManifest.put(name, entry.copy()));
+        return copiedManifest;
+    }
+
+    public String getTargetFolder() {
+        return targetFolder;
+    }
+
+    public void setTargetFolder(String targetFolder) {
+        this.targetFolder = targetFolder;
+    }
+
+    public synchronized Entry get(String name) {
+        return entries.get(name);
+    }
+
+    public synchronized void put(String name, Entry entry) {
+        entries.put(name, entry);
+    }
+
+    public synchronized Entry remove(String name) {
+        return entries.remove(name);
+    }
+
+    public synchronized Set<String> getNames() {
+        return new TreeSet<>(entries.keySet());
+    }
+
+    /**
+     * Information about one staged file.
+     */
+    public static class Entry {
+
+        private String coordinates = "";
+
+        private String sha256 = "";
+
+        private String variant = "";
+
+        private long sourceSize = -1;
+
+        private long sourceLastModified = -1;
+
+        private long targetSize = -1;
+
+        private long targetLastModified = -1;
+
+        Entry copy() {
+            Entry copiedEntry = new Entry();
+            copiedEntry.setCoordinates(coordinates);
+            copiedEntry.setSha256(sha256);
+            copiedEntry.setVariant(variant);
+            copiedEntry.setSourceSize(sourceSize);
+            copiedEntry.setSourceLastModified(sourceLastModified);
+            copiedEntry.setTargetSize(targetSize);
+            copiedEntry.setTargetLastModified(targetLastModified);
+            return copiedEntry;
+        }
+
+        public String getCoordinates() {
+            return coordinates;
+        }
+
+        public void setCoordinates(String coordinates) {
+            this.coordinates = coordinates;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public void setSha256(String sha256) {
+            this.sha256 = sha256;
+        }
+
+        /**
+         * Describes how the target file was created from the source file (e.g. the used staging strategy). When
+         * this differs from what is requested now, the file has to be staged again.
+         *
+         * @return description of the staging process
+         */
+        public String getVariant() {
+            return variant;
+        }
+
+        public void setVariant(String variant) {
+            this.variant = variant;
+        }
+
+        public long getSourceSize() {
+            return sourceSize;
+        }
+
+        public void setSourceSize(long sourceSize) {
+            this.sourceSize = sourceSize;
+        }
+
+        public long getSourceLastModified() {
+            return sourceLastModified;
+        }
+
+        public void setSourceLastModified(long sourceLastModified) {
+            this.sourceLastModified = sourceLastModified;
+        }
+
+        public long getTargetSize() {
+            return targetSize;
+        }
+
+        public void setTargetSize(long targetSize) {
+            this.targetSize = targetSize;
+        }
+
+        public long getTargetLastModified() {
+            return targetLastModified;
+        }
+
+        public void setTargetLastModified(long targetLastModified) {
+            this.targetLastModified = targetLastModified;
+        }
+    }
+}
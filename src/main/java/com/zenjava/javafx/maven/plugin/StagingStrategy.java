@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+/**
+ * All supported ways of placing files (like dependencies or additional resources) into the app-folder.
+ */
+public enum StagingStrategy {
+
+    /**
+     * Plain copy of the file content, works everywhere.
+     */
+    COPY,
+    /**
+     * Creates a hardlink to the source file, requires source and target to be on the same filesystem.
+     */
+    HARDLINK,
+    /**
+     * Creates a copy-on-write clone of the source file, requires a filesystem supporting this (like btrfs, XFS or APFS).
+     */
+    REFLINK,
+    /**
+     * Creates a symbolic link to the source file, only meant for development builds, as the app-folder is not
+     * movable anymore.
+     */
+    SYMLINK;
+
+    public static StagingStrategy fromString(String value) {
+        if( value == null || value.trim().isEmpty() ){
+            return COPY;
+        }
+        return StagingStrategy.valueOf(value.trim().toUpperCase());
+    }
+}
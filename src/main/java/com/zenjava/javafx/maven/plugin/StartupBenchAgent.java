@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Java agent injected by "jfx:startup-bench" into the measured application, so it must not use any other class of
+ * this plugin. The agent registers {@value #PRELOADER_CLASS} as JavaFX preloader, which gets notified right before
+ * the start-method of the application is called and watches all pulses afterwards, until the first pulse with some
+ * showing window.
+ * <p>
+ * Both times are printed as one line starting with {@value #OUTPUT_PREFIX}, in milliseconds since the start of the
+ * JVM, together with the peak resident set size (only available on Linux).
+ */
+public final class StartupBenchAgent {
+
+    public static final String OUTPUT_PREFIX = "[jfx-startup-bench]";
+
+    public static final String PRELOADER_CLASS = "com.zenjava.javafx.maven.plugin.StartupBenchPreloader";
+
+    private static final AtomicBoolean REPORTED = new AtomicBoolean(false);
+
+    private static volatile long applicationStartNanos = -1;
+
+    private StartupBenchAgent() {
+        // java agent
+    }
+
+    public static void premain(String agentArguments) {
+        // an already configured preloader can not be replaced, the benchmark refuses such applications
+        if( System.getProperty("javafx.preloader") == null ){
+            System.setProperty("javafx.preloader", PRELOADER_CLASS);
+        }
+    }
+
+    /**
+     * Called by the preloader on the JavaFX application thread, right before the start-method of the application.
+     */
+    public static void applicationStarting() {
+        applicationStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Called by the preloader for each pulse after the application got started.
+     *
+     * @return true when some window is showing and the timings got reported, so no more pulses are required
+     */
+    public static boolean pulse() {
+        if( !isAnyWindowShowing() ){
+            return false;
+        }
+        long firstPulseNanos = System.nanoTime();
+        if( REPORTED.compareAndSet(false, true) ){
+            report(firstPulseNanos);
+        }
+        return true;
+    }
+
+    private static boolean isAnyWindowShowing() {
+        try{
+            Iterable<?> windows;
+            try{
+                windows = (Iterable<?>) Class.forName("javafx.stage.Window").getMethod("getWindows").invoke(null);
+            } catch(NoSuchMethodException ex){
+                // JavaFX 8 has no public list of all windows
+                windows = (Iterable<?>) Class.forName("com.sun.javafx.stage.StageHelper").getMethod("getStages").invoke(null);
+            }
+            for( Object window : windows ){
+                if( Boolean.TRUE.equals(Class.forName("javafx.stage.Window").getMethod("isShowing").invoke(window)) ){
+                    return true;
+                }
+            }
+            return false;
+        } catch(ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException ex){
+            // measuring the first pulse is better than measuring nothing
+            return true;
+        }
+    }
+
+    private static void report(long firstPulseNanos) {
+        // loading the management classes would influence the measurement, so they are used after measuring only
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        long nowNanos = System.nanoTime();
+        long firstPulseMillis = uptimeMillis - TimeUnit.NANOSECONDS.toMillis(nowNanos - firstPulseNanos);
+        long applicationStartMillis = -1;
+        if( applicationStartNanos >= 0 ){
+            applicationStartMillis = uptimeMillis - TimeUnit.NANOSECONDS.toMillis(nowNanos - applicationStartNanos);
+        }
+        System.out.println(String.format("%s applicationStartMillis=%s firstPulseMillis=%s peakRssKilobytes=%s", OUTPUT_PREFIX, applicationStartMillis, firstPulseMillis, getPeakRssKilobytes()));
+        System.out.flush();
+    }
+
+    private static long getPeakRssKilobytes() {
+        Path status = Paths.get("/proc/self/status");
+        if( !Files.isReadable(status) ){
+            return -1;
+        }
+        try{
+            for( String line : Files.readAllLines(status, StandardCharsets.UTF_8) ){
+                // VmHWM:    123456 kB
+                if( line.startsWith("VmHWM:") ){
+                    return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim(), 10);
+                }
+            }
+        } catch(IOException | NumberFormatException ex){
+            // not available
+        }
+        return -1;
+    }
+}
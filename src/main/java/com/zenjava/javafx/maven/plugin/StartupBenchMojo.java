@@ -0,0 +1,420 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Starts the application several times and measures how long it takes until the start-method of the application
+ * gets called and until the first pulse showing some window, both relative to the start of the JVM, as well as
+ * the peak memory usage (resident set size, only available on Linux). The measurements are taken by some small
+ * java agent (see {@link StartupBenchAgent}) and written as JSON summary containing some percentiles.
+ * <p>
+ * When some baseline summary exists, the medians get compared and the build fails when startup got slower than
+ * allowed.
+ *
+ * @goal startup-bench
+ * @execute goal="jar"
+ * @threadSafe
+ */
+public class StartupBenchMojo extends RunMojo {
+
+    private static final String PRELOADER_SOURCE_NAME = "StartupBenchPreloader.java";
+
+    private static final String[] PRELOADER_SOURCE = {
+        "package com.zenjava.javafx.maven.plugin;",
+        "",
+        "public class StartupBenchPreloader extends javafx.application.Preloader {",
+        "",
+        "    @Override",
+        "    public void start(javafx.stage.Stage stage) {",
+        "        // nothing to show",
+        "    }",
+        "",
+        "    @Override",
+        "    public void handleStateChangeNotification(javafx.application.Preloader.StateChangeNotification notification) {",
+        "        if (notification.getType() == javafx.application.Preloader.StateChangeNotification.Type.BEFORE_START) {",
+        "            StartupBenchAgent.applicationStarting();",
+        "            new javafx.animation.AnimationTimer() {",
+        "                @Override",
+        "                public void handle(long now) {",
+        "                    if (StartupBenchAgent.pulse()) {",
+        "                        stop();",
+        "                    }",
+        "                }",
+        "            }.start();",
+        "        }",
+        "    }",
+        "}"
+    };
+
+    private static final String MONOCLE_CLASS = "com/sun/glass/ui/monocle/MonoclePlatformFactory.class";
+
+    /**
+     * Number of measured runs.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupBenchRuns" default-value="10"
+     */
+    protected int startupBenchRuns = 10;
+
+    /**
+     * Number of runs before measuring, for having all files inside the cache of the operating system.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupBenchWarmupRuns" default-value="1"
+     */
+    protected int startupBenchWarmupRuns = 1;
+
+    /**
+     * Seconds to wait for the first window of each run, runs taking longer are stopped and counted as failed.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupBenchTimeout" default-value="60"
+     */
+    protected int startupBenchTimeout = 60;
+
+    /**
+     * Runs the application without any visible window, which requires Monocle to be part of the application
+     * (or the used JDK). Without Monocle the application is shown as usual.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupBenchHeadless" default-value="true"
+     */
+    protected boolean startupBenchHeadless = true;
+
+    /**
+     * JSON file receiving the summary of all runs.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupBenchResultFile" default-value="${project.build.directory}/jfx/startup-bench.json"
+     */
+    protected File startupBenchResultFile;
+
+    /**
+     * Previously recorded summary, used for detecting startup regressions. This file is meant to be committed, so
+     * the default location is inside the project folder.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupBenchBaselineFile" default-value="${project.basedir}/startup-bench-baseline.json"
+     */
+    protected File startupBenchBaselineFile;
+
+    /**
+     * Allowed regression of the median startup times in percent, compared against the baseline. When the
+     * application starts slower than allowed, the build fails. Not set by default, which only reports the
+     * difference.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupBenchMaxRegression"
+     */
+    protected Integer startupBenchMaxRegression;
+
+    /**
+     * Replaces the baseline with the summary of this benchmark, after comparing both.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.startupBenchUpdateBaseline" default-value="false"
+     */
+    protected boolean startupBenchUpdateBaseline = false;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if( skip ){
+            getLog().info("Skipping execution of StartupBenchMojo MOJO.");
+            return;
+        }
+        if( startupBenchRuns < 1 ){
+            throw new MojoExecutionException("At least one run is required for measuring the startup.");
+        }
+
+        getLog().info("Measuring startup of JavaFX Application");
+
+        File mainAppJarFile = new File(jfxAppOutputDir, jfxMainAppJarName);
+        checkNoPreloader(mainAppJarFile);
+        File agentJarFile = createAgentJar(mainAppJarFile, new File(cacheDir, "startup-bench"));
+
+        boolean headless = startupBenchHeadless && isMonocleAvailable();
+        if( startupBenchHeadless && !headless ){
+            getLog().info("Monocle was not found, so the application gets shown while measuring");
+        }
+        List<String> command = createCommand(agentJarFile, headless);
+
+        StartupBenchSummary summary = new StartupBenchSummary(headless);
+        int totalRuns = startupBenchWarmupRuns + startupBenchRuns;
+        for( int run = 1; run <= totalRuns; run++ ){
+            boolean warmup = run <= startupBenchWarmupRuns;
+            String runName = warmup ? String.format("Warmup run %s of %s", run, startupBenchWarmupRuns) : String.format("Run %s of %s", run - startupBenchWarmupRuns, startupBenchRuns);
+            Map<String, Long> sample = measure(command);
+            if( sample == null ){
+                getLog().warn(String.format("%s: application did not show any window within %s seconds", runName, startupBenchTimeout));
+            } else {
+                getLog().info(String.format("%s: %s", runName, sample));
+            }
+            if( warmup ){
+                continue;
+            }
+            if( sample == null ){
+                summary.addFailedRun();
+            } else {
+                summary.addSample(sample);
+            }
+        }
+
+        if( summary.getSampleCount() == 0 ){
+            throw new MojoExecutionException("No run was measured, please check if the application starts and shows some window.");
+        }
+
+        saveSummary(summary);
+        compareWithBaseline(summary);
+
+        if( startupBenchUpdateBaseline ){
+            updateBaseline();
+        }
+    }
+
+    private List<String> createCommand(File agentJarFile, boolean headless) {
+        List<String> command = new ArrayList<>();
+        command.add(getEnvironmentRelativeExecutablePath() + "java");
+
+        Optional.ofNullable(runJavaParameter).ifPresent(parameter -> {
+            if( !parameter.trim().isEmpty() ){
+                command.add(parameter);
+            }
+        });
+
+        command.add("-javaagent:" + agentJarFile.getAbsolutePath());
+        if( headless ){
+            command.addAll(Arrays.asList("-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"));
+        }
+        command.add("-jar");
+        command.add(jfxMainAppJarName);
+
+        Optional.ofNullable(runAppParameter).ifPresent(parameter -> {
+            if( !parameter.trim().isEmpty() ){
+                command.add(parameter);
+            }
+        });
+        return command;
+    }
+
+    /**
+     * Runs the application once, until the agent reported its measurements.
+     *
+     * @return the reported measurements, or null when the agent did not report anything
+     */
+    private Map<String, Long> measure(List<String> command) throws MojoExecutionException {
+        AtomicReference<Map<String, Long>> sample = new AtomicReference<>();
+        runWithTimeout(command, startupBenchTimeout, line -> {
+            Map<String, Long> reportedSample = StartupBenchSummary.parseAgentOutput(line);
+            if( reportedSample == null ){
+                if( verbose ){
+                    getLog().info(line);
+                }
+                return false;
+            }
+            sample.set(reportedSample);
+            return true;
+        });
+        return sample.get();
+    }
+
+    private void saveSummary(StartupBenchSummary summary) throws MojoExecutionException {
+        try{
+            summary.save(startupBenchResultFile);
+        } catch(IOException ex){
+            throw new MojoExecutionException("Could not write startup benchmark summary.", ex);
+        }
+        for( String metric : StartupBenchSummary.METRICS ){
+            Long median = summary.getPercentile(metric, 50);
+            if( median != null ){
+                getLog().info(String.format("%s: median %s, p90 %s, max %s", metric, median, summary.getPercentile(metric, 90), summary.getPercentile(metric, 100)));
+            }
+        }
+        getLog().info(String.format("Wrote startup benchmark summary: %s", startupBenchResultFile.getAbsolutePath()));
+    }
+
+    private void updateBaseline() throws MojoExecutionException {
+        try{
+            Files.createDirectories(startupBenchBaselineFile.getAbsoluteFile().getParentFile().toPath());
+            Files.copy(startupBenchResultFile.toPath(), startupBenchBaselineFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch(IOException ex){
+            throw new MojoExecutionException("Could not update startup benchmark baseline.", ex);
+        }
+        getLog().info(String.format("Updated startup benchmark baseline: %s", startupBenchBaselineFile.getAbsolutePath()));
+    }
+
+    private void compareWithBaseline(StartupBenchSummary summary) throws MojoExecutionException, MojoFailureException {
+        if( !startupBenchBaselineFile.isFile() ){
+            if( startupBenchMaxRegression != null ){
+                getLog().warn(String.format("No startup benchmark baseline found at %s, nothing to compare with", startupBenchBaselineFile.getAbsolutePath()));
+            }
+            return;
+        }
+        Map<String, Long> baselineMedians;
+        try{
+            baselineMedians = StartupBenchSummary.loadMedians(startupBenchBaselineFile);
+        } catch(IOException ex){
+            throw new MojoExecutionException("Could not read startup benchmark baseline.", ex);
+        }
+
+        List<String> regressions = new ArrayList<>();
+        // memory usage depends too much on the environment, so only the timings are compared
+        for( String metric : Arrays.asList(StartupBenchSummary.APPLICATION_START, StartupBenchSummary.FIRST_PULSE) ){
+            Long baselineMedian = baselineMedians.get(metric);
+            Long median = summary.getPercentile(metric, 50);
+            if( baselineMedian == null || median == null || baselineMedian <= 0 ){
+                continue;
+            }
+            double regression = (median - baselineMedian) * 100.0 / baselineMedian;
+            String comparison = String.format(Locale.ROOT, "%s: median %s ms, baseline %s ms (%+.1f%%)", metric, median, baselineMedian, regression);
+            getLog().info(comparison);
+            if( startupBenchMaxRegression != null && regression > startupBenchMaxRegression ){
+                regressions.add(comparison);
+            }
+        }
+        if( !regressions.isEmpty() ){
+            throw new MojoFailureException(String.format("Startup got slower than the allowed %s%%: %s", startupBenchMaxRegression, String.join(", ", regressions)));
+        }
+    }
+
+    private void checkNoPreloader(File mainAppJarFile) throws MojoExecutionException {
+        try(JarFile mainAppJar = new JarFile(mainAppJarFile)){
+            Manifest manifest = mainAppJar.getManifest();
+            if( manifest != null && manifest.getMainAttributes().getValue("JavaFX-Preloader-Class") != null ){
+                throw new MojoExecutionException("Measuring the startup requires its own preloader, applications with some preloader are not supported.");
+            }
+        } catch(IOException ex){
+            throw new MojoExecutionException("Could not read JavaFX JAR.", ex);
+        }
+    }
+
+    /**
+     * Creates the jar-file of the agent. The preloader has to extend some JavaFX class, so it gets compiled against
+     * the application, the agent itself is copied from this plugin.
+     */
+    private File createAgentJar(File mainAppJarFile, File workFolder) throws MojoExecutionException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if( compiler == null ){
+            throw new MojoExecutionException("No Java compiler available, please run Maven using some JDK.");
+        }
+
+        Path classesFolder = workFolder.toPath().resolve("agent-classes");
+        Path packageFolder = classesFolder.resolve(StartupBenchAgent.class.getPackage().getName().replace('.', File.separatorChar));
+        File agentJarFile = new File(workFolder, "startup-bench-agent.jar");
+        try{
+            FileTools.deleteRecursive(classesFolder);
+            Files.createDirectories(packageFolder);
+            String agentClassFileName = StartupBenchAgent.class.getSimpleName() + ".class";
+            try(InputStream agentClass = StartupBenchAgent.class.getResourceAsStream(agentClassFileName)){
+                Files.copy(agentClass, packageFolder.resolve(agentClassFileName));
+            }
+
+            Path preloaderSource = workFolder.toPath().resolve(PRELOADER_SOURCE_NAME);
+            Files.write(preloaderSource, String.join("\n", PRELOADER_SOURCE).getBytes(StandardCharsets.UTF_8));
+            // the manifest classpath of the JavaFX JAR gets followed by the compiler
+            String classpath = classesFolder.toAbsolutePath().toString() + File.pathSeparator + mainAppJarFile.getAbsolutePath();
+            List<String> options = new ArrayList<>(Arrays.asList("-d", classesFolder.toAbsolutePath().toString(), "-classpath", classpath, "-encoding", "UTF-8", "-nowarn"));
+            // the application might get started using some other Java version, like the agent itself
+            if( JavaDetectionTools.isAtLeastJavaVersion(9) ){
+                options.addAll(Arrays.asList("-source", "8", "-target", "8", "-Xlint:-options"));
+            }
+            options.add(preloaderSource.toAbsolutePath().toString());
+            ByteArrayOutputStream compilerOutput = new ByteArrayOutputStream();
+            int result = compiler.run(null, null, compilerOutput, options.toArray(new String[0]));
+            if( result != 0 ){
+                getLog().error(new String(compilerOutput.toByteArray(), StandardCharsets.UTF_8));
+                throw new MojoExecutionException("Could not compile the preloader of the startup benchmark, JavaFX has to be available to the application.");
+            }
+
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().putValue("Premain-Class", StartupBenchAgent.class.getName());
+            List<Path> classFiles;
+            try(Stream<Path> walkedPaths = Files.walk(classesFolder)){
+                classFiles = walkedPaths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            try(JarOutputStream agentJar = new JarOutputStream(Files.newOutputStream(agentJarFile.toPath()), manifest)){
+                for( Path classFile : classFiles ){
+                    agentJar.putNextEntry(new JarEntry(classesFolder.relativize(classFile).toString().replace("\\", "/")));
+                    Files.copy(classFile, agentJar);
+                    agentJar.closeEntry();
+                }
+            }
+        } catch(IOException ex){
+            throw new MojoExecutionException("Could not create the agent of the startup benchmark.", ex);
+        }
+        return agentJarFile;
+    }
+
+    private boolean isMonocleAvailable() {
+        List<File> candidates = new ArrayList<>();
+        String javaHome = System.getProperty("java.home");
+        candidates.add(new File(javaHome, "lib" + File.separator + "ext" + File.separator + "jfxrt.jar"));
+        try(Stream<Path> walkedPaths = Files.walk(jfxAppOutputDir.toPath())){
+            walkedPaths.filter(path -> path.getFileName().toString().toLowerCase().endsWith(".jar")).forEach(path -> candidates.add(path.toFile()));
+        } catch(IOException ex){
+            getLog().debug(ex);
+        }
+        for( File candidate : candidates ){
+            if( !candidate.isFile() ){
+                continue;
+            }
+            try(JarFile jarFile = new JarFile(candidate)){
+                if( jarFile.getEntry(MONOCLE_CLASS) != null ){
+                    return true;
+                }
+            } catch(IOException ex){
+                getLog().debug(ex);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Collected measurements of all runs of "jfx:startup-bench", as reported by the {@link StartupBenchAgent}. The
+ * summary is persisted as JSON, containing some percentiles of each metric and all single samples.
+ */
+public class StartupBenchSummary {
+
+    public static final String APPLICATION_START = "applicationStartMillis";
+
+    public static final String FIRST_PULSE = "firstPulseMillis";
+
+    public static final String PEAK_RSS = "peakRssKilobytes";
+
+    public static final List<String> METRICS = Arrays.asList(APPLICATION_START, FIRST_PULSE, PEAK_RSS);
+
+    private static final int[] PERCENTILES = {50, 90, 95};
+
+    private static final Pattern AGENT_VALUE = Pattern.compile("(\\w+)=(-?\\d+)");
+
+    private final List<Map<String, Long>> samples = new ArrayList<>();
+
+    private final boolean headless;
+
+    private int failedRuns = 0;
+
+    public StartupBenchSummary(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * @param line some line printed by the measured application
+     *
+     * @return all metrics reported by the agent, or null when the line was not printed by the agent
+     */
+    public static Map<String, Long> parseAgentOutput(String line) {
+        String trimmedLine = line.trim();
+        if( !trimmedLine.startsWith(StartupBenchAgent.OUTPUT_PREFIX) ){
+            return null;
+        }
+        Map<String, Long> sample = new LinkedHashMap<>();
+        Matcher matcher = AGENT_VALUE.matcher(trimmedLine.substring(StartupBenchAgent.OUTPUT_PREFIX.length()));
+        while( matcher.find() ){
+            long value = Long.parseLong(matcher.group(2), 10);
+            // negative values are reported for unavailable metrics
+            if( METRICS.contains(matcher.group(1)) && value >= 0 ){
+                sample.put(matcher.group(1), value);
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Reads the medians of some previously saved summary, e.g. for comparing against some baseline.
+     *
+     * @param summaryFile the JSON file written by {@link #save(File)}
+     *
+     * @return median of each metric contained in the summary
+     *
+     * @throws IOException when the file could not be read
+     */
+    public static Map<String, Long> loadMedians(File summaryFile) throws IOException {
+        String json = new String(Files.readAllBytes(summaryFile.toPath()), StandardCharsets.UTF_8);
+        Map<String, Long> medians = new LinkedHashMap<>();
+        for( String metric : METRICS ){
+            Matcher matcher = Pattern.compile("\"" + metric + "\"\\s*:\\s*\\{[^}]*\"p50\"\\s*:\\s*(\\d+)").matcher(json);
+            if( matcher.find() ){
+                medians.put(metric, Long.parseLong(matcher.group(1), 10));
+            }
+        }
+        return medians;
+    }
+
+    public void addSample(Map<String, Long> sample) {
+        samples.add(sample);
+    }
+
+    public void addFailedRun() {
+        failedRuns++;
+    }
+
+    public int getSampleCount() {
+        return samples.size();
+    }
+
+    /**
+     * Calculates some percentile using the nearest-rank method.
+     *
+     * @param metric name of the metric
+     * @param percentile the percentile, between 1 and 100
+     *
+     * @return the value, or null when no sample contains the metric
+     */
+    public Long getPercentile(String metric, int percentile) {
+        List<Long> values = getSortedValues(metric);
+        if( values.isEmpty() ){
+            return null;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * values.size());
+        return values.get(Math.max(0, rank - 1));
+    }
+
+    public void save(File summaryFile) throws IOException {
+        File parentFolder = summaryFile.getParentFile();
+        if( parentFolder != null && !parentFolder.exists() ){
+            Files.createDirectories(parentFolder.toPath());
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"runs\" : ").append(samples.size() + failedRuns).append(",\n");
+        json.append("  \"failedRuns\" : ").append(failedRuns).append(",\n");
+        json.append("  \"headless\" : ").append(headless).append(",\n");
+        for( String metric : METRICS ){
+            json.append("  \"").append(metric).append("\" : ").append(metricToJson(metric)).append(",\n");
+        }
+        json.append("  \"samples\" : [");
+        json.append(samples.stream().map(sample -> "\n    { " + sample.entrySet().stream().map(value -> "\"" + value.getKey() + "\" : " + value.getValue()).collect(Collectors.joining(", ")) + " }").collect(Collectors.joining(",")));
+        json.append(samples.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        Files.write(summaryFile.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String metricToJson(String metric) {
+        List<Long> values = getSortedValues(metric);
+        if( values.isEmpty() ){
+            return "null";
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{ \"min\" : ").append(values.get(0));
+        for( int percentile : PERCENTILES ){
+            json.append(", \"p").append(percentile).append("\" : ").append(getPercentile(metric, percentile));
+        }
+        json.append(", \"max\" : ").append(values.get(values.size() - 1));
+        json.append(", \"mean\" : ").append(Math.round(values.stream().mapToLong(Long::longValue).average().orElse(0)));
+        json.append(" }");
+        return json.toString();
+    }
+
+    private List<Long> getSortedValues(String metric) {
+        return samples.stream().filter(sample -> sample.containsKey(metric)).map(sample -> sample.get(metric)).sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Order in which classes and resources got loaded from the jar-files of the app-folder while starting the
+ * application. Each line of the persisted trace contains the jar-file (relative to the app-folder) and the name of the
+ * loaded entry, separated by some tab.
+ * <p>
+ * Classes are recorded from the output of "-verbose:class", which differs between Java 8 and Java 9+ (unified
+ * logging), both formats are supported. Resources (like CSS, FXML, images or resource bundles) are recorded from the
+ * output of {@link StartupTraceClassLoader}.
+ */
+public class StartupTrace {
+
+    private static final String SEPARATOR = "\t";
+
+    // Java 8: [Loaded com.example.Main from file:/path/to/app/app.jar]
+    private static final Pattern JAVA_8_CLASS_LOADED = Pattern.compile("^\\[Loaded (\\S+) from (\\S+)\\]$");
+
+    // Java 9+: [0.123s][info][class,load] com.example.Main source: file:/path/to/app/app.jar
+    private static final Pattern UNIFIED_LOGGING_CLASS_LOADED = Pattern.compile("\\[class,load\\s*\\]\\s*(\\S+) source: (\\S+)");
+
+    private final Set<String> entries = new LinkedHashSet<>();
+
+    public static StartupTrace load(File traceFile) throws IOException {
+        StartupTrace startupTrace = new StartupTrace();
+        if( traceFile == null || !traceFile.isFile() ){
+            return startupTrace;
+        }
+        try(BufferedReader reader = Files.newBufferedReader(traceFile.toPath(), StandardCharsets.UTF_8)){
+            String line;
+            while( (line = reader.readLine()) != null ){
+                if( line.startsWith("#") || !line.contains(SEPARATOR) ){
+                    continue;
+                }
+                startupTrace.entries.add(line.trim());
+            }
+        }
+        return startupTrace;
+    }
+
+    public void save(File traceFile) throws IOException {
+        File parentFolder = traceFile.getParentFile();
+        if( parentFolder != null && !parentFolder.exists() ){
+            Files.createDirectories(parentFolder.toPath());
+        }
+        try(BufferedWriter writer = Files.newBufferedWriter(traceFile.toPath(), StandardCharsets.UTF_8)){
+            writer.write("# startup trace created by jfx:trace-startup, used for ordering the JavaFX JAR and its classpath");
+            writer.newLine();
+            for( String entry : entries ){
+                writer.write(entry);
+                writer.newLine();
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void add(String jarPath, String entryName) {
+        entries.add(jarPath + SEPARATOR + entryName);
+    }
+
+    /**
+     * Records the class of some line of the "-verbose:class"-output, when it got loaded from a jar-file inside
+     * the app-folder.
+     *
+     * @param line the line printed by the JVM
+     * @param appFolder the folder containing the started application
+     *
+     * @return true when the line was recorded
+     */
+    public boolean addVerboseClassOutput(String line, Path appFolder) {
+        String trimmedLine = line.trim();
+        Matcher matcher = JAVA_8_CLASS_LOADED.matcher(trimmedLine);
+        if( !matcher.find() ){
+            matcher = UNIFIED_LOGGING_CLASS_LOADED.matcher(trimmedLine);
+            if( !matcher.find() ){
+                return false;
+            }
+        }
+        String className = matcher.group(1);
+        String jarPath = getJarPath(matcher.group(2), appFolder);
+        if( jarPath == null ){
+            return false;
+        }
+        add(jarPath, className.replace('.', '/') + ".class");
+        return true;
+    }
+
+    /**
+     * Records the resource of some line printed by {@link StartupTraceClassLoader}, when it got found inside some
+     * jar-file of the app-folder.
+     *
+     * @param line the line printed by the application
+     * @param appFolder the folder containing the started application
+     *
+     * @return true when the line was printed by {@link StartupTraceClassLoader}, even when nothing got recorded
+     */
+    public boolean addResourceOutput(String line, Path appFolder) {
+        String trimmedLine = line.trim();
+        if( !trimmedLine.startsWith(StartupTraceClassLoader.OUTPUT_PREFIX) ){
+            return false;
+        }
+        // jar:file:/path/to/app/app.jar!/styles/main.css
+        String resource = trimmedLine.substring(StartupTraceClassLoader.OUTPUT_PREFIX.length()).trim();
+        int separatorIndex = resource.indexOf("!/");
+        if( !resource.startsWith("jar:") || separatorIndex < 0 ){
+            return true;
+        }
+        String jarPath = getJarPath(resource.substring("jar:".length(), separatorIndex), appFolder);
+        if( jarPath == null ){
+            return true;
+        }
+        try{
+            String entryName = new URI(resource.substring(separatorIndex + 2)).getPath();
+            if( entryName != null && !entryName.isEmpty() ){
+                add(jarPath, entryName);
+            }
+        } catch(URISyntaxException ex){
+            // not recorded
+        }
+        return true;
+    }
+
+    /**
+     * @return the jar-file of the source, relative to the app-folder, or null when not being some jar-file inside
+     * the app-folder
+     */
+    private static String getJarPath(String source, Path appFolder) {
+        if( !source.startsWith("file:") || !source.toLowerCase().endsWith(".jar") ){
+            return null;
+        }
+        Path jarFile;
+        try{
+            jarFile = Paths.get(new URI(source)).toAbsolutePath().normalize();
+        } catch(URISyntaxException | IllegalArgumentException ex){
+            return null;
+        }
+        Path normalizedAppFolder = appFolder.toAbsolutePath().normalize();
+        if( !jarFile.startsWith(normalizedAppFolder) ){
+            return null;
+        }
+        return normalizedAppFolder.relativize(jarFile).toString().replace("\\", "/");
+    }
+
+    /**
+     * @param jarPath the jar-file, relative to the app-folder
+     *
+     * @return all entries of that jar-file in order of loading
+     */
+    public List<String> getEntryOrder(String jarPath) {
+        String prefix = jarPath + SEPARATOR;
+        return entries.stream().filter(entry -> entry.startsWith(prefix)).map(entry -> entry.substring(prefix.length())).collect(Collectors.toList());
+    }
+
+    /**
+     * @return all jar-files in order of their first usage
+     */
+    public List<String> getJarOrder() {
+        Set<String> jarPaths = new LinkedHashSet<>();
+        entries.forEach(entry -> jarPaths.add(entry.substring(0, entry.indexOf(SEPARATOR))));
+        return new ArrayList<>(jarPaths);
+    }
+
+    /**
+     * Orders the classpath (as used inside the manifest) by the first usage of each element, elements not used
+     * while starting keep their order and are placed at the end.
+     * <p>
+     * Reordering must not change which element wins for classes or resources existing in more than one element,
+     * so elements sharing some entry always keep their relative order. Elements which could not be read (like
+     * folders or missing files) are treated as sharing entries with all other elements and keep their position.
+     *
+     * @param classpath the classpath to reorder
+     * @param baseFolder the folder all classpath elements are relative to
+     *
+     * @return reordered classpath
+     *
+     * @throws IOException when some jar-file could not be read
+     */
+    public String orderClasspath(String classpath, File baseFolder) throws IOException {
+        List<String> classpathElements = new ArrayList<>();
+        for( String classpathElement : classpath.trim().split("\\s+") ){
+            if( !classpathElement.isEmpty() ){
+                classpathElements.add(classpathElement);
+            }
+        }
+        Map<String, Set<String>> predecessors = findOverlappingPredecessors(classpathElements, baseFolder);
+
+        List<String> remainingElements = getJarOrder().stream().filter(classpathElements::contains).collect(Collectors.toList());
+        classpathElements.stream().filter(classpathElement -> !remainingElements.contains(classpathElement)).forEach(remainingElements::add);
+
+        // always take the first preferred element whose overlapping predecessors are already placed, the first
+        // remaining element of the original classpath is always such an element
+        List<String> orderedElements = new ArrayList<>();
+        while( !remainingElements.isEmpty() ){
+            String nextElement = remainingElements.stream()
+                    .filter(candidate -> orderedElements.containsAll(predecessors.get(candidate)))
+                    .findFirst()
+                    .orElseThrow(IllegalStateException::new);
+            remainingElements.remove(nextElement);
+            orderedElements.add(nextElement);
+        }
+        return String.join(" ", orderedElements);
+    }
+
+    /**
+     * @return for every classpath element all elements before it (in original order) sharing some entry with it
+     */
+    private Map<String, Set<String>> findOverlappingPredecessors(List<String> classpathElements, File baseFolder) throws IOException {
+        Map<String, Set<String>> predecessors = new HashMap<>();
+        Map<String, List<String>> elementsPerEntry = new HashMap<>();
+        List<String> previousElements = new ArrayList<>();
+        List<String> unreadableElements = new ArrayList<>();
+        for( String classpathElement : classpathElements ){
+            Set<String> elementPredecessors = new LinkedHashSet<>(unreadableElements);
+            predecessors.put(classpathElement, elementPredecessors);
+            File classpathFile = new File(baseFolder, classpathElement);
+            if( !classpathElement.toLowerCase().endsWith(".jar") || !classpathFile.isFile() ){
+                elementPredecessors.addAll(previousElements);
+                unreadableElements.add(classpathElement);
+            } else {
+                try(JarFile jarFile = new JarFile(classpathFile)){
+                    Enumeration<JarEntry> jarEntries = jarFile.entries();
+                    while( jarEntries.hasMoreElements() ){
+                        JarEntry jarEntry = jarEntries.nextElement();
+                        if( jarEntry.isDirectory() || isIgnoredForOverlap(jarEntry.getName()) ){
+                            continue;
+                        }
+                        List<String> elementsOfEntry = elementsPerEntry.computeIfAbsent(jarEntry.getName(), entryName -> new ArrayList<>());
+                        elementPredecessors.addAll(elementsOfEntry);
+                        elementsOfEntry.add(classpathElement);
+                    }
+                }
+            }
+            previousElements.add(classpathElement);
+        }
+        return predecessors;
+    }
+
+    private boolean isIgnoredForOverlap(String entryName) {
+        // these are specific to each jar-file and never looked up through the classpath
+        return JarFile.MANIFEST_NAME.equals(entryName) || JarIndexGenerator.INDEX_NAME.equals(entryName) || "module-info.class".equals(entryName.substring(entryName.lastIndexOf('/') + 1));
+    }
+}
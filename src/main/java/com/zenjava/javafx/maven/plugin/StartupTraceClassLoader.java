@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * System classloader injected by "jfx:trace-startup" into the traced application (via "-Djava.system.class.loader"
+ * and the boot classpath), so it must not use any other class of this plugin. It replaces the default system
+ * classloader for loading the application and prints every resource found inside the classpath as one line starting
+ * with {@value #OUTPUT_PREFIX}, followed by the URL of the resource. Loaded classes are not printed, these are
+ * reported by "-verbose:class".
+ */
+public final class StartupTraceClassLoader extends URLClassLoader {
+
+    public static final String OUTPUT_PREFIX = "[jfx-startup-trace]";
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    public StartupTraceClassLoader(ClassLoader defaultSystemClassLoader) {
+        // the default system classloader would find all resources itself, so skip it, the manifest classpath of the
+        // started jar-file gets followed by this classloader too
+        super(getClasspathUrls(), defaultSystemClassLoader.getParent());
+    }
+
+    @Override
+    public URL findResource(String name) {
+        URL resource = super.findResource(name);
+        if( resource != null ){
+            report(resource);
+        }
+        return resource;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        List<URL> resources = Collections.list(super.findResources(name));
+        for( URL resource : resources ){
+            report(resource);
+        }
+        return Collections.enumeration(resources);
+    }
+
+    /**
+     * Called by the JVM when some java agent gets added to the classpath.
+     *
+     * @param path the jar-file of the agent
+     *
+     * @throws MalformedURLException when the path is not valid
+     */
+    void appendToClassPathForInstrumentation(String path) throws MalformedURLException {
+        addURL(new File(path).toURI().toURL());
+    }
+
+    private static void report(URL resource) {
+        System.out.println(OUTPUT_PREFIX + " " + resource.toExternalForm());
+    }
+
+    private static URL[] getClasspathUrls() {
+        List<URL> urls = new ArrayList<>();
+        for( String classpathElement : System.getProperty("java.class.path", "").split(File.pathSeparator) ){
+            if( classpathElement.isEmpty() ){
+                continue;
+            }
+            try{
+                urls.add(new File(classpathElement).toURI().toURL());
+            } catch(MalformedURLException ex){
+                // can not be found by the default system classloader either
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+}
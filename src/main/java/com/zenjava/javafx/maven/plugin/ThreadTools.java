@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small helper for the thread pools used by the parallel build steps.
+ */
+public class ThreadTools {
+
+    private ThreadTools() {
+        // utility class
+    }
+
+    /**
+     * Creates a fixed thread pool of daemon threads, so a failed build never hangs because of some worker thread.
+     *
+     * @param poolSize amount of worker threads
+     * @param threadNamePrefix name of the worker threads, followed by their number
+     *
+     * @return the created thread pool, which has to be shut down by the caller
+     */
+    public static ExecutorService newDaemonThreadPool(int poolSize, String threadNamePrefix) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread workerThread = new Thread(runnable, threadNamePrefix + threadCounter.incrementAndGet());
+            workerThread.setDaemon(true);
+            return workerThread;
+        });
+    }
+}
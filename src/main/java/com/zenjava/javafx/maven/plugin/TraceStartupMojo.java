@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Starts the application once and records which classes and resources (like CSS, FXML, images or resource bundles)
+ * get loaded from which jar-file of the app-folder. The recorded trace is used by the next build to order the entries
+ * of the JavaFX JAR and the manifest classpath, so reading them while starting the application becomes mostly
+ * sequential.
+ * <p>
+ * Resources are recorded by replacing the system classloader (see {@link StartupTraceClassLoader}), so only resources
+ * looked up through the system classloader or the context classloader are recorded, which is what JavaFX and most
+ * applications do. Applications which set their own system classloader are only traced for classes.
+ * <p>
+ * As JavaFX applications normally do not exit on their own, the application gets stopped after some time.
+ *
+ * @goal trace-startup
+ * @execute goal="jar"
+ * @threadSafe
+ */
+public class TraceStartupMojo extends RunMojo {
+
+    /**
+     * Seconds to wait for the application to start before stopping it, choose this long enough to have your
+     * application fully started.
+     *
+     * @since 8.10.0
+     *
+     * @parameter property="jfx.traceStartupTimeout" default-value="30"
+     */
+    protected int traceStartupTimeout = 30;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if( skip ){
+            getLog().info("Skipping execution of TraceStartupMojo MOJO.");
+            return;
+        }
+
+        getLog().info("Tracing startup of JavaFX Application");
+
+        List<String> command = new ArrayList<>();
+        command.add(getEnvironmentRelativeExecutablePath() + "java");
+
+        Optional.ofNullable(runJavaParameter).ifPresent(parameter -> {
+            if( !parameter.trim().isEmpty() ){
+                command.add(parameter);
+            }
+        });
+
+        // printed to stdout, works on Java 8 and is mapped to unified logging on Java 9+
+        command.add("-verbose:class");
+        // the system classloader has to be loadable without the classpath of the application
+        if( !isCustomSystemClassLoaderConfigured() ){
+            command.add("-Xbootclasspath/a:" + createTraceClassLoaderFolder().getAbsolutePath());
+            command.add("-Djava.system.class.loader=" + StartupTraceClassLoader.class.getName());
+        }
+        command.add("-jar");
+        command.add(jfxMainAppJarName);
+
+        Optional.ofNullable(runAppParameter).ifPresent(parameter -> {
+            if( !parameter.trim().isEmpty() ){
+                command.add(parameter);
+            }
+        });
+
+        StartupTrace startupTrace = new StartupTrace();
+        Path appFolder = jfxAppOutputDir.toPath();
+        runWithTimeout(command, traceStartupTimeout, line -> {
+            // everything else is output of the application itself
+            if( !startupTrace.addVerboseClassOutput(line, appFolder) && !startupTrace.addResourceOutput(line, appFolder) && !line.contains("[class,") && !line.startsWith("[Loaded ") && !line.startsWith("[Opened ") ){
+                getLog().info(line);
+            }
+            return false;
+        });
+
+        if( startupTrace.isEmpty() ){
+            throw new MojoExecutionException("No classes or resources were loaded from the app-folder, please check if the application starts.");
+        }
+
+        try{
+            startupTrace.save(startupTraceFile);
+        } catch(IOException ex){
+            throw new MojoExecutionException("Could not write startup trace.", ex);
+        }
+        getLog().info(String.format("Recorded %s loaded classes and resources from %s jar-files into %s", startupTrace.size(), startupTrace.getJarOrder().size(), startupTraceFile.getAbsolutePath()));
+    }
+
+    private boolean isCustomSystemClassLoaderConfigured() {
+        if( runJavaParameter == null || !runJavaParameter.contains("-Djava.system.class.loader=") ){
+            return false;
+        }
+        getLog().info("Only classes get traced, as the application uses its own system classloader");
+        return true;
+    }
+
+    /**
+     * Copies the class file of the tracing classloader into its own folder, as the plugin jar-file itself must not
+     * end up inside the boot classpath of the application.
+     */
+    private File createTraceClassLoaderFolder() throws MojoExecutionException {
+        Path classesFolder = new File(cacheDir, "startup-trace").toPath().resolve("classloader-classes");
+        Path packageFolder = classesFolder.resolve(StartupTraceClassLoader.class.getPackage().getName().replace('.', File.separatorChar));
+        String classFileName = StartupTraceClassLoader.class.getSimpleName() + ".class";
+        try{
+            Files.createDirectories(packageFolder);
+            try(InputStream classFile = StartupTraceClassLoader.class.getResourceAsStream(classFileName)){
+                Files.copy(classFile, packageFolder.resolve(classFileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch(IOException ex){
+            throw new MojoExecutionException("Could not prepare the classloader for tracing resources.", ex);
+        }
+        return classesFolder.toFile();
+    }
+}
@@ -30,6 +30,7 @@ import java.io.File;
 /**
  * @deprecated is gonna to be replaced in the oraclejdk by normal bundler with id &quot;jnlp&quot;
  * @goal build-web
+ * @threadSafe
  */
 @Deprecated
 public class WebMojo extends AbstractJfxToolsMojo {
@@ -278,6 +279,9 @@ public class WebMojo extends AbstractJfxToolsMojo {
 
         } catch(PackagerException e){
             throw new MojoExecutionException("An error occurred while generating web deployment bundle", e);
+        } finally{
+            // the thread might be reused by some other build
+            uninstallPackagerLogger();
         }
     }
 }